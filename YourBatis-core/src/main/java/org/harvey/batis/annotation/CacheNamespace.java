@@ -0,0 +1,61 @@
+package org.harvey.batis.annotation;
+
+
+import org.harvey.batis.cache.CacheBuilder;
+import org.harvey.batis.util.enums.CacheEviction;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在Mapper接口上, 为该命名空间开启二级缓存<br>
+ * 与在Mapper.xml中声明{@code <cache/>}效果相同
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-05 20:47
+ * @see org.harvey.batis.executor.CachingExecutor
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheNamespace {
+    /**
+     * @return 淘汰策略
+     */
+    CacheEviction eviction() default CacheEviction.LRU;
+
+    /**
+     * @return LRU和FIFO的容量
+     */
+    int size() default CacheBuilder.DEFAULT_SIZE;
+
+    /**
+     * @return 定时清空的间隔, 毫秒, 0表示不定时清空
+     */
+    long flushInterval() default 0;
+
+    /**
+     * @return 未命中时是否阻塞其他读同一个key的线程
+     */
+    boolean blocking() default false;
+
+    /**
+     * @return 分段加锁的段数
+     */
+    int stripes() default 1;
+
+    /**
+     * @return 堆外存储的容量, MB, 0表示存储在堆上
+     */
+    long offHeapCapacity() default 0;
+
+    /**
+     * @return 条目的存活时间, 毫秒, 0表示不过期
+     */
+    long ttl() default 0;
+
+    /**
+     * @return 过期前多久开始异步刷新, 毫秒, 0表示不提前刷新
+     */
+    long refreshAhead() default 0;
+}
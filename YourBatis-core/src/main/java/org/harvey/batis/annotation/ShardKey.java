@@ -0,0 +1,23 @@
+package org.harvey.batis.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记Mapper方法中决定分片的参数, 会话的事务会被路由到该分片的DataSource<br>
+ * 一个方法最多只能有一个参数被标记
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 14:10
+ * @see org.harvey.batis.datasource.sharding.ShardingDataSource
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ShardKey {
+    /**
+     * @return 分片键在参数中的属性路径, 如"customer.id", 通过{@link org.harvey.batis.reflection.MetaObject}读取;
+     * 为空则参数本身就是分片键
+     */
+    String value() default "";
+}
@@ -2,23 +2,38 @@ package org.harvey.batis.binding;
 
 import lombok.Getter;
 import org.harvey.batis.annotation.Flush;
+import org.harvey.batis.annotation.ShardKey;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.exception.ExceptionFactory;
 import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.binding.BindingException;
+import org.harvey.batis.executor.ScatterGatherQuery;
 import org.harvey.batis.executor.result.ResultHandler;
 import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.reflection.MetaClass;
+import org.harvey.batis.reflection.MetaObject;
 import org.harvey.batis.reflection.ParamNameResolver;
 import org.harvey.batis.reflection.TypeParameterResolver;
+import org.harvey.batis.reflection.invoke.Invoker;
 import org.harvey.batis.session.RowBounds;
 import org.harvey.batis.session.SqlSession;
 import org.harvey.batis.util.enums.SqlCommandType;
 
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * TODO
@@ -43,11 +58,22 @@ public class MapperMethod {
         this.method = new MethodSignature(config, mapperInterface, method);
     }
 
+    /**
+     * @return 方法返回{@link CompletableFuture}, 需要在其他线程中执行
+     * @see MapperProxy
+     */
+    public boolean isAsync() {
+        return method.isReturnsFuture();
+    }
+
     /**
      * TODO
      * 实现Mapper接口的抽象方法
      */
     public Object execute(SqlSession sqlSession, Object[] args) {
+        if (method.hasShardKey()) {
+            sqlSession.routeShard(method.extractShardKey(args));
+        }
         Object result;
         switch (command.getType()) {
             case INSERT: {
@@ -66,17 +92,20 @@ public class MapperMethod {
                 break;
             }
             case SELECT:
-                if (method.isReturnsVoid() && method.hasResultHandler()) {
-                    throw new UnfinishedFunctionException();
-                    // result = executeWithResultHandler(sqlSession, args);
+                if (command.isScatter()) {
+                    result = this.executeForScatter(sqlSession, args);
+                } else if (method.isReturnsVoid() && method.hasResultHandler()) {
+                    this.executeWithResultHandler(sqlSession, args);
+                    result = null;
                 } else if (method.isReturnsMany()) {
                     result = this.executeForMany(sqlSession, args);
                 } else if (method.isReturnsMap()) {
                     throw new UnfinishedFunctionException();
                     // result = executeForMap(sqlSession, args);
                 } else if (method.isReturnsCursor()) {
-                    throw new UnfinishedFunctionException();
-                    // result = executeForCursor(sqlSession, args);
+                    result = this.executeForCursor(sqlSession, args);
+                } else if (method.isReturnsStream()) {
+                    result = this.executeForStream(sqlSession, args);
                 } else {
                     Object param = method.convertArgsToSqlCommandParam(args);
                     result = sqlSession.selectOne(command.getName(), param);
@@ -123,6 +152,94 @@ public class MapperMethod {
         return result;
     }
 
+    /**
+     * 结果逐行交给参数中的{@link ResultHandler}, 方法本身没有返回值
+     *
+     * @throws BindingException 语句没有指定结果类型, 无法映射
+     */
+    private void executeWithResultHandler(SqlSession sqlSession, Object[] args) {
+        MappedStatement ms = sqlSession.getConfiguration().getMappedStatement(command.getName());
+        if (ms.getResultMaps().isEmpty() || void.class.equals(ms.getResultMaps().get(0).getType())) {
+            throw new BindingException("method " + command.getName()
+                    + " needs a result-map or result-type in XML so that a ResultHandler can be used as a parameter.");
+        }
+        Object param = method.convertArgsToSqlCommandParam(args);
+        ResultHandler<?> resultHandler = method.extractResultHandler(args);
+        if (method.hasRowBounds()) {
+            RowBounds rowBounds = method.extractRowBounds(args);
+            sqlSession.select(command.getName(), param, rowBounds, resultHandler);
+        } else {
+            sqlSession.select(command.getName(), param, resultHandler);
+        }
+    }
+
+    /**
+     * 游标由{@link SqlSession}管理, 会话关闭时未读完的游标也会关闭
+     */
+    private <T> Cursor<T> executeForCursor(SqlSession sqlSession, Object[] args) {
+        Object param = method.convertArgsToSqlCommandParam(args);
+        if (method.hasRowBounds()) {
+            RowBounds rowBounds = method.extractRowBounds(args);
+            return sqlSession.selectCursor(command.getName(), param, rowBounds);
+        }
+        return sqlSession.selectCursor(command.getName(), param);
+    }
+
+    /**
+     * 以{@link Cursor}为数据源构造串行的{@link Stream}, 只有在流被消费时才从数据库读取下一行<br>
+     * 如{@code stream.limit(10)}在读到第10行之后就不再读取<br>
+     * 关闭流会关闭游标, 从而释放Statement
+     */
+    private <T> Stream<T> executeForStream(SqlSession sqlSession, Object[] args) {
+        Cursor<T> cursor = this.executeForCursor(sqlSession, args);
+        return MapperMethod.cursorToStream(cursor);
+    }
+
+    private static <T> Stream<T> cursorToStream(Cursor<T> cursor) {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor.iterator(), Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(() -> MapperMethod.closeCursor(cursor));
+    }
+
+    private static void closeCursor(Cursor<?> cursor) {
+        try {
+            cursor.close();
+        } catch (IOException e) {
+            throw ExceptionFactory.wrapException("Error closing cursor.  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 在所有分片上执行并归并, 分片的查询不在本会话中, 与本会话的事务无关<br>
+     * 返回{@link List}时只有归并后的结果在内存中, 返回{@link Cursor}或{@link Stream}时逐行归并
+     *
+     * @throws BindingException 返回值不是List, Cursor或Stream
+     * @see ScatterGatherQuery
+     */
+    private <E> Object executeForScatter(SqlSession sqlSession, Object[] args) {
+        Object param = method.convertArgsToSqlCommandParam(args);
+        RowBounds rowBounds = method.hasRowBounds() ? method.extractRowBounds(args) : RowBounds.DEFAULT;
+        if (!method.isReturnsCursor() && !method.isReturnsStream()
+                && !method.getReturnType().isAssignableFrom(List.class)) {
+            throw new BindingException("Mapper method '" + command.getName()
+                    + "' is declared as scatter and must return a List, Cursor or Stream.");
+        }
+        // 记录在会话中, 未读完的游标和流在会话关闭时释放各分片的连接
+        Cursor<E> cursor = sqlSession.selectScatterCursor(command.getName(), param, rowBounds);
+        if (method.isReturnsCursor()) {
+            return cursor;
+        }
+        if (method.isReturnsStream()) {
+            return MapperMethod.cursorToStream(cursor);
+        }
+        List<E> result = new ArrayList<>();
+        try {
+            cursor.forEach(result::add);
+        } finally {
+            MapperMethod.closeCursor(cursor);
+        }
+        return result;
+    }
+
     private <E> Object executeForMany(SqlSession sqlSession, Object[] args) {
         List<E> result;
         Object param = method.convertArgsToSqlCommandParam(args);
@@ -151,6 +268,10 @@ public class MapperMethod {
     public static class SqlCommand {
         private final String name;
         private final SqlCommandType type;
+        /**
+         * @see MappedStatement#isScatter()
+         */
+        private final boolean scatter;
 
         /**
          * TODO
@@ -171,9 +292,11 @@ public class MapperMethod {
                 }
                 name = null;
                 type = SqlCommandType.FLUSH;
+                scatter = false;
             } else {
                 name = ms.getId();
                 type = ms.getSqlCommandType();
+                scatter = ms.isScatter();
                 if (type == SqlCommandType.UNKNOWN) {
                     throw new BindingException("Unknown execution method for: " + name);
                 }
@@ -228,7 +351,12 @@ public class MapperMethod {
         private final boolean returnsMany;
         private final boolean returnsVoid;
         private final boolean returnsCursor;
+        private final boolean returnsStream;
         private final boolean returnsOptional;
+        /**
+         * 返回{@link CompletableFuture}, 此时{@link #returnType}等信息描述的是Future中的值
+         */
+        private final boolean returnsFuture;
         private final Class<?> returnType;
 
 
@@ -237,6 +365,10 @@ public class MapperMethod {
         private final Integer rowBoundsIndex;
 
         private final ParamNameResolver paramNameResolver;
+        /**
+         * 被{@link ShardKey}标记的参数的读取方式, 没有则为null
+         */
+        private final ShardKeyAccessor shardKeyAccessor;
         /*TODO
         private final String mapKey;
         private final ParamNameResolver paramNameResolver;
@@ -250,6 +382,10 @@ public class MapperMethod {
          */
         public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
             Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+            this.returnsFuture = MethodSignature.isFuture(resolvedReturnType);
+            if (this.returnsFuture) {
+                resolvedReturnType = MethodSignature.unwrapFuture(resolvedReturnType);
+            }
             if (resolvedReturnType instanceof Class<?>) {
                 this.returnType = (Class<?>) resolvedReturnType;
             } else if (resolvedReturnType instanceof ParameterizedType) {
@@ -258,9 +394,11 @@ public class MapperMethod {
             } else {
                 this.returnType = method.getReturnType();
             }
-            this.returnsVoid = void.class.equals(this.returnType);
+            // CompletableFuture<Void>也视为没有返回值
+            this.returnsVoid = void.class.equals(this.returnType) || (this.returnsFuture && Void.class.equals(this.returnType));
             this.returnsMany = configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
             this.returnsCursor = Cursor.class.equals(this.returnType); // 如果它甚至指定了哪种Cursor, 阁下又该如何应对?
+            this.returnsStream = Stream.class.equals(this.returnType);
             this.returnsOptional = Optional.class.equals(this.returnType);
             this.returnsMap = false;
             /*TODO getMapKey涉及@MapKey注解
@@ -269,6 +407,34 @@ public class MapperMethod {
             this.rowBoundsIndex = this.getUniqueParamIndex(method, RowBounds.class);
             this.resultHandlerIndex = this.getUniqueParamIndex(method, ResultHandler.class);
             this.paramNameResolver = new ParamNameResolver(configuration, method);
+            this.shardKeyAccessor = ShardKeyAccessor.of(configuration, method);
+            if (this.returnsFuture && (this.returnsCursor || this.returnsStream || this.resultHandlerIndex != null)) {
+                // 异步执行完毕后会话就关闭了
+                throw new BindingException(method.getName() +
+                        " cannot return a CompletableFuture of Cursor or Stream, nor take a ResultHandler");
+            }
+        }
+
+        private static boolean isFuture(Type type) {
+            if (type instanceof ParameterizedType) {
+                type = ((ParameterizedType) type).getRawType();
+            }
+            return CompletableFuture.class.equals(type);
+        }
+
+        /**
+         * @return {@code CompletableFuture<T>}中的T, 没有泛型参数则为Object
+         */
+        private static Type unwrapFuture(Type futureType) {
+            if (!(futureType instanceof ParameterizedType)) {
+                return Object.class;
+            }
+            Type valueType = ((ParameterizedType) futureType).getActualTypeArguments()[0];
+            if (valueType instanceof Class<?> || valueType instanceof ParameterizedType) {
+                return valueType;
+            }
+            // 通配符或类型变量
+            return Object.class;
         }
 
         /**
@@ -305,6 +471,18 @@ public class MapperMethod {
             return resultHandlerIndex != null;
         }
 
+        public boolean hasShardKey() {
+            return shardKeyAccessor != null;
+        }
+
+        /**
+         * 依据{@link #shardKeyAccessor}从args中获取分片键<br>
+         * 没有就返回null
+         */
+        public Object extractShardKey(Object[] args) {
+            return hasShardKey() ? shardKeyAccessor.getShardKey(args) : null;
+        }
+
         /**
          * 将转成函数参数SqlCommand中的参数
          *
@@ -322,5 +500,105 @@ public class MapperMethod {
         public RowBounds extractRowBounds(Object[] args) {
             return hasRowBounds() ? (RowBounds) args[rowBoundsIndex] : null;
         }
+
+        /**
+         * 依据{@link #resultHandlerIndex}从args中获取ResultHandler<br>
+         * 没有就返回null
+         */
+        public ResultHandler<?> extractResultHandler(Object[] args) {
+            return hasResultHandler() ? (ResultHandler<?>) args[resultHandlerIndex] : null;
+        }
+    }
+
+    /**
+     * 从Mapper方法的参数中读取分片键, 每个Mapper方法构造一次<br>
+     * 参数声明的类型是普通的JavaBean时, 属性路径上的Getter在构造时就解析好, 之后每次调用直接执行;
+     * 否则(Map, 接口, 带下标的路径等)每次调用都通过{@link MetaObject}解析
+     *
+     * @see ShardKey
+     */
+    static class ShardKeyAccessor {
+        private final Configuration configuration;
+        private final int index;
+        private final String property;
+        /**
+         * 属性路径上每一级的Getter, 不能预先解析时为null
+         */
+        private final Invoker[] getters;
+
+        private ShardKeyAccessor(Configuration configuration, int index, Class<?> paramType, String property) {
+            this.configuration = configuration;
+            this.index = index;
+            this.property = property;
+            this.getters = ShardKeyAccessor.resolveGetters(configuration, paramType, property);
+        }
+
+        /**
+         * @return 方法没有被{@link ShardKey}标记的参数时返回null
+         * @throws BindingException 有多个参数被{@link ShardKey}标记
+         */
+        static ShardKeyAccessor of(Configuration configuration, Method method) {
+            Annotation[][] paramAnnotations = method.getParameterAnnotations();
+            ShardKeyAccessor accessor = null;
+            for (int i = 0; i < paramAnnotations.length; i++) {
+                for (Annotation annotation : paramAnnotations[i]) {
+                    if (!(annotation instanceof ShardKey)) {
+                        continue;
+                    }
+                    if (accessor != null) {
+                        throw new BindingException(method.getName() + " cannot have multiple @ShardKey parameters");
+                    }
+                    String property = ((ShardKey) annotation).value();
+                    accessor = new ShardKeyAccessor(configuration, i, method.getParameterTypes()[i], property);
+                }
+            }
+            return accessor;
+        }
+
+        private static Invoker[] resolveGetters(Configuration configuration, Class<?> paramType, String property) {
+            if (property.isEmpty()) {
+                return new Invoker[0];
+            }
+            if (paramType.isInterface() || Object.class.equals(paramType)
+                    || property.indexOf('[') >= 0) {
+                return null;
+            }
+            String[] names = property.split("\\.");
+            Invoker[] getters = new Invoker[names.length];
+            Class<?> type = paramType;
+            for (int i = 0; i < names.length; i++) {
+                MetaClass metaClass = MetaClass.forClass(type, configuration.getReflectorFactory());
+                if (!metaClass.hasGetter(names[i])) {
+                    return null;
+                }
+                getters[i] = metaClass.getGetInvoker(names[i]);
+                type = metaClass.getGetterType(names[i]);
+                if (i < names.length - 1 && (type.isInterface() || Object.class.equals(type))) {
+                    return null;
+                }
+            }
+            return getters;
+        }
+
+        /**
+         * @return 分片键, 路径上有null时返回null
+         */
+        Object getShardKey(Object[] args) {
+            Object value = args[index];
+            if (getters == null) {
+                return value == null ? null : configuration.newMetaObject(value).getValue(property);
+            }
+            try {
+                for (Invoker getter : getters) {
+                    if (value == null) {
+                        return null;
+                    }
+                    value = getter.invoke(value, null);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new BindingException("Could not read shard key '" + property + "'.  Cause: " + e, e);
+            }
+            return value;
+        }
     }
 }
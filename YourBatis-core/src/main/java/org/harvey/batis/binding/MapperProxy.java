@@ -1,7 +1,10 @@
 package org.harvey.batis.binding;
 
+import org.harvey.batis.config.Configuration;
 import org.harvey.batis.exception.UnfinishedFunctionException;
+import org.harvey.batis.session.DefaultSqlSessionFactory;
 import org.harvey.batis.session.SqlSession;
+import org.harvey.batis.session.SqlSessionFactory;
 import org.harvey.batis.util.ReflectionExceptionUnwrappedMaker;
 
 import java.io.Serializable;
@@ -14,6 +17,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 给出了实现MapperInterface的方法的方式, 即依据Mapper.xml实现
@@ -163,7 +167,7 @@ public class MapperProxy<T> implements InvocationHandler, Serializable {
             // TODO
             MapperMethod mapperMethod = new MapperMethod(mapperInterface, method, sqlSession.getConfiguration());
             // 包装这个代理类, 返回
-            return new PlainMethodInvoker(mapperMethod);
+            return mapperMethod.isAsync() ? new AsyncMethodInvoker(mapperMethod) : new PlainMethodInvoker(mapperMethod);
         }
         // 是有具体函数体的方法, 包装后返回
         // 使用DefaultMethodInvoker
@@ -262,6 +266,34 @@ public class MapperProxy<T> implements InvocationHandler, Serializable {
         }
     }
 
+    /**
+     * 代理返回{@link CompletableFuture}的Mapper方法<br>
+     * 在{@link Configuration#getAsyncExecutor()}中执行, 每次调用都打开一个新的自动提交的{@link SqlSession},
+     * 所以并发的调用各自使用独立的连接, 与调用方的会话不在同一个事务中
+     */
+    private static class AsyncMethodInvoker implements MapperMethodInvoker {
+        private final MapperMethod mapperMethod;
+
+        public AsyncMethodInvoker(MapperMethod mapperMethod) {
+            super();
+            this.mapperMethod = mapperMethod;
+        }
+
+        /**
+         * @param sqlSession 只用于获取{@link Configuration}
+         */
+        @Override
+        public Object invoke(Object ignoreObj, Method ignoreMethod, Object[] args, SqlSession sqlSession) {
+            Configuration configuration = sqlSession.getConfiguration();
+            SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+            return CompletableFuture.supplyAsync(() -> {
+                try (SqlSession asyncSession = sqlSessionFactory.openSession(true)) {
+                    return mapperMethod.execute(asyncSession, args);
+                }
+            }, configuration.getAsyncExecutor());
+        }
+    }
+
     /**
      * 通过{@link MethodHandle}对方法调用
      */
@@ -2,6 +2,7 @@ package org.harvey.batis.builder;
 
 import lombok.Getter;
 import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheBuilder;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.builder.BuilderException;
@@ -13,6 +14,7 @@ import org.harvey.batis.reflection.MetaClass;
 import org.harvey.batis.scripting.LanguageDriver;
 import org.harvey.batis.util.ArrayUtil;
 import org.harvey.batis.util.ErrorContext;
+import org.harvey.batis.util.enums.CacheEviction;
 import org.harvey.batis.util.enums.SqlCommandType;
 import org.harvey.batis.util.enums.StatementType;
 import org.harvey.batis.util.type.TypeHandler;
@@ -45,10 +47,61 @@ public class MapperBuilderAssistant extends BaseBuilder {
     }
 
     /**
-     * TODO
+     * 本命名空间的二级缓存, 没有配置则为null
+     */
+    private Cache currentCache;
+
+    /**
+     * 使用其他命名空间(或本命名空间已经创建好)的二级缓存
+     *
+     * @param namespace 缓存所在的命名空间
+     * @throws IncompleteElementException 该命名空间的缓存尚未创建, 稍后重试
      */
     public Cache useCacheRef(String namespace) {
-        throw new UnfinishedFunctionException();
+        if (namespace == null) {
+            throw new BuilderException("cache-ref element requires a namespace attribute.");
+        }
+        if (!configuration.hasCache(namespace)) {
+            throw new IncompleteElementException("No cache for namespace '" + namespace + "' could be found.");
+        }
+        currentCache = configuration.getCache(namespace);
+        return currentCache;
+    }
+
+    /**
+     * 为当前命名空间创建二级缓存, 并注册到{@link Configuration}<br>
+     * 已经创建过(比如XML和注解都声明了), 则直接使用已有的<br>
+     * 参数为null时使用默认值, 见{@link CacheBuilder}
+     *
+     * @param eviction        淘汰策略
+     * @param size            LRU和FIFO的容量
+     * @param flushInterval   定时清空的间隔, 毫秒
+     * @param blocking        未命中时是否阻塞其他读同一个key的线程
+     * @param stripes         分段加锁的段数
+     * @param offHeapCapacity 堆外存储的容量, 字节, null表示存储在堆上
+     * @param ttl             条目的存活时间, 毫秒, null表示不过期
+     * @param refreshAhead    过期前多久开始异步刷新, 毫秒
+     */
+    public Cache useNewCache(CacheEviction eviction, Integer size, Long flushInterval, Boolean blocking, Integer stripes,
+                             Long offHeapCapacity, Long ttl, Long refreshAhead) {
+        if (configuration.hasCache(currentTargetMapper)) {
+            return this.useCacheRef(currentTargetMapper);
+        }
+        Cache cache = new CacheBuilder(currentTargetMapper)
+                .eviction(eviction)
+                .size(size)
+                .flushInterval(flushInterval)
+                .blocking(blocking)
+                .stripes(stripes)
+                .offHeapCapacity(offHeapCapacity)
+                .ttl(ttl)
+                .refreshAhead(refreshAhead)
+                .refreshExecutor(refreshAhead == null ? null : configuration.getRefreshExecutor())
+                .statistics(configuration.getCacheStatistics().forCache(currentTargetMapper))
+                .build();
+        configuration.addCache(cache);
+        currentCache = cache;
+        return cache;
     }
 
     /**
@@ -233,13 +286,28 @@ public class MapperBuilderAssistant extends BaseBuilder {
         return Object.class;
     }
 
+    /**
+     * @param flushCache 执行前是否清空缓存, 为null时写语句清空, 查询语句不清空
+     * @param useCache   是否使用二级缓存, 为null时查询语句使用
+     * @param fetchSize  为null时使用{@link Configuration#getDefaultFetchSize()}
+     * @param coalesce   是否合并并发的相同查询, 为null时不合并
+     * @param scatter    是否在所有分片上执行后归并, 为null时不归并
+     * @param mergeOrder 归并时的排序, 见{@link MappedStatement#getMergeOrder()}
+     * @param tables     语句涉及的表, 查询语句是读的表, 写语句是写的表; 为null表示未知,
+     *                   此时写语句默认清空整个命名空间的缓存
+     * @param useMaster  查询是否也在主库上执行, 见{@link MappedStatement#isUseMaster()}
+     */
     public MappedStatement addMappedStatement(String methodName, SqlSource sqlSource, SqlCommandType sqlCommandType,
-                                              String resultMap, Class<?> resultType, LanguageDriver lang, KeyGenerator keyGenerator) {
+                                              String resultMap, Class<?> resultType, LanguageDriver lang, KeyGenerator keyGenerator,
+                                              Boolean flushCache, Boolean useCache, Integer fetchSize, Boolean coalesce,
+                                              Boolean scatter, String mergeOrder, Set<String> tables,
+                                              boolean useMaster) {
         String statementId = this.applyCurrentNamespace(methodName, false);
+        boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
         MappedStatement.Builder statementBuilder = new MappedStatement
                 .Builder(configuration, statementId, sqlSource, sqlCommandType)
                 .resource(resource)
-                .fetchSize(null)
+                .fetchSize(fetchSize)
                 .timeout(null)
                 .statementType(StatementType.PREPARED)
                 .keyGenerator(keyGenerator)
@@ -251,10 +319,15 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .resultSets(null)
                 .resultMaps(getStatementResultMaps(resultMap, resultType, statementId))
                 .resultSetType(null)
-                .flushCacheRequired(false/*valueOrDefault(flushCache, !isSelect)*/)
-                //.useCache(valueOrDefault(useCache, isSelect))
-                //.cache(currentCache)
-                ;
+                .flushCacheRequired(flushCache == null ? !isSelect && tables == null : flushCache)
+                .useCache(useCache == null ? isSelect : useCache)
+                .cache(currentCache)
+                .coalesce(isSelect && Boolean.TRUE.equals(coalesce))
+                .scatter(isSelect && Boolean.TRUE.equals(scatter))
+                .mergeOrder(mergeOrder)
+                .useMaster(useMaster)
+                .readTables(tables)
+                .writeTables(isSelect ? Collections.emptySet() : tables);
         ParameterMap statementParameterMap = getStatementParameterMap(null, null, statementId);
         if (statementParameterMap != null) {
             statementBuilder.parameterMap(statementParameterMap);
@@ -63,7 +63,12 @@ public class SqlSourceBuilder extends BaseBuilder {
     }
 
 
-    private static class ParameterMappingTokenHandler extends BaseBuilder implements TokenHandler {
+    /**
+     * 也被预编译的动态SQL使用, 此时#{}的内容已经在编译时解析, 只需要按参数的类型创建{@link ParameterMapping}
+     *
+     * @see org.harvey.batis.scripting.xml.compile.SqlRenderer
+     */
+    public static class ParameterMappingTokenHandler extends BaseBuilder implements TokenHandler {
         private final Class<?> parameterType;
         /**
          * SQL语句中, 每一个?对应的Parameter(按顺序)
@@ -94,7 +99,14 @@ public class SqlSourceBuilder extends BaseBuilder {
 
         private ParameterMapping buildParameterMapping(String content) {
             Map<String, String> propertiesMap = parseParameterMapping(content);
-            String property = propertiesMap.get("property");
+            return this.buildParameterMapping(propertiesMap.get("property"), propertiesMap);
+        }
+
+        /**
+         * @param property      参数名, 可能与propertiesMap中的不同(例如foreach中被重命名的item)
+         * @param propertiesMap {@link #parseParameterMapping(String)}的结果
+         */
+        public ParameterMapping buildParameterMapping(String property, Map<String, String> propertiesMap) {
             Class<?> propertyType; // content配置类型
             if (metaParameters.hasGetter(property)) {
                 // 从metaParameters(Map)里获取content配置类型
@@ -143,7 +155,7 @@ public class SqlSourceBuilder extends BaseBuilder {
                     throw new BuilderException("Expression based parameters are not supported yet");
                 } else {
                     throw new BuilderException("An invalid property '" + name +
-                            "' was found in mapping #{" + content + "}.  Valid properties are " + Arrays.toString(PARAMETER_PROPERTIES));
+                            "' was found in mapping #{" + propertiesMap + "}.  Valid properties are " + Arrays.toString(PARAMETER_PROPERTIES));
                 }
             }
             if (typeHandlerAlias != null) {
@@ -152,7 +164,7 @@ public class SqlSourceBuilder extends BaseBuilder {
             return builder.build();
         }
 
-        private Map<String, String> parseParameterMapping(String content) {
+        public static Map<String, String> parseParameterMapping(String content) {
             try {
                 return new ParameterExpression(content);
             } catch (BuilderException ex) {
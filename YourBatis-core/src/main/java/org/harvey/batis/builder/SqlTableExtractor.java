@@ -0,0 +1,226 @@
+package org.harvey.batis.builder;
+
+import org.harvey.batis.util.ArrayUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 从SQL文本中提取语句涉及的表, 用于按表失效缓存<br>
+ * 只识别FROM, JOIN, INTO, UPDATE等关键字之后的表名, 不做完整的语法分析;
+ * 宁可多提取(比如把CTE的名字也当作表), 不能少提取<br>
+ * 表名统一为小写, 去掉引号和schema前缀.
+ * 无法确定时(表名是${}, 或者一个表都没找到)返回null, 由调用方按"涉及所有表"处理<br>
+ * 看不到视图, 触发器, 外键级联等依赖, 只在{@link org.harvey.batis.config.Configuration#isExtractSqlTables()}时使用
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 16:00
+ * @see org.harvey.batis.mapping.MappedStatement#getReadTables()
+ */
+public final class SqlTableExtractor {
+    private SqlTableExtractor() {
+    }
+
+    /**
+     * @param sql 语句的文本, 动态SQL则是所有分支的文本拼在一起
+     * @return 涉及的表, 不可修改; 无法确定时为null
+     */
+    public static Set<String> extract(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        String[] tokens = tokenize(sql);
+        Set<String> tables = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
+            switch (token) {
+                case "from":
+                case "join":
+                case "into":
+                case "update":
+                case "table":
+                    // from a x, b y 的逗号列表
+                    i = readTableList(tokens, i + 1, tables);
+                    if (i < 0) {
+                        return null;
+                    }
+                    i--;
+                    break;
+                case "delete":
+                    // delete a from a join b
+                    if (i + 1 < tokens.length && !"from".equals(tokens[i + 1]) && !addTable(tokens[i + 1], tables)) {
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return tables.isEmpty() ? null : Collections.unmodifiableSet(tables);
+    }
+
+    /**
+     * 解析显式配置的表
+     *
+     * @param tables 逗号分隔
+     * @return 不可修改; 没有配置则为null
+     */
+    public static Set<String> parse(String tables) {
+        String[] names = ArrayUtil.splitTrimEach(tables, ',');
+        if (names == null) {
+            return null;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : names) {
+            result.add(normalize(name));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * @return 表列表之后的位置, 遇到${}时为-1
+     */
+    private static int readTableList(String[] tokens, int i, Set<String> tables) {
+        while (i < tokens.length) {
+            String token = tokens[i];
+            if ("(".equals(token)) {
+                // 子查询, 其中的FROM会在之后单独处理
+                return i;
+            }
+            if (!addTable(token, tables)) {
+                return -1;
+            }
+            i++;
+            // 跳过别名
+            if (i < tokens.length && "as".equals(tokens[i])) {
+                i++;
+            }
+            if (i < tokens.length && isAlias(tokens[i])) {
+                i++;
+            }
+            if (i < tokens.length && ",".equals(tokens[i])) {
+                i++;
+                continue;
+            }
+            return i;
+        }
+        return i;
+    }
+
+    /**
+     * 不是表名的token(参数, 字面量, 标点)直接忽略
+     *
+     * @return 表名是${}时为false
+     */
+    private static boolean addTable(String token, Set<String> tables) {
+        if (token.contains("${")) {
+            return false;
+        }
+        char first = token.charAt(0);
+        if (Character.isLetter(first) || first == '_' || first == '`' || first == '"' || first == '[') {
+            tables.add(normalize(token));
+        }
+        return true;
+    }
+
+    private static boolean isAlias(String token) {
+        if (token.length() == 1 && !Character.isLetterOrDigit(token.charAt(0))) {
+            return false;
+        }
+        switch (token) {
+            case "where":
+            case "set":
+            case "values":
+            case "value":
+            case "select":
+            case "on":
+            case "using":
+            case "join":
+            case "inner":
+            case "left":
+            case "right":
+            case "full":
+            case "cross":
+            case "natural":
+            case "outer":
+            case "group":
+            case "order":
+            case "having":
+            case "limit":
+            case "offset":
+            case "union":
+            case "for":
+            case "lock":
+            case "into":
+            case "from":
+            case "default":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static String normalize(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1);
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '`' && c != '"' && c != '[' && c != ']') {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * 按空白切分, 逗号和括号单独成为一个token, 字符串字面量整体跳过
+     */
+    private static String[] tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                flush(current, tokens);
+                int end = sql.indexOf('\'', i + 1);
+                i = end < 0 ? length : end;
+                tokens.add("''");
+            } else if (c == '#' || c == '$') {
+                if (i + 1 < length && sql.charAt(i + 1) == '{') {
+                    // 参数整体作为一个token
+                    int end = sql.indexOf('}', i);
+                    end = end < 0 ? length - 1 : end;
+                    current.append(sql, i, end + 1);
+                    i = end;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == ',' || c == '(' || c == ')' || c == ';') {
+                flush(current, tokens);
+                tokens.add(String.valueOf(c));
+            } else if (Character.isWhitespace(c)) {
+                flush(current, tokens);
+            } else {
+                current.append(c);
+            }
+        }
+        flush(current, tokens);
+        return tokens.toArray(new String[0]);
+    }
+
+    private static void flush(StringBuilder current, List<String> tokens) {
+        if (current.length() > 0) {
+            tokens.add(current.toString().toLowerCase(Locale.ENGLISH));
+            current.setLength(0);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.harvey.batis.builder.xml;
 
+import org.harvey.batis.annotation.CacheNamespace;
 import org.harvey.batis.builder.MapperBuilderAssistant;
 import org.harvey.batis.builder.MethodResolver;
 import org.harvey.batis.builder.ResultMapResolver;
@@ -41,20 +42,34 @@ public class MapperBuilder {
     public void parse() {
         String resource = type.toString();
         if (!configuration.isResourceLoaded(resource)) {
+            assistant.setCurrentTargetMapper(type.getName());
+            // 先于XML解析, 使XML中的语句能够使用注解声明的缓存
+            this.parseCache();
             this.loadXmlResource();
             configuration.addLoadedResource(resource);
-            // 再次检验
-            assistant.setCurrentTargetMapper(type.getName());
-            /* 无需求
-            parseCache();
-            parseCacheRef();*/
-            UnfinishedFunctionException.trace("Cache");
             UnfinishedFunctionException.trace("解析注解");
             /* 解析注解 ... ?*/
         }
         configuration.parsePendingRemoveFinished(configuration.getIncompleteMethods(), MethodResolver::resolve,false);
     }
 
+    /**
+     * 解析Mapper接口上的{@link CacheNamespace}
+     */
+    private void parseCache() {
+        CacheNamespace cacheNamespace = type.getAnnotation(CacheNamespace.class);
+        if (cacheNamespace != null) {
+            long flushInterval = cacheNamespace.flushInterval();
+            long offHeapCapacity = cacheNamespace.offHeapCapacity();
+            long ttl = cacheNamespace.ttl();
+            long refreshAhead = cacheNamespace.refreshAhead();
+            assistant.useNewCache(cacheNamespace.eviction(), cacheNamespace.size(),
+                    flushInterval > 0 ? flushInterval : null, cacheNamespace.blocking(), cacheNamespace.stripes(),
+                    offHeapCapacity > 0 ? offHeapCapacity * 1024 * 1024 : null,
+                    ttl > 0 ? ttl : null, refreshAhead > 0 ? refreshAhead : null);
+        }
+    }
+
     private void loadXmlResource() {
         // 在XMLMapperBuilder#bindMapperForNamespace中添加标识
         if (configuration.isResourceLoaded("namespace:" + type.getName())) {
@@ -3,6 +3,9 @@ package org.harvey.batis.builder.xml;
 import org.harvey.batis.builder.BaseBuilder;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.datasource.DataSourceFactory;
+import org.harvey.batis.datasource.ReadWriteDataSource;
+import org.harvey.batis.datasource.sharding.ShardResolver;
+import org.harvey.batis.datasource.sharding.ShardingDataSource;
 import org.harvey.batis.datasource.UnpooledDataSourceFactory;
 import org.harvey.batis.exception.builder.BuilderException;
 import org.harvey.batis.io.Resources;
@@ -15,13 +18,17 @@ import org.harvey.batis.reflection.ReflectorFactory;
 import org.harvey.batis.transaction.TransactionFactory;
 import org.harvey.batis.util.ErrorContext;
 import org.harvey.batis.util.XPathBuilder;
+import org.harvey.batis.util.enums.ReplicaSelectStrategy;
 import org.xml.sax.InputSource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -225,7 +232,9 @@ public class XMLConfigBuilder extends BaseBuilder {
      * {@link ConfigXmlConstants#TRANSACTION_MANAGER_ELEMENT},
      * {@link ConfigXmlConstants#DATABASE_ELEMENT},
      * {@link ConfigXmlConstants#DATABASE_ELEMENT},获取{@link XNode}其中的配置<br>
-     * 然后实例化{@link TransactionFactory}和{@link DataSource}, 这俩封装进{@link Environment}
+     * 然后实例化{@link TransactionFactory}和{@link DataSource}, 这俩封装进{@link Environment}<br>
+     * 配置了{@link ConfigXmlConstants#REPLICAS_ELEMENT}时, DataSource是{@link ReadWriteDataSource}<br>
+     * 配置了{@link ConfigXmlConstants#SHARDS_ELEMENT}时, DataSource是{@link ShardingDataSource}, 上面的DataSource作为默认
      */
     private Environment environmentElement(XNode child) throws Exception {
         if (child == null) {
@@ -244,6 +253,16 @@ public class XMLConfigBuilder extends BaseBuilder {
         DataSourceFactory dsFactory = this.dataSourceElement(databaseNode, datasourceNode);
 
         DataSource dataSource = dsFactory.getDataSource();
+        String replicasXpath = XMLConfigBuilder.childXpath(ConfigXmlConstants.REPLICAS_ELEMENT);
+        XNode replicasNode = child.evaluateNode(replicasXpath);
+        if (replicasNode != null) {
+            dataSource = this.replicasElement(replicasNode, datasourceNode, dataSource);
+        }
+        String shardsXpath = XMLConfigBuilder.childXpath(ConfigXmlConstants.SHARDS_ELEMENT);
+        XNode shardsNode = child.evaluateNode(shardsXpath);
+        if (shardsNode != null) {
+            dataSource = this.shardsElement(shardsNode, datasourceNode, dataSource);
+        }
 
         org.harvey.batis.mapping.Environment.Builder environmentBuilder =
                 new Environment.Builder()
@@ -253,6 +272,49 @@ public class XMLConfigBuilder extends BaseBuilder {
 
     }
 
+    /**
+     * 每个副本的{@link ConfigXmlConstants#DATABASE_ELEMENT}都和主库共用datasourceNode中的连接池配置
+     *
+     * @param primary 主库
+     */
+    private DataSource replicasElement(XNode replicasNode, XNode datasourceNode, DataSource primary) throws Exception {
+        List<DataSource> replicas = new ArrayList<>();
+        for (XNode replicaNode : replicasNode.getChildren()) {
+            if (ConfigXmlConstants.DATABASE_ELEMENT.equals(replicaNode.getName())) {
+                replicas.add(this.dataSourceElement(replicaNode, datasourceNode).getDataSource());
+            }
+        }
+        ReplicaSelectStrategy strategy = ReplicaSelectStrategy.of(
+                replicasNode.getAttributeValue(ConfigXmlConstants.REPLICAS_STRATEGY_ATTRIBUTION)
+        );
+        return new ReadWriteDataSource(primary, replicas, strategy);
+    }
+
+    /**
+     * 每个{@link ConfigXmlConstants#SHARD_ELEMENT}下有一个{@link ConfigXmlConstants#DATABASE_ELEMENT},
+     * 也和主库共用datasourceNode中的连接池配置
+     *
+     * @param defaultDataSource 没有分片键时使用
+     */
+    private DataSource shardsElement(XNode shardsNode, XNode datasourceNode, DataSource defaultDataSource) throws Exception {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        String databaseXpath = XMLConfigBuilder.childXpath(ConfigXmlConstants.DATABASE_ELEMENT);
+        for (XNode shardNode : shardsNode.getChildren()) {
+            if (!ConfigXmlConstants.SHARD_ELEMENT.equals(shardNode.getName())) {
+                continue;
+            }
+            String name = shardNode.getAttributeValue(ConfigXmlConstants.SHARD_NAME_ATTRIBUTION);
+            XNode databaseNode = shardNode.evaluateNode(databaseXpath);
+            if (shards.put(name, this.dataSourceElement(databaseNode, datasourceNode).getDataSource()) != null) {
+                throw new BuilderException("Duplicate shard name: " + name);
+            }
+        }
+        String resolverType = shardsNode.getAttributeValue(ConfigXmlConstants.SHARDS_RESOLVER_ATTRIBUTION);
+        ShardResolver resolver = resolverType == null ? null :
+                (ShardResolver) BaseBuilder.resolveClass(resolverType).getDeclaredConstructor().newInstance();
+        return new ShardingDataSource(defaultDataSource, shards, resolver);
+    }
+
     /**
      * 从transactionNode获取需要的TransactionFactory
      */
@@ -4,7 +4,6 @@ import org.harvey.batis.builder.BaseBuilder;
 import org.harvey.batis.builder.MapperBuilderAssistant;
 import org.harvey.batis.builder.ResultMapResolver;
 import org.harvey.batis.config.Configuration;
-import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.builder.BuilderException;
 import org.harvey.batis.exception.builder.IncompleteElementException;
 import org.harvey.batis.io.Resources;
@@ -13,6 +12,7 @@ import org.harvey.batis.mapping.ResultMapping;
 import org.harvey.batis.parsing.MapperXmlConstants;
 import org.harvey.batis.parsing.XNode;
 import org.harvey.batis.parsing.XPathParser;
+import org.harvey.batis.util.enums.CacheEviction;
 import org.harvey.batis.util.ErrorContext;
 import org.harvey.batis.util.XPathBuilder;
 
@@ -101,11 +101,7 @@ public class XMLMapperBuilder extends BaseBuilder {
                 throw new BuilderException("Mapper's namespace cannot be empty");
             }
             builderAssistant.setCurrentTargetMapper(target);
-            UnfinishedFunctionException.trace("解析Mapper.xml的cache的Element");
-            /*
-            无需求
-            cacheRefElement(context.evaluateNode("cache-ref"));
-            cacheElement(context.evaluateNode("cache"));*/
+            this.cacheElement(context.evaluateNode(childXpath(MapperXmlConstants.Cache.ELEMENT_NAME)));
             this.resultMapElements(context.evaluateNodes(childXpath(MapperXmlConstants.ResultMap.ELEMENT_NAME)));
             this.sqlElement(context.evaluateNodes(unionXpath(MapperXmlConstants.Sql.SQL_SELECT_ELEMENT, MapperXmlConstants.Sql.SQL_DELETE_ELEMENT, MapperXmlConstants.Sql.SQL_INSERT_ELEMENT, MapperXmlConstants.Sql.SQL_UPDATE_ELEMENT)));
             // this.this.buildStatementFromContext(context.evaluateNodes("select|insert|update|delete"));
@@ -114,6 +110,35 @@ public class XMLMapperBuilder extends BaseBuilder {
         }
     }
 
+    /**
+     * 解析{@code <cache/>}标签, 为本命名空间创建二级缓存<br>
+     * 没有该标签, 但Mapper接口上有{@link org.harvey.batis.annotation.CacheNamespace}时, 使用接口上声明的缓存
+     *
+     * @param context {@code <cache/>}标签, 可以为null
+     */
+    private void cacheElement(XNode context) {
+        if (context != null) {
+            Integer flushInterval = context.getIntAttribute(MapperXmlConstants.Cache.FLUSH_INTERVAL_ATTRIBUTION);
+            Integer offHeapCapacity = context.getIntAttribute(MapperXmlConstants.Cache.OFF_HEAP_CAPACITY_ATTRIBUTION);
+            Integer ttl = context.getIntAttribute(MapperXmlConstants.Cache.TTL_ATTRIBUTION);
+            Integer refreshAhead = context.getIntAttribute(MapperXmlConstants.Cache.REFRESH_AHEAD_ATTRIBUTION);
+            builderAssistant.useNewCache(
+                    CacheEviction.of(context.getAttributeValue(MapperXmlConstants.Cache.EVICTION_ATTRIBUTION)),
+                    context.getIntAttribute(MapperXmlConstants.Cache.SIZE_ATTRIBUTION),
+                    flushInterval == null ? null : flushInterval.longValue(),
+                    context.getBooleanAttribute(MapperXmlConstants.Cache.BLOCKING_ATTRIBUTION),
+                    context.getIntAttribute(MapperXmlConstants.Cache.STRIPES_ATTRIBUTION),
+                    offHeapCapacity == null ? null : offHeapCapacity * 1024L * 1024,
+                    ttl == null ? null : ttl.longValue(),
+                    refreshAhead == null ? null : refreshAhead.longValue());
+            return;
+        }
+        String target = builderAssistant.getCurrentTargetMapper();
+        if (configuration.hasCache(target)) {
+            builderAssistant.useCacheRef(target);
+        }
+    }
+
     private void sqlElement(List<XNode> xNodes) {
         for (XNode context : xNodes) {
             // 解析每一个SQL的node
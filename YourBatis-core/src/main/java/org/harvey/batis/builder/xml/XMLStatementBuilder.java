@@ -2,6 +2,8 @@ package org.harvey.batis.builder.xml;
 
 import org.harvey.batis.builder.BaseBuilder;
 import org.harvey.batis.builder.MapperBuilderAssistant;
+import org.harvey.batis.builder.SqlTableExtractor;
+import org.harvey.batis.datasource.ReadWriteDataSource;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.executor.key.generator.Jdbc3KeyGenerator;
 import org.harvey.batis.executor.key.generator.KeyGenerator;
@@ -14,6 +16,7 @@ import org.harvey.batis.scripting.LanguageDriver;
 import org.harvey.batis.util.enums.SqlCommandType;
 
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * TODO
@@ -63,12 +66,32 @@ public class XMLStatementBuilder extends BaseBuilder {
         }
 
 
+        String tablesAttribute = context.getAttributeValue(MapperXmlConstants.Sql.TABLES_ATTRIBUTION);
+        Set<String> tables = null;
+        if (tablesAttribute != null) {
+            tables = SqlTableExtractor.parse(tablesAttribute);
+        } else if (configuration.isExtractSqlTables()) {
+            // 动态SQL的所有分支都算在内
+            tables = SqlTableExtractor.extract(context.getNode().getTextContent());
+        }
+
         SqlSource sqlSource = langDriver.createSqlSource(configuration, context, null);
         // Parse the SQL (pre: <selectKey> and <include> were parsed and removed)
         String resultType = context.getAttributeValue(MapperXmlConstants.Sql.RESULT_TYPE_ATTRIBUTION);
         Class<?> resultTypeClass = resolveClass(resultType);
         String resultMap = context.getAttributeValue(MapperXmlConstants.Sql.RESULT_MAP_ATTRIBUTION);
-        builderAssistant.addMappedStatement(methodName, sqlSource, sqlCommandType, resultMap, resultTypeClass, langDriver, keyGenerator);
+        Boolean flushCache = context.getBooleanAttribute(MapperXmlConstants.Sql.FLUSH_CACHE_ATTRIBUTION);
+        Boolean useCache = context.getBooleanAttribute(MapperXmlConstants.Sql.USE_CACHE_ATTRIBUTION);
+        Integer fetchSize = context.getIntAttribute(MapperXmlConstants.Sql.FETCH_SIZE_ATTRIBUTION);
+        Boolean coalesce = context.getBooleanAttribute(MapperXmlConstants.Sql.COALESCE_ATTRIBUTION);
+        Boolean scatter = context.getBooleanAttribute(MapperXmlConstants.Sql.SCATTER_ATTRIBUTION);
+        String mergeOrder = context.getAttributeValue(MapperXmlConstants.Sql.MERGE_ORDER_ATTRIBUTION);
+        Boolean useMaster = context.getBooleanAttribute(MapperXmlConstants.Sql.USE_MASTER_ATTRIBUTION);
+        if (useMaster == null) {
+            useMaster = ReadWriteDataSource.isLockingRead(context.getNode().getTextContent());
+        }
+        builderAssistant.addMappedStatement(methodName, sqlSource, sqlCommandType, resultMap, resultTypeClass, langDriver, keyGenerator,
+                flushCache, useCache, fetchSize, coalesce, scatter, mergeOrder, tables, useMaster);
     }
 
     private LanguageDriver getLanguageDriver() {
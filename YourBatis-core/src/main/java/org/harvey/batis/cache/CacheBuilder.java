@@ -0,0 +1,195 @@
+package org.harvey.batis.cache;
+
+import org.harvey.batis.cache.decorators.BlockingCache;
+import org.harvey.batis.cache.decorators.FifoCache;
+import org.harvey.batis.cache.decorators.LruCache;
+import org.harvey.batis.cache.decorators.RefreshAheadCache;
+import org.harvey.batis.cache.decorators.ScheduledCache;
+import org.harvey.batis.cache.decorators.SoftCache;
+import org.harvey.batis.cache.decorators.StripedCache;
+import org.harvey.batis.cache.decorators.SynchronizedCache;
+import org.harvey.batis.cache.decorators.WeakCache;
+import org.harvey.batis.exception.cache.CacheException;
+import org.harvey.batis.util.enums.CacheEviction;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 组装命名空间的二级缓存<br>
+ * 装饰顺序由内到外: {@link PerpetualCache}或{@link OffHeapCache} - 淘汰策略 - {@link ScheduledCache}
+ * - {@link SynchronizedCache}或{@link StripedCache} - {@link BlockingCache} - {@link RefreshAheadCache}<br>
+ * 为null的配置项使用默认值
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 11:10
+ * @see org.harvey.batis.builder.MapperBuilderAssistant#useNewCache(CacheEviction, Integer, Long, Boolean, Integer)
+ */
+public class CacheBuilder {
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final String id;
+    private CacheEviction eviction;
+    private Integer size;
+    private Long flushInterval;
+    private boolean blocking;
+    private Integer stripes;
+    private Long offHeapCapacity;
+    private Long ttl;
+    private Long refreshAhead;
+    private Executor refreshExecutor;
+    private CacheStatistics.Counters statistics;
+
+    public CacheBuilder(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @param eviction 默认为{@link CacheEviction#LRU}
+     */
+    public CacheBuilder eviction(CacheEviction eviction) {
+        this.eviction = eviction;
+        return this;
+    }
+
+    /**
+     * @param size LRU和FIFO的容量, 默认为{@link #DEFAULT_SIZE}
+     */
+    public CacheBuilder size(Integer size) {
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * @param flushInterval 清空的间隔, 毫秒, 默认不定时清空
+     */
+    public CacheBuilder flushInterval(Long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * @param blocking 未命中时是否让其他线程等待查询结果, 默认为false
+     */
+    public CacheBuilder blocking(Boolean blocking) {
+        this.blocking = Boolean.TRUE.equals(blocking);
+        return this;
+    }
+
+    /**
+     * @param stripes 分段数, 大于1时使用{@link StripedCache}, 默认为1
+     */
+    public CacheBuilder stripes(Integer stripes) {
+        this.stripes = stripes;
+        return this;
+    }
+
+    /**
+     * @param offHeapCapacity 堆外存储的总容量, 字节, 大于0时使用{@link OffHeapCache}代替{@link PerpetualCache},
+     *                        此时淘汰策略默认为{@link CacheEviction#NONE}, 由堆外存储自己按块淘汰
+     */
+    public CacheBuilder offHeapCapacity(Long offHeapCapacity) {
+        this.offHeapCapacity = offHeapCapacity;
+        return this;
+    }
+
+    /**
+     * @param ttl 条目的存活时间, 毫秒, 大于0时使用{@link RefreshAheadCache}, 默认不过期
+     */
+    public CacheBuilder ttl(Long ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    /**
+     * @param refreshAhead 过期前多久开始异步刷新, 毫秒, 需要同时设置{@link #ttl}和{@link #refreshExecutor}
+     */
+    public CacheBuilder refreshAhead(Long refreshAhead) {
+        this.refreshAhead = refreshAhead;
+        return this;
+    }
+
+    /**
+     * @param refreshExecutor 执行提前刷新的线程池, 为null时不提前刷新
+     */
+    public CacheBuilder refreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+        return this;
+    }
+
+    /**
+     * @param statistics 记录淘汰数和堆外存储的字节数, 为null时不记录
+     */
+    public CacheBuilder statistics(CacheStatistics.Counters statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /**
+     * @throws CacheException 堆外存储使用了{@link CacheEviction#SOFT}或{@link CacheEviction#WEAK}
+     */
+    public Cache build() {
+        int stripeCount = stripes == null || stripes < 1 ? 1 : stripes;
+        int totalSize = size == null ? DEFAULT_SIZE : size;
+        // 每段至少能放一个
+        int stripeSize = Math.max(1, totalSize / stripeCount);
+        long stripeCapacity = this.isOffHeap() ? offHeapCapacity / stripeCount : 0;
+        Cache cache = stripeCount == 1 ?
+                new SynchronizedCache(this.buildStripe(stripeSize, stripeCapacity)) :
+                new StripedCache(id, stripeCount, i -> this.buildStripe(stripeSize, stripeCapacity));
+        // 提前刷新的值绕过BlockingCache写入
+        Cache unblocked = cache;
+        if (blocking) {
+            cache = new BlockingCache(cache);
+        }
+        if (ttl != null && ttl > 0) {
+            long refreshAheadMillis = refreshAhead == null || refreshExecutor == null ? 0 : refreshAhead;
+            cache = new RefreshAheadCache(cache, unblocked, ttl, refreshAheadMillis, refreshExecutor);
+        }
+        return cache;
+    }
+
+    /**
+     * @return 非线程安全的一段
+     */
+    private Cache buildStripe(int stripeSize, long stripeCapacity) {
+        Cache cache;
+        CacheEviction evictionToUse = eviction;
+        if (this.isOffHeap()) {
+            if (eviction == CacheEviction.SOFT || eviction == CacheEviction.WEAK) {
+                // 引用包装后的值无法序列化到堆外
+                throw new CacheException("Eviction " + eviction + " is not supported by off-heap cache " + id);
+            }
+            cache = new OffHeapCache(id, stripeCapacity, statistics);
+            if (evictionToUse == null) {
+                evictionToUse = CacheEviction.NONE;
+            }
+        } else {
+            cache = new PerpetualCache(id);
+        }
+        switch (evictionToUse == null ? CacheEviction.LRU : evictionToUse) {
+            case LRU:
+                cache = new LruCache(cache, stripeSize, statistics);
+                break;
+            case FIFO:
+                cache = new FifoCache(cache, stripeSize, statistics);
+                break;
+            case SOFT:
+                cache = new SoftCache(cache);
+                break;
+            case WEAK:
+                cache = new WeakCache(cache);
+                break;
+            default:
+                break;
+        }
+        if (flushInterval != null && flushInterval > 0) {
+            cache = new ScheduledCache(cache, flushInterval);
+        }
+        return cache;
+    }
+
+    private boolean isOffHeap() {
+        return offHeapCapacity != null && offHeapCapacity > 0;
+    }
+}
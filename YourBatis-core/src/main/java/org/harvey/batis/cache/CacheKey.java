@@ -4,13 +4,14 @@ import org.harvey.batis.exception.cache.CacheException;
 import org.harvey.batis.util.ArrayUtil;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.StringJoiner;
 
 /**
  * 实例化{@link #CacheKey(Object...)}
- * 实现hashcode,equals, 是应对更全面, 更强大的key
+ * 实现hashcode,equals, 是应对更全面, 更强大的key<br>
+ * 组成部分存储在预分配的数组中; 不变的前缀可以先构建好, 再用{@link #CacheKey(CacheKey, int)}复制,
+ * 只对变化的部分计算hash
  *
  * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
  * @version 1.0
@@ -36,6 +37,7 @@ public class CacheKey implements Cloneable, Serializable {
      * 默认Hash码(的初始值)
      */
     private static final int DEFAULT_HASHCODE = 17;
+    private static final int DEFAULT_CAPACITY = 8;
 
     /**
      * @see #update(Object)
@@ -54,21 +56,35 @@ public class CacheKey implements Cloneable, Serializable {
     private int count;
     /**
      * {@link #CacheKey(Object...)}<br>
-     * 参数的所有实体的存储
+     * 参数的所有实体的存储, 前{@link #count}个有效
      */
-    private List<Object> updateList;
+    private Object[] components;
 
 
     public CacheKey(Object... objects) {
         this.hashcode = DEFAULT_HASHCODE;
         this.count = 0;
-        this.updateList = new ArrayList<>();
         if (objects == null || objects.length == 0) {
+            this.components = new Object[DEFAULT_CAPACITY];
             return;
         }
+        this.components = new Object[objects.length];
         this.updateAll(objects);
     }
 
+    /**
+     * 以prefix为前缀, 继续{@link #update(Object)}的结果与从头update所有实体的结果相同<br>
+     * prefix的hash已经算好, 只复制其状态
+     *
+     * @param expectedUpdates 预计还会update的实体个数, 用于预分配
+     */
+    public CacheKey(CacheKey prefix, int expectedUpdates) {
+        this.hashcode = prefix.hashcode;
+        this.checksum = prefix.checksum;
+        this.count = prefix.count;
+        this.components = Arrays.copyOf(prefix.components, prefix.count + Math.max(0, expectedUpdates));
+    }
+
 
     public void updateAll(Object... objects) {
         for (Object o : objects) {
@@ -81,7 +97,10 @@ public class CacheKey implements Cloneable, Serializable {
         count++;
         checksum += baseHashCode;
         hashcode = DEFAULT_MULTIPLIER * hashcode + baseHashCode * count;
-        updateList.add(object);
+        if (count > components.length) {
+            components = Arrays.copyOf(components, Math.max(DEFAULT_CAPACITY, components.length * 2));
+        }
+        components[count - 1] = object;
     }
 
     @Override
@@ -108,11 +127,12 @@ public class CacheKey implements Cloneable, Serializable {
         if (count != cacheKey.count) {
             return false;
         }
-        // 比较updateList中每个元素按顺序各自比较
-        for (int i = 0; i < updateList.size(); i++) {
-            Object thisObject = updateList.get(i);
-            Object thatObject = cacheKey.updateList.get(i);
-            if (!ArrayUtil.equals(thisObject, thatObject)) {
+        // 比较components中每个元素按顺序各自比较
+        for (int i = 0; i < count; i++) {
+            Object thisObject = components[i];
+            Object thatObject = cacheKey.components[i];
+            // 同一前缀复制出的key共享前缀的实体, 不必再调用equals
+            if (thisObject != thatObject && !ArrayUtil.equals(thisObject, thatObject)) {
                 return false;
             }
         }
@@ -129,18 +149,20 @@ public class CacheKey implements Cloneable, Serializable {
 
     /**
      * @return <pre>{@code
-     *  "hashcode:checksum:updateList[0]:...."
+     *  "hashcode:checksum:components[0]:...."
      * }</pre>
      * @see #hashcode
      * @see #checksum
-     * @see #updateList
+     * @see #components
      */
     @Override
     public String toString() {
         StringJoiner returnValue = new StringJoiner(":");
         returnValue.add(String.valueOf(hashcode));
         returnValue.add(String.valueOf(checksum));
-        updateList.stream().map(ArrayUtil::toString).forEach(returnValue::add);
+        for (int i = 0; i < count; i++) {
+            returnValue.add(ArrayUtil.toString(components[i]));
+        }
         return returnValue.toString();
     }
 
@@ -148,8 +170,8 @@ public class CacheKey implements Cloneable, Serializable {
     public CacheKey clone() throws CloneNotSupportedException {
         // 将hashcode和checksum直接拷贝
         CacheKey clonedCacheKey = (CacheKey) super.clone();
-        // 将ArrayList深拷贝
-        clonedCacheKey.updateList = new ArrayList<>(this.updateList);
+        // 将数组深拷贝
+        clonedCacheKey.components = Arrays.copyOf(this.components, this.components.length);
         return clonedCacheKey;
     }
 
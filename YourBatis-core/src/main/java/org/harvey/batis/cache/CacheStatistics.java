@@ -0,0 +1,167 @@
+package org.harvey.batis.cache;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存的统计, 按缓存id和语句id分别计数, 在所有会话之间共享<br>
+ * 缓存id是命名空间的二级缓存的id, 以及所有会话的一级缓存合计的
+ * {@link org.harvey.batis.executor.BaseExecutor#LOCAL_CACHE_ID}<br>
+ * 语句的命中包括一级和二级缓存, 未命中即访问了数据库, 加载时间是查询数据库的时间<br>
+ * 计数器都是{@link LongAdder}, 并发的计数互不阻塞; {@link #cacheSnapshots()}和{@link #statementSnapshots()}得到某一时刻的副本
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 18:30
+ * @see org.harvey.batis.config.Configuration#getCacheStatistics()
+ */
+public class CacheStatistics {
+    private final ConcurrentHashMap<String, Counters> caches = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counters> statements = new ConcurrentHashMap<>();
+
+    public Counters forCache(String cacheId) {
+        return CacheStatistics.countersOf(caches, cacheId);
+    }
+
+    public Counters forStatement(String statementId) {
+        return CacheStatistics.countersOf(statements, statementId);
+    }
+
+    /**
+     * @return 缓存id到统计, 按id排序, 不可修改
+     */
+    public Map<String, Snapshot> cacheSnapshots() {
+        return CacheStatistics.snapshotsOf(caches);
+    }
+
+    /**
+     * @return 语句id到统计, 按id排序, 不可修改
+     */
+    public Map<String, Snapshot> statementSnapshots() {
+        return CacheStatistics.snapshotsOf(statements);
+    }
+
+    /**
+     * 原地清零所有计数器, 而不是移除它们: 缓存和执行器在创建时就持有了各自的{@link Counters}
+     */
+    public void reset() {
+        caches.values().forEach(Counters::reset);
+        statements.values().forEach(Counters::reset);
+    }
+
+    private static Counters countersOf(ConcurrentHashMap<String, Counters> map, String id) {
+        // 已经存在时不进入computeIfAbsent的锁
+        Counters counters = map.get(id);
+        return counters != null ? counters : map.computeIfAbsent(id, k -> new Counters());
+    }
+
+    private static Map<String, Snapshot> snapshotsOf(Map<String, Counters> map) {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        map.forEach((id, counters) -> snapshots.put(id, counters.snapshot()));
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    public static class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder puts = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder estimatedBytes = new LongAdder();
+        private final LongAdder loadNanos = new LongAdder();
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        public void put() {
+            puts.increment();
+        }
+
+        public void evicted(long count) {
+            evictions.add(count);
+        }
+
+        /**
+         * @param delta 放入时为正, 移除时为负
+         */
+        public void bytes(long delta) {
+            estimatedBytes.add(delta);
+        }
+
+        /**
+         * 一次未命中后查询数据库用的时间
+         */
+        public void loaded(long nanos) {
+            loadNanos.add(nanos);
+        }
+
+        /**
+         * 清零计数, {@link #estimatedBytes}是当前占用的大小而不是累计值, 保留
+         */
+        public void reset() {
+            hits.sumThenReset();
+            misses.sumThenReset();
+            puts.sumThenReset();
+            evictions.sumThenReset();
+            loadNanos.sumThenReset();
+        }
+
+        public Snapshot snapshot() {
+            return new Snapshot(hits.sum(), misses.sum(), puts.sum(), evictions.sum(),
+                    estimatedBytes.sum(), loadNanos.sum());
+        }
+    }
+
+    @Getter
+    public static class Snapshot {
+        private final long hits;
+        private final long misses;
+        private final long puts;
+        private final long evictions;
+        /**
+         * 只有估算或序列化了结果的缓存(一级缓存, 堆外缓存)才有
+         */
+        private final long estimatedBytes;
+        private final long loadNanos;
+
+        private Snapshot(long hits, long misses, long puts, long evictions, long estimatedBytes, long loadNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.evictions = evictions;
+            this.estimatedBytes = estimatedBytes;
+            this.loadNanos = loadNanos;
+        }
+
+        /**
+         * @return 没有访问过时为0
+         */
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /**
+         * @return 平均每次加载的纳秒数, 没有加载过时为0
+         */
+        public long getAverageLoadNanos() {
+            return misses == 0 ? 0 : loadNanos / misses;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", hitRatio=" + String.format("%.3f", this.getHitRatio()) +
+                    ", puts=" + puts + ", evictions=" + evictions + ", estimatedBytes=" + estimatedBytes +
+                    ", averageLoadNanos=" + this.getAverageLoadNanos();
+        }
+    }
+}
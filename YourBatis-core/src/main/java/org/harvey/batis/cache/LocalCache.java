@@ -0,0 +1,156 @@
+package org.harvey.batis.cache;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 有界的一级缓存(本地缓存)<br>
+ * 同时限制条目数和估算的字节数({@link ObjectSizeEstimator}), 超出任意一个就淘汰最久未访问的条目<br>
+ * 单个结果就超过字节上限时不缓存. 与{@link PerpetualCache}一样线程不安全, 只在一个会话内使用<br>
+ * 条目可以记录它读的表, 写语句只移除读了它写的表的条目, 见{@link #removeByTables(Collection)}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 16:40
+ * @see org.harvey.batis.executor.BaseExecutor
+ */
+public class LocalCache implements Cache {
+    private final String id;
+    private final int maxEntries;
+    private final long maxBytes;
+    /**
+     * 访问顺序的LinkedHashMap, 最久未访问的在最前
+     */
+    private final LinkedHashMap<Object, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 所有条目估算的字节数之和
+     */
+    @Getter
+    private long estimatedBytes;
+    /**
+     * 所有会话的一级缓存共用的统计, 可以为null
+     */
+    private final CacheStatistics.Counters counters;
+
+    private static class Entry {
+        private final Object value;
+        private final long bytes;
+        /**
+         * 为null表示读的表未知
+         */
+        private final Set<String> tables;
+
+        private Entry(Object value, long bytes, Set<String> tables) {
+            this.value = value;
+            this.bytes = bytes;
+            this.tables = tables;
+        }
+    }
+
+    /**
+     * @param maxEntries 最多缓存的条目数
+     * @param maxBytes   所有条目估算的字节数上限
+     */
+    public LocalCache(String id, int maxEntries, long maxBytes) {
+        this(id, maxEntries, maxBytes, null);
+    }
+
+    /**
+     * @param counters 记录淘汰数和估算的字节数
+     */
+    public LocalCache(String id, int maxEntries, long maxBytes, CacheStatistics.Counters counters) {
+        this.id = id;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.counters = counters;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        this.putObject(key, value, null);
+    }
+
+    /**
+     * @param tables 结果读的表, 为null表示未知
+     */
+    public void putObject(Object key, Object value, Set<String> tables) {
+        long bytes = ObjectSizeEstimator.estimate(value);
+        this.removeObject(key);
+        if (bytes > maxBytes || maxEntries <= 0) {
+            return;
+        }
+        cache.put(key, new Entry(value, bytes, tables));
+        this.addBytes(bytes);
+        this.evict();
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Entry entry = cache.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Entry entry = cache.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        this.addBytes(-entry.bytes);
+        return entry.value;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        this.addBytes(-estimatedBytes);
+    }
+
+    /**
+     * 移除读了其中某个表的条目, 以及读的表未知的条目
+     */
+    public void removeByTables(Collection<String> tables) {
+        Iterator<Map.Entry<Object, Entry>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.tables == null || !Collections.disjoint(entry.tables, tables)) {
+                this.addBytes(-entry.bytes);
+                it.remove();
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Object, Entry>> it = cache.entrySet().iterator();
+        while ((cache.size() > maxEntries || estimatedBytes > maxBytes) && it.hasNext()) {
+            this.addBytes(-it.next().getValue().bytes);
+            it.remove();
+            if (counters != null) {
+                counters.evicted(1);
+            }
+        }
+    }
+
+    private void addBytes(long delta) {
+        estimatedBytes += delta;
+        if (counters != null) {
+            counters.bytes(delta);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.harvey.batis.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 粗略估算对象占用的堆内存字节数, 用于限制缓存的大小<br>
+ * 不追求精确, 只追求廉价: 集合只抽样前{@link #SAMPLE_SIZE}个元素再按数量放大,
+ * 对象只向下展开{@link #MAX_DEPTH}层
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 16:18
+ */
+public final class ObjectSizeEstimator {
+    private static final int SAMPLE_SIZE = 8;
+    private static final int MAX_DEPTH = 3;
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 8;
+    /**
+     * 每个类需要估算的实例字段, 无法访问的类为空数组
+     */
+    private static final Map<Class<?>, Field[]> FIELDS_CACHE = new ConcurrentHashMap<>();
+
+    private ObjectSizeEstimator() {
+    }
+
+    public static long estimate(Object value) {
+        return ObjectSizeEstimator.estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null || value instanceof Enum || value instanceof Class) {
+            // 共享的对象不计入
+            return 0;
+        }
+        if (value instanceof String) {
+            return OBJECT_HEADER + 24 + 2L * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return OBJECT_HEADER + 8;
+        }
+        if (value instanceof Date || value instanceof Temporal) {
+            return OBJECT_HEADER + 16;
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            return ObjectSizeEstimator.estimateArray(value, type.getComponentType(), depth);
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return OBJECT_HEADER + 24 + REFERENCE * collection.size()
+                    + ObjectSizeEstimator.estimateElements(collection, collection.size(), depth);
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            // 每个Entry约32字节
+            return OBJECT_HEADER + 32 + 32L * map.size()
+                    + ObjectSizeEstimator.estimateElements(map.keySet(), map.size(), depth)
+                    + ObjectSizeEstimator.estimateElements(map.values(), map.size(), depth);
+        }
+        return ObjectSizeEstimator.estimateFields(value, depth);
+    }
+
+    /**
+     * 抽样估算元素, 再按总数放大
+     */
+    private static long estimateElements(Iterable<?> elements, int size, int depth) {
+        if (size == 0) {
+            return 0;
+        }
+        long sampled = 0;
+        int count = 0;
+        for (Iterator<?> it = elements.iterator(); it.hasNext() && count < SAMPLE_SIZE; count++) {
+            sampled += ObjectSizeEstimator.estimate(it.next(), depth + 1);
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+
+    private static long estimateArray(Object array, Class<?> componentType, int depth) {
+        int length = Array.getLength(array);
+        if (componentType.isPrimitive()) {
+            long width = componentType == byte.class || componentType == boolean.class ? 1 :
+                    componentType == char.class || componentType == short.class ? 2 :
+                            componentType == long.class || componentType == double.class ? 8 : 4;
+            return OBJECT_HEADER + width * length;
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_HEADER + REFERENCE * length;
+        }
+        return OBJECT_HEADER + REFERENCE * length
+                + ObjectSizeEstimator.estimateElements(Arrays.asList((Object[]) array), length, depth);
+    }
+
+    private static long estimateFields(Object value, int depth) {
+        Field[] fields = FIELDS_CACHE.computeIfAbsent(value.getClass(), ObjectSizeEstimator::accessibleFields);
+        long size = OBJECT_HEADER + REFERENCE * fields.length;
+        for (Field field : fields) {
+            try {
+                size += ObjectSizeEstimator.estimate(field.get(value), depth + 1);
+            } catch (IllegalAccessException ignored) {
+                // 已经setAccessible, 不会发生
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 包括父类在内的所有非静态的引用类型字段, 基本类型只占固定宽度, 已计入{@link #REFERENCE}
+     */
+    private static Field[] accessibleFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    // JDK内部的类不允许反射, 只按对象头估算
+                    return new Field[0];
+                }
+                fields.add(field);
+            }
+        }
+        return fields.toArray(new Field[0]);
+    }
+}
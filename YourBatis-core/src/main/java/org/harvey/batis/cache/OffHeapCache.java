@@ -0,0 +1,294 @@
+package org.harvey.batis.cache;
+
+import lombok.Getter;
+import org.harvey.batis.exception.cache.CacheException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外的二级缓存存储, 可以代替{@link PerpetualCache}作为装饰链的最内层<br>
+ * 结果被序列化后写入若干块直接内存({@link ByteBuffer#allocateDirect(int)}), 堆上只保留key到位置的索引,
+ * 读取时再反序列化, 所以缓存再大也不会增加老年代的压力<br>
+ * 多个块组成一个环, 按顺序追加写入; 写满后淘汰最早写入的整块, 其中的条目全部失效<br>
+ * 结果必须是{@link Serializable}的. 线程不安全, 需要外层的{@link org.harvey.batis.cache.decorators.SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 14:20
+ * @see CacheBuilder#offHeapCapacity(Long)
+ */
+public class OffHeapCache implements Cache {
+    /**
+     * 块的个数, 淘汰的粒度是总容量的1/SLAB_COUNT
+     */
+    private static final int SLAB_COUNT = 16;
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+
+    private final String id;
+    private final int slabSize;
+    private final Slab[] slabs = new Slab[SLAB_COUNT];
+    /**
+     * 正在写入的块
+     */
+    private int current;
+    private final Map<Object, Location> index = new HashMap<>();
+    /**
+     * 序列化用的缓冲区, 复用以减少分配
+     */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    @Getter
+    private long hits;
+    @Getter
+    private long misses;
+    /**
+     * 因所在的块被淘汰而失效的条目数
+     */
+    @Getter
+    private long evictions;
+    /**
+     * 序列化后比一个块还大而没有缓存的条目数
+     */
+    @Getter
+    private long rejections;
+    /**
+     * 记录淘汰数和写入的字节数, 可以为null
+     */
+    private final CacheStatistics.Counters counters;
+
+    /**
+     * @param capacityBytes 堆外内存的总容量, 按需分配
+     */
+    public OffHeapCache(String id, long capacityBytes) {
+        this(id, capacityBytes, null);
+    }
+
+    public OffHeapCache(String id, long capacityBytes, CacheStatistics.Counters counters) {
+        this.id = id;
+        this.counters = counters;
+        long size = Math.max(MIN_SLAB_SIZE, capacityBytes / SLAB_COUNT);
+        this.slabSize = (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /**
+     * 条目在哪个块中的什么位置
+     */
+    private static class Location {
+        private final Slab slab;
+        private final int offset;
+        private final int length;
+
+        private Location(Slab slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Slab {
+        private final ByteBuffer buffer;
+        /**
+         * 写入本块的key, 淘汰时据此清理索引
+         */
+        private final List<Object> keys = new ArrayList<>();
+
+        private Slab(int size) {
+            this.buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        private void reset() {
+            buffer.clear();
+            keys.clear();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return index.size();
+    }
+
+    /**
+     * value为null时只移除旧值
+     *
+     * @throws CacheException value不能序列化
+     */
+    @Override
+    public void putObject(Object key, Object value) {
+        this.removeObject(key);
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = this.serialize(value);
+        if (bytes.length > slabSize) {
+            rejections++;
+            return;
+        }
+        Slab slab = this.slabFor(bytes.length);
+        int offset = slab.buffer.position();
+        slab.buffer.put(bytes);
+        slab.keys.add(key);
+        if (counters != null) {
+            counters.bytes(bytes.length);
+        }
+        index.put(key, new Location(slab, offset, bytes.length));
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Location location = index.get(key);
+        if (location == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        byte[] bytes = new byte[location.length];
+        ByteBuffer view = location.slab.buffer.duplicate();
+        view.position(location.offset);
+        view.get(bytes);
+        return this.deserialize(bytes);
+    }
+
+    /**
+     * 只移除索引, 占用的空间在所在的块被淘汰时才回收
+     */
+    @Override
+    public Object removeObject(Object key) {
+        index.remove(key);
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        for (Slab slab : slabs) {
+            if (slab != null) {
+                this.reset(slab);
+            }
+        }
+        current = 0;
+    }
+
+    /**
+     * @return 已经分配的堆外内存
+     */
+    public long getAllocatedBytes() {
+        long allocated = 0;
+        for (Slab slab : slabs) {
+            if (slab != null) {
+                allocated += slab.buffer.capacity();
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * @return 已经写入的字节数, 包括已经失效但还没有被淘汰的条目
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Slab slab : slabs) {
+            if (slab != null) {
+                used += slab.buffer.position();
+            }
+        }
+        return used;
+    }
+
+    public long getCapacityBytes() {
+        return (long) slabSize * SLAB_COUNT;
+    }
+
+    /**
+     * 当前块放不下时切换到下一块, 下一块中有数据则整块淘汰
+     */
+    private Slab slabFor(int length) {
+        Slab slab = this.slabAt(current);
+        if (slab.buffer.remaining() >= length) {
+            return slab;
+        }
+        current = (current + 1) % SLAB_COUNT;
+        slab = this.slabAt(current);
+        this.evict(slab);
+        return slab;
+    }
+
+    private Slab slabAt(int i) {
+        if (slabs[i] == null) {
+            slabs[i] = new Slab(slabSize);
+        }
+        return slabs[i];
+    }
+
+    private void evict(Slab slab) {
+        long evicted = 0;
+        for (Object key : slab.keys) {
+            Location location = index.get(key);
+            if (location != null && location.slab == slab) {
+                index.remove(key);
+                evicted++;
+            }
+        }
+        evictions += evicted;
+        if (counters != null) {
+            counters.evicted(evicted);
+        }
+        this.reset(slab);
+    }
+
+    private void reset(Slab slab) {
+        if (counters != null) {
+            counters.bytes(-slab.buffer.position());
+        }
+        slab.reset();
+    }
+
+    private byte[] serialize(Object value) {
+        buffer.reset();
+        try (ObjectOutputStream oos = new ObjectOutputStream(buffer)) {
+            // 同一个流中重复出现的类只写一次类描述, 结果列表中的每一行只写字段值
+            oos.writeObject(value);
+        } catch (IOException e) {
+            throw new CacheException("Error serializing object into off-heap cache " + id + ".  Cause: " + e, e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Error deserializing object from off-heap cache " + id + ".  Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+        return id.equals(((Cache) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
@@ -0,0 +1,110 @@
+package org.harvey.batis.cache;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个表的版本号, 用于按表失效二级缓存, 在所有会话和命名空间之间共享<br>
+ * 缓存结果时记下它读的表当时的版本({@link Stamp}), 写语句提交时增加它写的表的版本;
+ * 读缓存时版本不一致的结果视为未命中. 失效是O(写的表数), 不需要遍历缓存<br>
+ * 读的表未知的查询使用命名空间的伪表({@link #namespaceTable(Cache)}),
+ * 同一命名空间中任何写语句都会增加它的版本
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 16:20
+ * @see org.harvey.batis.cache.TransactionalCacheManager
+ */
+public class TableVersions {
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @return 代表该缓存中读的表未知的那些结果的伪表
+     */
+    public static String namespaceTable(Cache cache) {
+        return "#" + cache.getId();
+    }
+
+    /**
+     * 在查询执行之前记下版本, 这样查询期间提交的写会让这次的结果失效
+     */
+    public Stamp stamp(Collection<String> tables) {
+        String[] names = tables.toArray(new String[0]);
+        long[] stamped = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            stamped[i] = this.versionOf(names[i]).get();
+        }
+        return new Stamp(names, stamped);
+    }
+
+    public void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            this.versionOf(table).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 记下版本之后这些表都没有被写过
+     */
+    public boolean isCurrent(Stamp stamp) {
+        for (int i = 0; i < stamp.tables.length; i++) {
+            AtomicLong version = versions.get(stamp.tables[i]);
+            if (version == null || version.get() != stamp.versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AtomicLong versionOf(String table) {
+        return versions.computeIfAbsent(table, k -> new AtomicLong());
+    }
+
+    /**
+     * 一次查询读的表和当时的版本
+     */
+    public static class Stamp implements Serializable {
+        private final String[] tables;
+        private final long[] versions;
+
+        private Stamp(String[] tables, long[] versions) {
+            this.tables = tables;
+            this.versions = versions;
+        }
+
+        /**
+         * @return 读了其中的某个表
+         */
+        public boolean readsAny(Collection<String> tables) {
+            for (String table : this.tables) {
+                if (tables.contains(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 二级缓存中实际存储的值, 带着结果读的表的版本
+     */
+    public static class Stamped implements Serializable {
+        private final Object value;
+        private final Stamp stamp;
+
+        public Stamped(Object value, Stamp stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public Stamp getStamp() {
+            return stamp;
+        }
+    }
+}
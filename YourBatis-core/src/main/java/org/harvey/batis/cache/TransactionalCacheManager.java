@@ -0,0 +1,122 @@
+package org.harvey.batis.cache;
+
+import org.harvey.batis.cache.decorators.RefreshAheadCache;
+import org.harvey.batis.cache.decorators.TransactionalCache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 管理一个会话用到的所有{@link TransactionalCache}, 每个二级缓存对应一个<br>
+ * 本会话写过的表在commit时才增加版本({@link TableVersions}), 在此之前本会话读这些表时不使用二级缓存
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-05 19:41
+ * @see org.harvey.batis.executor.CachingExecutor
+ */
+public class TransactionalCacheManager {
+    private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+    private final TableVersions tableVersions;
+    /**
+     * 为null时不统计二级缓存的放入数
+     */
+    private final CacheStatistics statistics;
+    /**
+     * 本事务中写过的表
+     */
+    private final Set<String> tablesToInvalidateOnCommit = new HashSet<>();
+
+    public TransactionalCacheManager(TableVersions tableVersions) {
+        this(tableVersions, null);
+    }
+
+    /**
+     * @param statistics 提交时统计写入各二级缓存的结果数
+     */
+    public TransactionalCacheManager(TableVersions tableVersions, CacheStatistics statistics) {
+        this.tableVersions = tableVersions;
+        this.statistics = statistics;
+    }
+
+    public void clear(Cache cache) {
+        this.getTransactionalCache(cache).clear();
+    }
+
+    /**
+     * 记录本事务写过的表, commit时才使它们的缓存失效
+     */
+    public void invalidate(Collection<String> tables) {
+        tablesToInvalidateOnCommit.addAll(tables);
+    }
+
+    /**
+     * 在查询数据库之前记下读的表的版本
+     */
+    public TableVersions.Stamp stamp(Collection<String> readTables) {
+        return tableVersions.stamp(readTables);
+    }
+
+    /**
+     * @param readTables 结果读的表, 其中有本事务写过的表时, 缓存中的都是旧值, 直接视为未命中
+     */
+    public Object getObject(Cache cache, CacheKey key, Collection<String> readTables) {
+        if (this.writtenAny(readTables)) {
+            return null;
+        }
+        return this.getTransactionalCache(cache).getObject(key);
+    }
+
+    /**
+     * @param stamp  查询之前记下的版本, 读了本事务写过的表的结果不缓存
+     * @param loader 不为null时附带在值上, 供{@link RefreshAheadCache}提前刷新
+     */
+    public void putObject(Cache cache, CacheKey key, Object value, TableVersions.Stamp stamp,
+                          RefreshAheadCache.Loader loader) {
+        if (!tablesToInvalidateOnCommit.isEmpty() && stamp.readsAny(tablesToInvalidateOnCommit)) {
+            return;
+        }
+        Object stamped = new TableVersions.Stamped(value, stamp);
+        this.getTransactionalCache(cache).putObject(key, loader == null ? stamped : new RefreshAheadCache.Loadable(stamped, loader));
+    }
+
+    /**
+     * 先增加写过的表的版本, 再写入本事务缓存的结果
+     */
+    public void commit() {
+        if (!tablesToInvalidateOnCommit.isEmpty()) {
+            tableVersions.invalidate(tablesToInvalidateOnCommit);
+            tablesToInvalidateOnCommit.clear();
+        }
+        for (TransactionalCache txCache : transactionalCaches.values()) {
+            txCache.commit();
+        }
+    }
+
+    public void rollback() {
+        tablesToInvalidateOnCommit.clear();
+        for (TransactionalCache txCache : transactionalCaches.values()) {
+            txCache.rollback();
+        }
+    }
+
+    private boolean writtenAny(Collection<String> readTables) {
+        if (tablesToInvalidateOnCommit.isEmpty()) {
+            return false;
+        }
+        for (String table : readTables) {
+            if (tablesToInvalidateOnCommit.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TransactionalCache getTransactionalCache(Cache cache) {
+        return transactionalCaches.computeIfAbsent(cache, c -> new TransactionalCache(c, tableVersions,
+                statistics == null ? null : statistics.forCache(c.getId())));
+    }
+}
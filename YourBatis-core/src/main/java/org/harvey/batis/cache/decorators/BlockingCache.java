@@ -0,0 +1,143 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.exception.cache.CacheException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未命中时阻塞的装饰器<br>
+ * 某个key未命中时, 查询的线程持有该key的锁, 直到它{@link #putObject}或{@link #removeObject}才释放;
+ * 其间其他线程读同一个key会等待, 而不是同时去查数据库<br>
+ * 由{@link TransactionalCache}在commit时放入结果(可能为null), rollback时移除, 从而释放锁<br>
+ * 持有锁的线程再次读同一个key不会阻塞自己
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 10:30
+ */
+public class BlockingCache implements Cache {
+    private final Cache delegate;
+    /**
+     * 毫秒, 0表示一直等待
+     */
+    private final long timeout;
+    private final ConcurrentHashMap<Object, Lock> locks = new ConcurrentHashMap<>();
+
+    public BlockingCache(Cache delegate) {
+        this(delegate, 0);
+    }
+
+    /**
+     * @param timeout 等待锁的超时时间, 毫秒, 0表示一直等待
+     */
+    public BlockingCache(Cache delegate, long timeout) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    /**
+     * 放入后释放该key的锁
+     */
+    @Override
+    public void putObject(Object key, Object value) {
+        try {
+            delegate.putObject(key, value);
+        } finally {
+            this.releaseLock(key);
+        }
+    }
+
+    /**
+     * 命中则释放锁, 未命中则继续持有
+     *
+     * @throws CacheException 等待超时
+     */
+    @Override
+    public Object getObject(Object key) {
+        this.acquireLock(key);
+        Object value = delegate.getObject(key);
+        if (value != null) {
+            this.releaseLock(key);
+        }
+        return value;
+    }
+
+    /**
+     * 只释放锁, 不移除缓存中的值
+     */
+    @Override
+    public Object removeObject(Object key) {
+        this.releaseLock(key);
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    private void acquireLock(Object key) {
+        Thread current = Thread.currentThread();
+        Lock newLock = new Lock(current);
+        while (true) {
+            Lock lock = locks.putIfAbsent(key, newLock);
+            if (lock == null || lock.owner == current) {
+                return;
+            }
+            try {
+                if (timeout > 0) {
+                    if (!lock.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                        throw new CacheException("Couldn't get a lock in " + timeout + " for the key " + key + " at the cache " + delegate.getId());
+                    }
+                } else {
+                    lock.latch.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+            }
+        }
+    }
+
+    private void releaseLock(Object key) {
+        Lock lock = locks.remove(key);
+        if (lock != null) {
+            lock.latch.countDown();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+
+    /**
+     * 由未命中的线程创建, 可以由任意线程释放(commit可能发生在其他线程)
+     */
+    private static class Lock {
+        private final Thread owner;
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private Lock(Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
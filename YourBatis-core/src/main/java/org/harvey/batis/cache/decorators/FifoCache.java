@@ -0,0 +1,95 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheStatistics;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 先进先出的淘汰装饰器<br>
+ * 超过容量时从{@link #delegate}中移除最早放入的key<br>
+ * 不是线程安全的, 需要外层的{@link SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 09:35
+ */
+public class FifoCache implements Cache {
+    private final Cache delegate;
+    /**
+     * 按放入顺序排列的key
+     */
+    private final Set<Object> keys;
+    private final int size;
+    /**
+     * 记录淘汰数, 可以为null
+     */
+    private final CacheStatistics.Counters counters;
+
+    public FifoCache(Cache delegate, int size) {
+        this(delegate, size, null);
+    }
+
+    public FifoCache(Cache delegate, int size, CacheStatistics.Counters counters) {
+        this.delegate = delegate;
+        this.keys = new LinkedHashSet<>();
+        this.size = size;
+        this.counters = counters;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    /**
+     * 同一个key重复放入时不改变其位置
+     */
+    @Override
+    public void putObject(Object key, Object value) {
+        delegate.putObject(key, value);
+        if (keys.add(key) && keys.size() > size) {
+            Iterator<Object> eldest = keys.iterator();
+            Object eldestKey = eldest.next();
+            eldest.remove();
+            delegate.removeObject(eldestKey);
+            if (counters != null) {
+                counters.evicted(1);
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        keys.remove(key);
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        keys.clear();
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+}
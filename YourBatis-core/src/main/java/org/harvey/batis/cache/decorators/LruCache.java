@@ -0,0 +1,102 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近最少使用的淘汰装饰器<br>
+ * 用访问顺序的{@link LinkedHashMap}记录key的访问顺序, 超过容量时从{@link #delegate}中移除最久未访问的key<br>
+ * 不是线程安全的, 需要外层的{@link SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 09:20
+ */
+public class LruCache implements Cache {
+    private final Cache delegate;
+    private final Map<Object, Object> keyMap;
+    /**
+     * 本次put时被挤出的key
+     */
+    private Object eldestKey;
+    /**
+     * 记录淘汰数, 可以为null
+     */
+    private final CacheStatistics.Counters counters;
+
+    public LruCache(Cache delegate, int size) {
+        this(delegate, size, null);
+    }
+
+    public LruCache(Cache delegate, int size, CacheStatistics.Counters counters) {
+        this.delegate = delegate;
+        this.counters = counters;
+        this.keyMap = new LinkedHashMap<Object, Object>(size, .75F, true) {
+            private static final long serialVersionUID = 4267176411845948333L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                boolean tooBig = this.size() > size;
+                if (tooBig) {
+                    eldestKey = eldest.getKey();
+                }
+                return tooBig;
+            }
+        };
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        delegate.putObject(key, value);
+        keyMap.put(key, key);
+        if (eldestKey != null) {
+            delegate.removeObject(eldestKey);
+            eldestKey = null;
+            if (counters != null) {
+                counters.evicted(1);
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        // 更新访问顺序
+        keyMap.get(key);
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        keyMap.remove(key);
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        keyMap.clear();
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+}
@@ -0,0 +1,191 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.io.log.Log;
+import org.harvey.batis.io.log.LogFactory;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条目有存活时间(TTL), 并在过期前提前异步刷新的装饰器, 适合变化缓慢的字典数据<br>
+ * 条目存活超过{@link #ttl}后视为未命中; 在过期前的{@link #refreshAhead}窗口内被读到时, 立即返回当前值,
+ * 同时在刷新线程池中重新执行原来的查询, 所以热点key的读取不会等待重新加载<br>
+ * 重新加载的方式由放入时的{@link Loadable}提供, 普通的值只有TTL, 不会提前刷新.
+ * 同一个key同时只有一个刷新任务<br>
+ * 需要是最外层的装饰器, 以便{@link org.harvey.batis.executor.CachingExecutor}附上{@link Loader}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 17:30
+ */
+public class RefreshAheadCache implements Cache {
+    private static final Log LOG = LogFactory.getLog(RefreshAheadCache.class);
+
+    private final Cache delegate;
+    /**
+     * 刷新得到的值写入的缓存, 是{@link #delegate}或其内层的缓存<br>
+     * 刷新在刷新线程中执行, 不能经过{@link BlockingCache}: 它的put会释放其他线程持有的key锁
+     */
+    private final Cache refreshTarget;
+    /**
+     * 纳秒
+     */
+    private final long ttl;
+    /**
+     * 纳秒, 存活超过ttl - refreshAhead之后开始刷新
+     */
+    private final long refreshAhead;
+    private final Executor refreshExecutor;
+    /**
+     * 正在刷新的key
+     */
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 重新执行查询, 得到新的值
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Object load() throws Exception;
+    }
+
+    /**
+     * 放入时附带重新加载的方式, 只有值会存储到{@link #delegate}中
+     */
+    public static class Loadable {
+        private final Object value;
+        private final Loader loader;
+
+        public Loadable(Object value, Loader loader) {
+            this.value = value;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * {@link #delegate}中存储的值, loader不能序列化, 序列化后就不再提前刷新
+     */
+    private static class Entry implements Serializable {
+        private final Object value;
+        private final long loadedAt;
+        private final transient Loader loader;
+
+        private Entry(Object value, Loader loader) {
+            this.value = value;
+            this.loadedAt = System.nanoTime();
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * @param ttlMillis          存活时间, 毫秒
+     * @param refreshAheadMillis 过期前多久开始刷新, 毫秒, 0表示不提前刷新
+     * @param refreshExecutor    执行刷新的线程池, 为null时不提前刷新
+     */
+    public RefreshAheadCache(Cache delegate, long ttlMillis, long refreshAheadMillis, Executor refreshExecutor) {
+        this(delegate, delegate, ttlMillis, refreshAheadMillis, refreshExecutor);
+    }
+
+    /**
+     * @param refreshTarget delegate是{@link BlockingCache}时, 传入它装饰的缓存, 刷新的值直接写入其中
+     */
+    public RefreshAheadCache(Cache delegate, Cache refreshTarget, long ttlMillis, long refreshAheadMillis,
+                             Executor refreshExecutor) {
+        this.delegate = delegate;
+        this.refreshTarget = refreshTarget;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.refreshAhead = refreshExecutor == null ? 0 :
+                TimeUnit.MILLISECONDS.toNanos(Math.min(refreshAheadMillis, ttlMillis));
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    /**
+     * @param value 可以是{@link Loadable}
+     */
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            delegate.putObject(key, null);
+        } else if (value instanceof Loadable) {
+            Loadable loadable = (Loadable) value;
+            delegate.putObject(key, new Entry(loadable.value, loadable.loader));
+        } else {
+            delegate.putObject(key, new Entry(value, null));
+        }
+    }
+
+    /**
+     * 过期返回null; 在刷新窗口内返回当前值并触发刷新
+     */
+    @Override
+    public Object getObject(Object key) {
+        Object object = delegate.getObject(key);
+        if (!(object instanceof Entry)) {
+            return object;
+        }
+        Entry entry = (Entry) object;
+        long age = System.nanoTime() - entry.loadedAt;
+        if (age >= ttl) {
+            return null;
+        }
+        if (refreshAhead > 0 && age >= ttl - refreshAhead && entry.loader != null) {
+            this.refresh(key, entry.loader);
+        }
+        return entry.value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    private void refresh(Object key, Loader loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshTarget.putObject(key, new Entry(loader.load(), loader));
+                } catch (Exception e) {
+                    // 刷新失败时保留旧值, 过期后由下一次读取同步加载
+                    LOG.warn("Error refreshing cache entry " + key + " of cache " + delegate.getId() + ".  Cause: " + e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+}
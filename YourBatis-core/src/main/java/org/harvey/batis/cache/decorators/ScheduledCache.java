@@ -0,0 +1,87 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时清空的装饰器<br>
+ * 不启动额外的线程, 每次访问时检查距离上次清空是否已经超过{@link #clearInterval}<br>
+ * 不是线程安全的, 需要外层的{@link SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 10:15
+ */
+public class ScheduledCache implements Cache {
+    private final Cache delegate;
+    /**
+     * 纳秒
+     */
+    private final long clearInterval;
+    private long lastClear;
+
+    /**
+     * @param clearIntervalMillis 清空的间隔, 毫秒
+     */
+    public ScheduledCache(Cache delegate, long clearIntervalMillis) {
+        this.delegate = delegate;
+        this.clearInterval = TimeUnit.MILLISECONDS.toNanos(clearIntervalMillis);
+        this.lastClear = System.nanoTime();
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        this.clearWhenStale();
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        this.clearWhenStale();
+        delegate.putObject(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return this.clearWhenStale() ? null : delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        this.clearWhenStale();
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        lastClear = System.nanoTime();
+        delegate.clear();
+    }
+
+    /**
+     * @return 是否进行了清空
+     */
+    private boolean clearWhenStale() {
+        if (System.nanoTime() - lastClear > clearInterval) {
+            this.clear();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+}
@@ -0,0 +1,114 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 软引用的装饰器, 值在内存不足时由GC回收<br>
+ * 最近命中的{@link #numberOfHardLinks}个值被强引用, 不会被回收<br>
+ * 不是线程安全的, 需要外层的{@link SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 09:50
+ */
+public class SoftCache implements Cache {
+    private static final int DEFAULT_HARD_LINKS = 256;
+
+    private final Cache delegate;
+    private final Deque<Object> hardLinksToAvoidGarbageCollection = new ArrayDeque<>();
+    /**
+     * 被GC回收的值的引用会进入这个队列, 用于从{@link #delegate}中移除对应的key
+     */
+    private final ReferenceQueue<Object> queueOfGarbageCollectedEntries = new ReferenceQueue<>();
+    private final int numberOfHardLinks;
+
+    public SoftCache(Cache delegate) {
+        this(delegate, DEFAULT_HARD_LINKS);
+    }
+
+    public SoftCache(Cache delegate, int numberOfHardLinks) {
+        this.delegate = delegate;
+        this.numberOfHardLinks = numberOfHardLinks;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        this.removeGarbageCollectedItems();
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        this.removeGarbageCollectedItems();
+        delegate.putObject(key, new SoftEntry(key, value, queueOfGarbageCollectedEntries));
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        SoftEntry softReference = (SoftEntry) delegate.getObject(key);
+        if (softReference == null) {
+            return null;
+        }
+        Object result = softReference.get();
+        if (result == null) {
+            // 已经被回收
+            delegate.removeObject(key);
+            return null;
+        }
+        hardLinksToAvoidGarbageCollection.addFirst(result);
+        if (hardLinksToAvoidGarbageCollection.size() > numberOfHardLinks) {
+            hardLinksToAvoidGarbageCollection.removeLast();
+        }
+        return result;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        this.removeGarbageCollectedItems();
+        SoftEntry softReference = (SoftEntry) delegate.removeObject(key);
+        return softReference == null ? null : softReference.get();
+    }
+
+    @Override
+    public void clear() {
+        hardLinksToAvoidGarbageCollection.clear();
+        this.removeGarbageCollectedItems();
+        delegate.clear();
+    }
+
+    private void removeGarbageCollectedItems() {
+        SoftEntry sv;
+        while ((sv = (SoftEntry) queueOfGarbageCollectedEntries.poll()) != null) {
+            delegate.removeObject(sv.key);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+
+    private static class SoftEntry extends SoftReference<Object> {
+        private final Object key;
+
+        SoftEntry(Object key, Object value, ReferenceQueue<Object> garbageCollectionQueue) {
+            super(value, garbageCollectionQueue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+
+import java.util.function.IntFunction;
+
+/**
+ * 分段加锁的线程安全装饰器<br>
+ * 按key的哈希分到多个段, 每段是一个独立的{@link SynchronizedCache}, 不同段的读写互不阻塞<br>
+ * 淘汰在段内进行, 所以LRU/FIFO只在段内精确, 每段的容量是总容量除以段数
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 10:50
+ */
+public class StripedCache implements Cache {
+    private final String id;
+    private final Cache[] stripes;
+
+    /**
+     * @param stripeFactory 段的序号到该段的缓存, 返回的缓存不需要是线程安全的
+     */
+    public StripedCache(String id, int stripeCount, IntFunction<Cache> stripeFactory) {
+        this.id = id;
+        this.stripes = new Cache[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new SynchronizedCache(stripeFactory.apply(i));
+        }
+    }
+
+    private Cache stripeFor(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        // 与HashMap一样混合高位
+        h ^= (h >>> 16);
+        return stripes[Math.floorMod(h, stripes.length)];
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Cache stripe : stripes) {
+            size += stripe.getSize();
+        }
+        return size;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        this.stripeFor(key).putObject(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return this.stripeFor(key).getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        return this.stripeFor(key).removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        for (Cache stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Cache)) {
+            return false;
+        }
+        return id.equals(((Cache) obj).getId());
+    }
+}
@@ -0,0 +1,59 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+
+/**
+ * 线程安全的装饰器<br>
+ * 二级缓存在多个会话之间共享, 而{@link org.harvey.batis.cache.PerpetualCache}本身不是线程安全的
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-05 19:12
+ */
+public class SynchronizedCache implements Cache {
+    private final Cache delegate;
+
+    public SynchronizedCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public synchronized void putObject(Object key, Object value) {
+        delegate.putObject(key, value);
+    }
+
+    @Override
+    public synchronized Object getObject(Object key) {
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public synchronized Object removeObject(Object key) {
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+}
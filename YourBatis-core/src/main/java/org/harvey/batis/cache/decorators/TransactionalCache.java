@@ -0,0 +1,156 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheStatistics;
+import org.harvey.batis.cache.TableVersions;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 二级缓存的事务缓冲区<br>
+ * 一个会话对二级缓存的写入(包括清空)先暂存在这里, commit时才真正写入{@link #delegate},
+ * rollback时直接丢弃, 保证其他会话读不到未提交事务的查询结果
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-05 19:20
+ * @see org.harvey.batis.cache.TransactionalCacheManager
+ */
+public class TransactionalCache implements Cache {
+    /**
+     * 真正的二级缓存, 在会话之间共享
+     */
+    private final Cache delegate;
+    /**
+     * 本事务中是否清空过缓存, 为true时commit会先清空{@link #delegate}, 且事务内读不到{@link #delegate}中的旧值
+     */
+    private boolean clearOnCommit;
+    /**
+     * 为null时不检查{@link TableVersions.Stamped}的版本
+     */
+    private final TableVersions tableVersions;
+    /**
+     * 为null时不统计, commit时真正写入{@link #delegate}才计入放入数
+     */
+    private final CacheStatistics.Counters statistics;
+    private final Map<Object, Object> entriesToAddOnCommit;
+    /**
+     * 未命中的key, 用于在rollback时通知{@link #delegate}释放这些key
+     */
+    private final Set<Object> entriesMissedInCache;
+
+    public TransactionalCache(Cache delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param tableVersions 用于检查{@link TableVersions.Stamped}读的表在缓存之后是否被写过
+     */
+    public TransactionalCache(Cache delegate, TableVersions tableVersions) {
+        this(delegate, tableVersions, null);
+    }
+
+    /**
+     * @param statistics {@link #delegate}的统计, 为null时不统计
+     */
+    public TransactionalCache(Cache delegate, TableVersions tableVersions, CacheStatistics.Counters statistics) {
+        this.delegate = delegate;
+        this.tableVersions = tableVersions;
+        this.statistics = statistics;
+        this.clearOnCommit = false;
+        this.entriesToAddOnCommit = new HashMap<>();
+        this.entriesMissedInCache = new HashSet<>();
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    /**
+     * 读的表被写过的结果视为未命中
+     */
+    @Override
+    public Object getObject(Object key) {
+        Object object = delegate.getObject(key);
+        if (object instanceof TableVersions.Stamped) {
+            TableVersions.Stamped stamped = (TableVersions.Stamped) object;
+            boolean stale = tableVersions != null && !tableVersions.isCurrent(stamped.getStamp());
+            object = stale ? null : stamped.getValue();
+        }
+        if (object == null) {
+            entriesMissedInCache.add(key);
+        }
+        return clearOnCommit ? null : object;
+    }
+
+    /**
+     * 只暂存, commit时才写入
+     */
+    @Override
+    public void putObject(Object key, Object object) {
+        entriesToAddOnCommit.put(key, object);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        return null;
+    }
+
+    /**
+     * 只做标记, commit时才清空
+     */
+    @Override
+    public void clear() {
+        clearOnCommit = true;
+        entriesToAddOnCommit.clear();
+    }
+
+    public void commit() {
+        if (clearOnCommit) {
+            delegate.clear();
+        }
+        this.flushPendingEntries();
+        this.reset();
+    }
+
+    public void rollback() {
+        this.unlockMissedEntries();
+        this.reset();
+    }
+
+    private void reset() {
+        clearOnCommit = false;
+        entriesToAddOnCommit.clear();
+        entriesMissedInCache.clear();
+    }
+
+    private void flushPendingEntries() {
+        for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
+            delegate.putObject(entry.getKey(), entry.getValue());
+            if (statistics != null) {
+                statistics.put();
+            }
+        }
+        for (Object entry : entriesMissedInCache) {
+            if (!entriesToAddOnCommit.containsKey(entry)) {
+                // 查询了但结果不缓存的key, 也需要通知delegate
+                delegate.putObject(entry, null);
+            }
+        }
+    }
+
+    private void unlockMissedEntries() {
+        for (Object entry : entriesMissedInCache) {
+            delegate.removeObject(entry);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.harvey.batis.cache.decorators;
+
+import org.harvey.batis.cache.Cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * 弱引用的装饰器, 值只要没有被外部引用, 下一次GC时就可能被回收<br>
+ * 适合只希望在并发的查询之间共享结果, 而不长期占用内存的场景<br>
+ * 不是线程安全的, 需要外层的{@link SynchronizedCache}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 10:05
+ */
+public class WeakCache implements Cache {
+    private final Cache delegate;
+    /**
+     * 被GC回收的值的引用会进入这个队列, 用于从{@link #delegate}中移除对应的key
+     */
+    private final ReferenceQueue<Object> queueOfGarbageCollectedEntries = new ReferenceQueue<>();
+
+    public WeakCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        this.removeGarbageCollectedItems();
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        this.removeGarbageCollectedItems();
+        delegate.putObject(key, new WeakEntry(key, value, queueOfGarbageCollectedEntries));
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        WeakEntry weakReference = (WeakEntry) delegate.getObject(key);
+        if (weakReference == null) {
+            return null;
+        }
+        Object result = weakReference.get();
+        if (result == null) {
+            delegate.removeObject(key);
+        }
+        return result;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        this.removeGarbageCollectedItems();
+        WeakEntry weakReference = (WeakEntry) delegate.removeObject(key);
+        return weakReference == null ? null : weakReference.get();
+    }
+
+    @Override
+    public void clear() {
+        this.removeGarbageCollectedItems();
+        delegate.clear();
+    }
+
+    private void removeGarbageCollectedItems() {
+        WeakEntry sv;
+        while ((sv = (WeakEntry) queueOfGarbageCollectedEntries.poll()) != null) {
+            delegate.removeObject(sv.key);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+
+    private static class WeakEntry extends WeakReference<Object> {
+        private final Object key;
+
+        WeakEntry(Object key, Object value, ReferenceQueue<Object> garbageCollectionQueue) {
+            super(value, garbageCollectionQueue);
+            this.key = key;
+        }
+    }
+}
@@ -4,15 +4,23 @@ import lombok.Getter;
 import lombok.Setter;
 import org.harvey.batis.binding.MapperRegistry;
 import org.harvey.batis.builder.CacheRefResolver;
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheStatistics;
+import org.harvey.batis.cache.TableVersions;
 import org.harvey.batis.builder.MethodResolver;
 import org.harvey.batis.builder.ResultMapResolver;
 import org.harvey.batis.builder.xml.XMLStatementBuilder;
 import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.builder.IncompleteElementException;
+import org.harvey.batis.executor.BatchExecutor;
+import org.harvey.batis.executor.CachingExecutor;
 import org.harvey.batis.executor.Executor;
+import org.harvey.batis.executor.QueryCoalescer;
+import org.harvey.batis.executor.ReuseExecutor;
 import org.harvey.batis.executor.SimpleExecutor;
 import org.harvey.batis.executor.key.generator.KeyGenerator;
 import org.harvey.batis.executor.key.generator.SelectKeyGenerator;
+import org.harvey.batis.executor.pagination.Dialect;
 import org.harvey.batis.executor.param.ParameterHandler;
 import org.harvey.batis.executor.result.DefaultResultSetHandler;
 import org.harvey.batis.executor.result.ResultHandler;
@@ -40,12 +48,15 @@ import org.harvey.batis.util.StrictMap;
 import org.harvey.batis.util.enums.AutoMappingBehavior;
 import org.harvey.batis.util.enums.ExecutorType;
 import org.harvey.batis.util.enums.JdbcType;
+import org.harvey.batis.util.enums.LocalCacheScope;
 import org.harvey.batis.util.enums.ResultSetType;
 import org.harvey.batis.util.type.TypeHandlerRegistry;
 import org.harvey.batis.util.type.UnknownTypeHandler;
 
 import java.sql.ResultSetMetaData;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -72,11 +83,31 @@ public class Configuration {
      */
     protected boolean useColumnLabel = true;
     protected boolean useGeneratedKeys = false;
-    private boolean cacheEnabled = false;
+    /**
+     * 二级缓存的总开关, 只有声明了{@code <cache/>}的命名空间才会真正缓存
+     *
+     * @see CachingExecutor
+     */
+    private boolean cacheEnabled = true;
     private boolean lazyLoadingEnabled = false;
     private boolean returnInstanceForEmptyRow = false;
     private boolean callSettersOnNulls = false;
     private boolean shrinkWhitespacesInSql = true;
+    /**
+     * 为true时, 动态SQL在第一次使用时编译成{@link org.harvey.batis.scripting.xml.compile.SqlRenderer},
+     * 之后不再解释执行{@link org.harvey.batis.scripting.xml.SqlNode}树, 并按{@link #dynamicSqlShapeCacheSize}记住渲染的结果<br>
+     * 默认开启; 为false时每次都解释执行并重新解析{@code #{}}, 不能编译的语句也退回解释执行
+     *
+     * @see org.harvey.batis.scripting.xml.compile.SqlNodeCompiler
+     */
+    private boolean compileDynamicSql = true;
+    /**
+     * 为true时, 没有声明tables属性的语句从SQL中提取涉及的表, 写语句只按表失效缓存<br>
+     * 提取看不到视图, 触发器, 外键的级联等依赖, 可能读到自己写之前的结果, 所以默认只有声明了tables的语句按表失效
+     *
+     * @see org.harvey.batis.builder.SqlTableExtractor
+     */
+    private boolean extractSqlTables = false;
 
 
     protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
@@ -87,6 +118,94 @@ public class Configuration {
     protected ResultSetType defaultResultSetType = null;
     protected Integer defaultFetchSize = null;
     protected Integer defaultStatementTimeout = null;
+    /**
+     * 一级缓存的作用范围, 流式处理等不需要会话级缓存的场景可以设为{@link LocalCacheScope#STATEMENT}
+     */
+    protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+    /**
+     * 一级缓存最多缓存的查询数
+     */
+    protected int localCacheSize = 1024;
+    /**
+     * 一级缓存估算的字节数上限, 默认32MB
+     */
+    protected long localCacheMaxBytes = 32L * 1024 * 1024;
+    /**
+     * 每条编译过的动态SQL最多记住的形状数, 满了之后淘汰不常命中的形状, 为0时不记住
+     *
+     * @see #compileDynamicSql
+     * @see org.harvey.batis.scripting.xml.compile.SqlRenderer
+     */
+    protected int dynamicSqlShapeCacheSize = 64;
+    /**
+     * IN列表补齐时, 元素个数不超过这个值则补齐到2的幂, 超过则补齐到它的倍数, 多出的位置最多为这个值, 为0时总是补齐到2的幂
+     *
+     * @see org.harvey.batis.scripting.xml.node.ForEachSqlNode#paddedSize(int)
+     */
+    protected int inListPaddingLinearThreshold = 256;
+    /**
+     * IN列表最多补齐到的元素个数, 超过的部分不补齐, 为0时不限制<br>
+     * 补齐后的占位符个数不能超过数据库的限制: Oracle的IN列表最多1000个元素,
+     * 只补齐到2的幂时513个元素就会补齐到1024个; SQL Server一条语句最多2100个参数, 还需要减去语句中的其他参数
+     */
+    protected int inListPaddingMaxSize = 1000;
+    /**
+     * 合并并发的相同查询, 在所有会话之间共享
+     *
+     * @see MappedStatement#isCoalesce()
+     */
+    protected final QueryCoalescer queryCoalescer = new QueryCoalescer();
+    /**
+     * 每个表的版本, 按表失效二级缓存, 在所有会话之间共享
+     *
+     * @see MappedStatement#getWriteTables()
+     */
+    protected final TableVersions tableVersions = new TableVersions();
+    /**
+     * 按缓存和语句统计的命中率等, 在所有会话之间共享
+     */
+    protected final CacheStatistics cacheStatistics = new CacheStatistics();
+    /**
+     * 为null时不改写SQL, 由客户端跳过{@link RowBounds#getOffset()}之前的记录
+     *
+     * @see Dialect
+     */
+    protected Dialect dialect = null;
+    /**
+     * 异步Mapper方法的线程数, 每个执行中的调用各占一个数据库连接, 不宜超过连接池的大小
+     *
+     * @see #getAsyncExecutor()
+     */
+    protected int asyncPoolSize = Runtime.getRuntime().availableProcessors();
+    /**
+     * 异步Mapper方法的等待队列长度, 队列满时由调用线程自己执行
+     */
+    protected int asyncQueueCapacity = 1024;
+    /**
+     * 执行异步Mapper方法(返回{@link CompletableFuture})的线程池, 可以替换成自定义的线程池
+     */
+    private volatile ExecutorService asyncExecutor;
+    /**
+     * 提前刷新二级缓存的线程数
+     *
+     * @see #getRefreshExecutor()
+     */
+    protected int refreshPoolSize = 2;
+    /**
+     * 提前刷新二级缓存({@link org.harvey.batis.cache.decorators.RefreshAheadCache})的线程池, 可以替换成自定义的线程池
+     */
+    private volatile ExecutorService refreshExecutor;
+    /**
+     * 分片查询并行打开各分片游标的线程数
+     *
+     * @see #getScatterExecutor()
+     */
+    protected int scatterPoolSize = Runtime.getRuntime().availableProcessors();
+    /**
+     * 分片查询({@link org.harvey.batis.executor.ScatterGatherQuery})打开各分片游标的线程池, 可以替换成自定义的线程池<br>
+     * 与{@link #asyncExecutor}分开, 异步Mapper方法在其线程中发起分片查询并等待时不会占满同一个线程池而死锁
+     */
+    private volatile ExecutorService scatterExecutor;
     // ...
 
     protected Properties variables = new Properties();
@@ -113,6 +232,10 @@ public class Configuration {
      * TODO
      */
     protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
+    /**
+     * 二级缓存, key为{@link Cache#getId()}, 即Mapper的命名空间
+     */
+    protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
     protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<>("Key Generators collection");
     /**
      * Mapper.xml的资源
@@ -150,6 +273,82 @@ public class Configuration {
         UnfinishedFunctionException.trace("注册别名");
     }
 
+    /**
+     * 第一次使用时才依据{@link #asyncPoolSize}和{@link #asyncQueueCapacity}创建有界的线程池<br>
+     * 线程都是守护线程, 不会阻止JVM退出
+     */
+    public ExecutorService getAsyncExecutor() {
+        ExecutorService executor = this.asyncExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this) {
+            if (this.asyncExecutor == null) {
+                this.asyncExecutor = this.newAsyncExecutor();
+            }
+            return this.asyncExecutor;
+        }
+    }
+
+    private ExecutorService newAsyncExecutor() {
+        return new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(asyncQueueCapacity),
+                Configuration.daemonThreadFactory("yourbatis-async-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 第一次使用时才依据{@link #refreshPoolSize}创建线程池<br>
+     * 队列满时丢弃刷新任务(抛出{@link java.util.concurrent.RejectedExecutionException}), 而不是让读缓存的线程等待
+     */
+    public ExecutorService getRefreshExecutor() {
+        ExecutorService executor = this.refreshExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this) {
+            if (this.refreshExecutor == null) {
+                this.refreshExecutor = new ThreadPoolExecutor(refreshPoolSize, refreshPoolSize,
+                        0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(asyncQueueCapacity),
+                        Configuration.daemonThreadFactory("yourbatis-refresh-"),
+                        new ThreadPoolExecutor.AbortPolicy());
+            }
+            return this.refreshExecutor;
+        }
+    }
+
+    /**
+     * 第一次使用时才依据{@link #scatterPoolSize}创建线程池<br>
+     * 没有排队, 线程都在忙时由发起查询的线程自己打开游标, 所以等待的任务总有线程在执行
+     */
+    public ExecutorService getScatterExecutor() {
+        ExecutorService executor = this.scatterExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this) {
+            if (this.scatterExecutor == null) {
+                this.scatterExecutor = new ThreadPoolExecutor(scatterPoolSize, scatterPoolSize,
+                        0L, TimeUnit.MILLISECONDS,
+                        new SynchronousQueue<>(),
+                        Configuration.daemonThreadFactory("yourbatis-scatter-"),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+            }
+            return this.scatterExecutor;
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     /**
      * 从{@link #mapperRegistry}中取出Mapper
      *
@@ -324,6 +523,21 @@ public class Configuration {
         // checkGloballyForDiscriminatedNestedResultMaps(resultMap);
     }
 
+    public void addCache(Cache cache) {
+        caches.put(cache.getId(), cache);
+    }
+
+    public Cache getCache(String id) {
+        return caches.get(id);
+    }
+
+    /**
+     * @param id Mapper的命名空间, 即Mapper接口的全类名
+     */
+    public boolean hasCache(String id) {
+        return caches.containsKey(id);
+    }
+
     public ResultMap getResultMap(String id) {
         return resultMaps.get(id);
     }
@@ -383,17 +597,14 @@ public class Configuration {
         executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
         Executor executor;
         if (ExecutorType.BATCH == executorType) {
-            throw new UnfinishedFunctionException("BATCH");
-            // executor = new BatchExecutor(this, tx);
+            executor = new BatchExecutor(this, tx);
         } else if (ExecutorType.REUSE == executorType) {
-            throw new UnfinishedFunctionException("REUSE");
-            // executor = new ReuseExecutor(this, tx);
+            executor = new ReuseExecutor(this, tx);
         } else {
             executor = new SimpleExecutor(this, tx);
         }
         if (cacheEnabled) {
-            throw new UnfinishedFunctionException("cache");
-            // executor = new CachingExecutor(executor);
+            executor = new CachingExecutor(executor, tableVersions, cacheStatistics);
         }
         return this.pluginInterceptor(executor);
     }
@@ -1,40 +1,224 @@
 package org.harvey.batis.cursor;
 
-import org.harvey.batis.exception.UnfinishedFunctionException;
+import org.harvey.batis.exception.executor.ExecutorException;
+import org.harvey.batis.executor.result.DefaultResultSetHandler;
+import org.harvey.batis.executor.result.ResultContext;
+import org.harvey.batis.executor.result.ResultHandler;
+import org.harvey.batis.executor.result.ResultSetWrapper;
+import org.harvey.batis.mapping.ResultMap;
+import org.harvey.batis.session.RowBounds;
 
-import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
- * TODO
+ * 逐行从{@link ResultSet}中映射结果, 不会一次性把结果全部读入内存<br>
+ * 每次{@link Iterator#next()}只调用一次{@link ResultSet#next()},
+ * 配合{@link java.sql.Statement#setFetchSize(int)}可以实现流式查询<br>
+ * 数据读完或调用{@link #close()}时关闭ResultSet, Statement随之关闭(见{@link Statement#closeOnCompletion()})<br>
+ * 只能迭代一次
  *
  * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
  * @version 1.0
  * @date 2024-08-02 13:24
  */
-public class DefaultCursor<T> implements Cursor<T>{
+public class DefaultCursor<T> implements Cursor<T> {
+    private final DefaultResultSetHandler resultSetHandler;
+    private final ResultMap resultMap;
+    private final ResultSetWrapper rsw;
+    private final RowBounds rowBounds;
+    private final ObjectWrapperResultHandler<T> objectWrapperResultHandler = new ObjectWrapperResultHandler<>();
+
+    private final CursorIterator cursorIterator = new CursorIterator();
+    private boolean iteratorRetrieved;
+
+    private CursorStatus status = CursorStatus.CREATED;
+    /**
+     * 已经从ResultSet中读取的记录的索引, 包括因{@link RowBounds#getOffset()}而跳过的记录
+     */
+    private int indexWithRowBound = -1;
+
+    private enum CursorStatus {
+        /**
+         * 刚创建, 还没有读取数据库
+         */
+        CREATED,
+        /**
+         * 已经开始读取数据库
+         */
+        OPEN,
+        /**
+         * 被用户关闭, 但数据库中可能还有数据
+         */
+        CLOSED,
+        /**
+         * 数据已经全部读取
+         */
+        CONSUMED
+    }
+
+    public DefaultCursor(DefaultResultSetHandler resultSetHandler, ResultMap resultMap, ResultSetWrapper rsw, RowBounds rowBounds) {
+        this.resultSetHandler = resultSetHandler;
+        this.resultMap = resultMap;
+        this.rsw = rsw;
+        this.rowBounds = rowBounds;
+    }
+
     @Override
     public boolean isOpen() {
-        throw new UnfinishedFunctionException();
+        return status == CursorStatus.OPEN;
     }
 
     @Override
     public boolean isConsumed() {
-        throw new UnfinishedFunctionException();
+        return status == CursorStatus.CONSUMED;
     }
 
     @Override
     public int getCurrentIndex() {
-        throw new UnfinishedFunctionException();
+        return rowBounds.getOffset() + cursorIterator.iteratorIndex;
     }
 
     @Override
-    public void close() throws IOException {
-        throw new UnfinishedFunctionException();
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (this.isClosed()) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return cursorIterator;
     }
 
     @Override
-    public Iterator<T> iterator() {
-        throw new UnfinishedFunctionException();
+    public void close() {
+        if (this.isClosed()) {
+            return;
+        }
+        ResultSet rs = rsw.getResultSet();
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            // ignore
+        } finally {
+            status = CursorStatus.CLOSED;
+        }
+    }
+
+    /**
+     * 跳过{@link RowBounds#getOffset()}之前的记录, 取出下一条
+     */
+    protected T fetchNextUsingRowBound() {
+        T result = this.fetchNextObjectFromDatabase();
+        while (objectWrapperResultHandler.fetched && indexWithRowBound < rowBounds.getOffset()) {
+            result = this.fetchNextObjectFromDatabase();
+        }
+        return result;
+    }
+
+    /**
+     * 从数据库读取一条记录并映射
+     *
+     * @return 没有更多数据则返回null, 此时游标被关闭
+     */
+    protected T fetchNextObjectFromDatabase() {
+        if (this.isClosed()) {
+            return null;
+        }
+        try {
+            objectWrapperResultHandler.fetched = false;
+            status = CursorStatus.OPEN;
+            if (!rsw.getResultSet().isClosed()) {
+                // 回调中会stop, 所以每次只映射一行
+                resultSetHandler.handleRowValues(rsw, resultMap, objectWrapperResultHandler, RowBounds.DEFAULT, null);
+            }
+        } catch (SQLException e) {
+            throw new ExecutorException("Error fetching next row from cursor.  Cause: " + e, e);
+        }
+
+        T next = objectWrapperResultHandler.result;
+        if (objectWrapperResultHandler.fetched) {
+            indexWithRowBound++;
+        }
+        // 没有数据, 或者超出了limit
+        if (!objectWrapperResultHandler.fetched || this.getReadItemsCount() == rowBounds.getOffset() + rowBounds.getLimit()) {
+            this.close();
+            status = CursorStatus.CONSUMED;
+        }
+        objectWrapperResultHandler.result = null;
+        return next;
+    }
+
+    private boolean isClosed() {
+        return status == CursorStatus.CLOSED || status == CursorStatus.CONSUMED;
+    }
+
+    private int getReadItemsCount() {
+        return indexWithRowBound + 1;
+    }
+
+    /**
+     * 每接收一行就让{@link ResultContext}停止, 以实现逐行读取
+     */
+    private static class ObjectWrapperResultHandler<T> implements ResultHandler<T> {
+        private T result;
+        /**
+         * 本次是否读到了数据, 结果本身可能为null, 所以不能用result判断
+         */
+        private boolean fetched;
+
+        @Override
+        public void handleResult(ResultContext<? extends T> context) {
+            this.result = context.getResultObject();
+            context.stop();
+            fetched = true;
+        }
+    }
+
+    private class CursorIterator implements Iterator<T> {
+        /**
+         * 预取的下一个对象
+         */
+        private T object;
+        private boolean hasObject;
+        /**
+         * 返回给用户的对象的索引
+         */
+        private int iteratorIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            if (!hasObject) {
+                object = fetchNextUsingRowBound();
+                hasObject = objectWrapperResultHandler.fetched;
+            }
+            return hasObject;
+        }
+
+        @Override
+        public T next() {
+            T next = object;
+            if (!hasObject) {
+                next = fetchNextUsingRowBound();
+                if (!objectWrapperResultHandler.fetched) {
+                    throw new NoSuchElementException();
+                }
+            }
+            object = null;
+            hasObject = false;
+            iteratorIndex++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
     }
 }
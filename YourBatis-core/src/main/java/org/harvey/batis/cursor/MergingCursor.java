@@ -0,0 +1,207 @@
+package org.harvey.batis.cursor;
+
+import org.harvey.batis.exception.executor.ExecutorException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多路归并多个有序的{@link Cursor}<br>
+ * 堆中只保存每个游标的当前行, 每次取出最小的一行后再从同一个游标读取下一行,
+ * 所以任何一个游标的结果都不会被全部读入内存<br>
+ * 没有比较器时按游标的顺序依次拼接<br>
+ * 某个游标读完时立即关闭它, 释放其占用的连接; 全部读完, 达到limit或调用{@link #close()}时关闭其余的游标
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 17:10
+ * @see org.harvey.batis.executor.ScatterGatherQuery
+ */
+public class MergingCursor<T> implements Cursor<T> {
+    private final List<Cursor<T>> cursors;
+    private final Comparator<Head<T>> headComparator;
+    private final int offset;
+    private final int limit;
+
+    private final MergingIterator mergingIterator = new MergingIterator();
+    private boolean iteratorRetrieved;
+    private boolean open;
+    private boolean closed;
+    private boolean consumed;
+
+    /**
+     * @param cursors    每个游标内部已经按comparator排好序
+     * @param comparator 为null时按游标的顺序拼接
+     * @param offset     归并后跳过的行数
+     * @param limit      归并后最多返回的行数
+     */
+    public MergingCursor(List<Cursor<T>> cursors, Comparator<? super T> comparator, int offset, int limit) {
+        this.cursors = new ArrayList<>(cursors);
+        Comparator<Head<T>> byCursor = Comparator.comparingInt(head -> head.cursorIndex);
+        // 相等时先取前面的游标, 保持稳定
+        this.headComparator = comparator == null ? byCursor :
+                Comparator.<Head<T>, T>comparing(head -> head.value, comparator).thenComparing(byCursor);
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && !closed;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return offset + mergingIterator.returned - 1;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (closed) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return mergingIterator;
+    }
+
+    /**
+     * 关闭所有还没有关闭的游标, 即使其中某个关闭失败
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (int i = 0; i < cursors.size(); i++) {
+            try {
+                this.closeCursor(i);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw new ExecutorException("Error closing merged cursors.  Cause: " + failure, failure);
+        }
+    }
+
+    /**
+     * 关闭后从{@link #cursors}中移除, 不会重复关闭
+     */
+    private void closeCursor(int cursorIndex) throws IOException {
+        Cursor<T> cursor = cursors.set(cursorIndex, null);
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 一个游标的当前行
+     */
+    private static class Head<T> {
+        private final T value;
+        private final int cursorIndex;
+        private final Iterator<T> iterator;
+
+        private Head(T value, int cursorIndex, Iterator<T> iterator) {
+            this.value = value;
+            this.cursorIndex = cursorIndex;
+            this.iterator = iterator;
+        }
+    }
+
+    private class MergingIterator implements Iterator<T> {
+        private PriorityQueue<Head<T>> heads;
+        /**
+         * 已经返回给用户的行数
+         */
+        private int returned;
+        private boolean skipped;
+
+        /**
+         * 第一次读取时才从每个游标取出第一行
+         */
+        private void init() {
+            heads = new PriorityQueue<>(Math.max(1, cursors.size()), headComparator);
+            open = true;
+            for (int i = 0; i < cursors.size(); i++) {
+                this.offer(i, cursors.get(i).iterator());
+            }
+        }
+
+        /**
+         * 游标已经读完时立即关闭
+         */
+        private void offer(int cursorIndex, Iterator<T> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), cursorIndex, iterator));
+                return;
+            }
+            try {
+                MergingCursor.this.closeCursor(cursorIndex);
+            } catch (IOException e) {
+                throw new ExecutorException("Error closing exhausted cursor.  Cause: " + e, e);
+            }
+        }
+
+        private T poll() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            this.offer(head.cursorIndex, head.iterator);
+            return head.value;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (heads == null) {
+                this.init();
+            }
+            if (!skipped) {
+                skipped = true;
+                for (int i = 0; i < offset && !heads.isEmpty(); i++) {
+                    this.poll();
+                }
+            }
+            if (heads.isEmpty() || returned >= limit) {
+                consumed = true;
+                MergingCursor.this.close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T next = this.poll();
+            returned++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
+    }
+}
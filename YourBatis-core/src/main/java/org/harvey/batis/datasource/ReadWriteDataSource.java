@@ -0,0 +1,156 @@
+package org.harvey.batis.datasource;
+
+import lombok.Getter;
+import org.harvey.batis.util.enums.ReplicaSelectStrategy;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * 读写分离的DataSource<br>
+ * {@link #getConnection()}总是返回主库的连接, 写操作和事务中写之后的查询都走主库<br>
+ * {@link #getReadConnection()}按{@link ReplicaSelectStrategy}从只读副本中选一个, 没有副本时退回主库<br>
+ * 由{@link org.harvey.batis.transaction.Transaction#getConnection(boolean)}决定用哪种连接
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 09:45
+ */
+public class ReadWriteDataSource implements DataSource {
+    /**
+     * 加锁的读, 只读副本上的连接自动提交, 锁在语句结束时就释放了, 也锁不住主库上的行
+     */
+    private static final Pattern LOCKING_READ = Pattern.compile(
+            "\\bFOR\\s+(NO\\s+KEY\\s+)?(UPDATE|SHARE)\\b|\\bFOR\\s+KEY\\s+SHARE\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b",
+            Pattern.CASE_INSENSITIVE);
+    @Getter
+    private final DataSource primary;
+    @Getter
+    private final List<DataSource> replicas;
+    @Getter
+    private final ReplicaSelectStrategy strategy;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public ReadWriteDataSource(DataSource primary, List<DataSource> replicas, ReplicaSelectStrategy strategy) {
+        if (primary == null) {
+            throw new IllegalArgumentException("Parameter 'primary' must not be null");
+        }
+        this.primary = primary;
+        this.replicas = replicas == null ? Collections.emptyList() : new ArrayList<>(replicas);
+        this.strategy = strategy == null ? ReplicaSelectStrategy.ROUND_ROBIN : strategy;
+    }
+
+    /**
+     * @param sql 语句的文本, 动态SQL则是所有分支的文本拼在一起
+     * @return 是否是加锁的读({@code FOR UPDATE}, {@code FOR SHARE}, {@code LOCK IN SHARE MODE}等), 必须在主库上执行
+     */
+    public static boolean isLockingRead(String sql) {
+        return sql != null && LOCKING_READ.matcher(sql).find();
+    }
+
+    /**
+     * @return 主库的连接
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @return 只读副本的连接
+     */
+    public Connection getReadConnection() throws SQLException {
+        return this.selectReplica().getConnection();
+    }
+
+    /**
+     * @return 按{@link #strategy}选出的副本, 没有副本则返回{@link #primary}
+     */
+    public DataSource selectReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return primary;
+        }
+        if (size == 1) {
+            return replicas.get(0);
+        }
+        if (strategy == ReplicaSelectStrategy.LEAST_ACTIVE) {
+            return this.leastActiveReplica();
+        }
+        // 溢出后仍然为非负数
+        return replicas.get((counter.getAndIncrement() & Integer.MAX_VALUE) % size);
+    }
+
+    /**
+     * 非连接池的副本视作没有活动连接
+     */
+    private DataSource leastActiveReplica() {
+        DataSource selected = null;
+        int min = Integer.MAX_VALUE;
+        for (DataSource replica : replicas) {
+            int active = replica instanceof PooledDataSource ?
+                    ((PooledDataSource) replica).getPoolState().getActiveConnectionCount() : 0;
+            if (active < min) {
+                min = active;
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    /**
+     * @param interfaceClass 是一个接口, 结果需要实现该接口
+     * @throws SQLException 本类不是一个wrapper
+     */
+    @Override
+    public <T> T unwrap(Class<T> interfaceClass) throws SQLException {
+        throw new SQLException(getClass().getName() + " is not a wrapper.");
+    }
+
+    /**
+     * @return false
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> interfaceClass) {
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package org.harvey.batis.datasource.sharding;
+
+import java.util.List;
+
+/**
+ * 默认的分片策略, 分片键的{@link Object#hashCode()}对分片数取模<br>
+ * 整数类型的分片键直接用其值取模, 所以id连续的记录均匀地落在各个分片上
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 14:25
+ */
+public class HashShardResolver implements ShardResolver {
+    @Override
+    public String resolve(Object shardKey, List<String> shardNames) {
+        long hash = shardKey instanceof Number && !(shardKey instanceof Double || shardKey instanceof Float) ?
+                ((Number) shardKey).longValue() : shardKey.hashCode();
+        return shardNames.get((int) Math.floorMod(hash, (long) shardNames.size()));
+    }
+}
@@ -0,0 +1,20 @@
+package org.harvey.batis.datasource.sharding;
+
+import java.util.List;
+
+/**
+ * 由分片键决定分片
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 14:20
+ * @see ShardingDataSource
+ */
+public interface ShardResolver {
+    /**
+     * @param shardKey   分片键, 不为null
+     * @param shardNames 所有分片的名字, 按配置的顺序
+     * @return 分片的名字, 必须是shardNames中的一个
+     */
+    String resolve(Object shardKey, List<String> shardNames);
+}
@@ -0,0 +1,142 @@
+package org.harvey.batis.datasource.sharding;
+
+import lombok.Getter;
+import org.harvey.batis.exception.datasource.DataSourceException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 分片的DataSource, 多个物理库共用同一个{@link org.harvey.batis.config.Configuration}<br>
+ * 会话的事务在第一次获取连接前, 由{@link org.harvey.batis.transaction.Transaction#routeShard(Object)}选定分片;
+ * 没有分片键的语句使用{@link #defaultDataSource}<br>
+ * 每个分片的连接池独立, 由各自的DataSource管理
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 14:40
+ * @see org.harvey.batis.annotation.ShardKey
+ */
+public class ShardingDataSource implements DataSource {
+    @Getter
+    private final DataSource defaultDataSource;
+    /**
+     * 分片名到DataSource, 保持配置的顺序
+     */
+    private final Map<String, DataSource> shards;
+    @Getter
+    private final List<String> shardNames;
+    @Getter
+    private final ShardResolver resolver;
+
+    public ShardingDataSource(DataSource defaultDataSource, Map<String, DataSource> shards, ShardResolver resolver) {
+        if (defaultDataSource == null) {
+            throw new IllegalArgumentException("Parameter 'defaultDataSource' must not be null");
+        }
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("Parameter 'shards' must not be empty");
+        }
+        this.defaultDataSource = defaultDataSource;
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shards.keySet()));
+        this.resolver = resolver == null ? new HashShardResolver() : resolver;
+    }
+
+    /**
+     * @return 不可修改的分片表
+     */
+    public Map<String, DataSource> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param shardKey 为null时返回{@link #defaultDataSource}
+     * @throws DataSourceException {@link #resolver}返回了不存在的分片
+     */
+    public DataSource getShard(Object shardKey) {
+        if (shardKey == null) {
+            return defaultDataSource;
+        }
+        return shards.get(this.getShardName(shardKey));
+    }
+
+    /**
+     * @param shardKey 为null时返回null, 代表{@link #defaultDataSource}
+     * @return 分片名, 是{@link #shardNames}之一
+     * @throws DataSourceException {@link #resolver}返回了不存在的分片
+     */
+    public String getShardName(Object shardKey) {
+        if (shardKey == null) {
+            return null;
+        }
+        String shardName = resolver.resolve(shardKey, shardNames);
+        if (!shards.containsKey(shardName)) {
+            throw new DataSourceException("Shard key " + shardKey + " resolved to unknown shard '" + shardName + "'");
+        }
+        return shardName;
+    }
+
+    /**
+     * @return {@link #defaultDataSource}的连接
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return defaultDataSource.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return defaultDataSource.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return defaultDataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        defaultDataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        defaultDataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return defaultDataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return defaultDataSource.getParentLogger();
+    }
+
+    /**
+     * @param interfaceClass 是一个接口, 结果需要实现该接口
+     * @throws SQLException 本类不是一个wrapper
+     */
+    @Override
+    public <T> T unwrap(Class<T> interfaceClass) throws SQLException {
+        throw new SQLException(getClass().getName() + " is not a wrapper.");
+    }
+
+    /**
+     * @return false
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> interfaceClass) {
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package org.harvey.batis.exception.executor;
+
+import lombok.Getter;
+import org.harvey.batis.executor.BatchResult;
+
+import java.sql.BatchUpdateException;
+import java.util.List;
+
+/**
+ * 批量执行时某一批语句失败<br>
+ * 携带失败之前已经成功执行的批次, 以及失败批次的信息
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-04 20:31
+ * @see org.harvey.batis.executor.BatchExecutor
+ */
+@Getter
+public class BatchExecutorException extends ExecutorException {
+    /**
+     * 失败之前已经成功执行的批次
+     */
+    private final List<BatchResult> successfulBatchResults;
+    private final BatchUpdateException batchUpdateException;
+    /**
+     * 失败的批次
+     */
+    private final BatchResult batchResult;
+
+    public BatchExecutorException(String message,
+                                  BatchUpdateException cause,
+                                  List<BatchResult> successfulBatchResults,
+                                  BatchResult batchResult) {
+        super(message + " Cause: " + cause, cause);
+        this.batchUpdateException = cause;
+        this.successfulBatchResults = successfulBatchResults;
+        this.batchResult = batchResult;
+    }
+}
@@ -1,10 +1,12 @@
 package org.harvey.batis.executor;
 
+import org.harvey.batis.cache.Cache;
 import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.cache.CacheStatistics;
+import org.harvey.batis.cache.LocalCache;
 import org.harvey.batis.cache.PerpetualCache;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.cursor.Cursor;
-import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.executor.ExecutorException;
 import org.harvey.batis.executor.param.DefaultParameterHandler;
 import org.harvey.batis.executor.result.DefaultMapResultHandler;
@@ -23,7 +25,9 @@ import org.harvey.batis.reflection.factory.ObjectFactory;
 import org.harvey.batis.session.RowBounds;
 import org.harvey.batis.transaction.Transaction;
 import org.harvey.batis.util.ErrorContext;
+import org.harvey.batis.util.enums.LocalCacheScope;
 import org.harvey.batis.util.enums.ParameterMode;
+import org.harvey.batis.util.enums.SqlCommandType;
 import org.harvey.batis.util.enums.StatementType;
 import org.harvey.batis.util.type.TypeHandlerRegistry;
 
@@ -31,6 +35,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -56,8 +61,13 @@ public abstract class BaseExecutor implements Executor {
      * 缓存的作用是为了应对嵌套的ParamMap<br>
      * 嵌套的ParamMap可能会需要多次查询, 那么就需要在这里存储上一次查询的数据<br>
      * 但是一个ParamMap如果对应一次完整的查询, 那么, 多次完整查询之前都会清除数据<br>
+     * 条目数和估算的字节数都有上限, 见{@link Configuration#getLocalCacheSize()}和{@link Configuration#getLocalCacheMaxBytes()}
      */
-    private PerpetualCache localCache = new PerpetualCache(LOCAL_CACHE_ID);
+    private LocalCache localCache;
+    /**
+     * 所有会话的一级缓存合计的统计
+     */
+    private final CacheStatistics.Counters localCacheCounters;
     private PerpetualCache localOutputParameterCache = new PerpetualCache(LOCAL_OUTPUT_PARAMETER_CACHE_ID);
     private ConcurrentLinkedQueue<DeferredLoad> deferredLoads = new ConcurrentLinkedQueue<>();
     protected Executor wrapper = this;
@@ -66,10 +76,19 @@ public abstract class BaseExecutor implements Executor {
      * TODO 似乎是查询的栈深度, 因为存在嵌套的ParamMap的缘故
      */
     protected int queryStack = 0;
+    /**
+     * 本事务中执行过写操作, 此时查询结果可能包含未提交的数据, 不能与其他会话共享
+     *
+     * @see QueryCoalescer
+     */
+    private boolean uncommittedWrites = false;
 
     protected BaseExecutor(Configuration configuration, Transaction transaction) {
         this.transaction = transaction;
         this.configuration = configuration;
+        this.localCacheCounters = configuration.getCacheStatistics().forCache(LOCAL_CACHE_ID);
+        this.localCache = new LocalCache(LOCAL_CACHE_ID, configuration.getLocalCacheSize(),
+                configuration.getLocalCacheMaxBytes(), localCacheCounters);
     }
 
     @Override
@@ -116,7 +135,15 @@ public abstract class BaseExecutor implements Executor {
         if (closed) {
             throw new ExecutorException("Executor was closed.");
         }
-        clearLocalCache();
+        Set<String> writeTables = ms.getWriteTables();
+        if (writeTables == null) {
+            clearLocalCache();
+        } else {
+            // 只移除读了这些表的结果
+            localCache.removeByTables(writeTables);
+            localOutputParameterCache.clear();
+        }
+        uncommittedWrites = true;
         return doUpdate(ms, parameter);
     }
 
@@ -156,10 +183,37 @@ public abstract class BaseExecutor implements Executor {
 
     protected Connection getConnection(Log statementLog) throws SQLException {
         Connection connection = transaction.getConnection();
+        return this.wrapConnection(connection, statementLog);
+
+    }
+
+    /**
+     * 按语句获取连接, 只读语句可能使用只读副本的连接
+     *
+     * @see #isReadOnly(MappedStatement)
+     * @see Transaction#getConnection(boolean)
+     */
+    protected Connection getConnection(MappedStatement ms) throws SQLException {
+        Connection connection = transaction.getConnection(this.isReadOnly(ms));
+        return this.wrapConnection(connection, ms.getStatementLog());
+    }
+
+    /**
+     * 本事务中写过之后, 查询也要走主库, 才能读到自己写的数据; 加锁的读等{@link MappedStatement#isUseMaster()}的查询也走主库
+     *
+     * @return 是否是可以路由到只读副本的语句
+     */
+    protected boolean isReadOnly(MappedStatement ms) {
+        return ms.getSqlCommandType() == SqlCommandType.SELECT
+                && ms.getStatementType() != StatementType.CALLABLE
+                && !ms.isUseMaster()
+                && !uncommittedWrites;
+    }
+
+    private Connection wrapConnection(Connection connection, Log statementLog) {
         return statementLog.isDebugEnabled() ?
                 ConnectionLogger.newInstance(connection, statementLog, queryStack) :
                 connection;
-
     }
 
     /**
@@ -179,13 +233,13 @@ public abstract class BaseExecutor implements Executor {
         private final String property;
         private final Class<?> targetType;
         private final CacheKey key;
-        private final PerpetualCache localCache;
+        private final Cache localCache;
         private final ResultExtractor resultExtractor;
 
         public DeferredLoad(MetaObject resultObject,
                             String property,
                             CacheKey key,
-                            PerpetualCache localCache,
+                            Cache localCache,
                             Configuration configuration,
                             Class<?> targetType) {
             this.resultObject = resultObject;
@@ -266,6 +320,8 @@ public abstract class BaseExecutor implements Executor {
                 list = (List<E>) localCache.getObject(key);
             }
             if (list != null) {
+                localCacheCounters.hit();
+                configuration.getCacheStatistics().forStatement(ms.getId()).hit();
                 // 存在数据, 说明是嵌套的查询
                 // 处理本地缓存的输出参数
                 this.handleLocallyCachedOutputParameters(ms, key, parameter, boundSql);
@@ -276,6 +332,10 @@ public abstract class BaseExecutor implements Executor {
         } finally {
             queryStack--;
         }
+        if (queryStack == 0 && configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
+            // 最外层的查询结束, 嵌套查询不再需要缓存
+            this.clearLocalCache();
+        }
         return list;
     }
 
@@ -338,15 +398,34 @@ public abstract class BaseExecutor implements Executor {
         List<E> list;
         // 要准备开始查询了, 先放一个占位符
         localCache.putObject(key, ExecutionPlaceholder.SINGLETON);
+        long start = System.nanoTime();
         try {
             // 执行查询
-            list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+            if (this.isCoalescible(ms, resultHandler)) {
+                list = configuration.getQueryCoalescer().execute(key,
+                        () -> this.doQuery(ms, parameter, rowBounds, null, boundSql));
+            } else {
+                list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+            }
         } finally {
             // 查完之后从缓存释放占位符
             localCache.removeObject(key);
+            long elapsed = System.nanoTime() - start;
+            CacheStatistics.Counters statementCounters = configuration.getCacheStatistics().forStatement(ms.getId());
+            statementCounters.miss();
+            statementCounters.loaded(elapsed);
+            if (resultHandler == null) {
+                localCacheCounters.miss();
+                localCacheCounters.loaded(elapsed);
+            }
+        }
+        if (resultHandler != null) {
+            // 结果已经逐行交给了resultHandler, list是空的, 不能缓存
+            return list;
         }
         // 放入查询结果
-        localCache.putObject(key, list);
+        localCache.putObject(key, list, ms.getReadTables());
+        localCacheCounters.put();
         if (ms.getStatementType() == StatementType.CALLABLE) {
             // 只有在StatementType为Callback时才存入
             localOutputParameterCache.putObject(key, parameter);
@@ -354,9 +433,31 @@ public abstract class BaseExecutor implements Executor {
         return list;
     }
 
+    /**
+     * 只合并最外层的查询, 嵌套查询如果与外层的key相同会等待自己, 造成死锁<br>
+     * 自定义的{@link ResultHandler}与存储过程的输出参数都无法共享
+     *
+     * @see MappedStatement#isCoalesce()
+     */
+    private boolean isCoalescible(MappedStatement ms, ResultHandler<?> resultHandler) {
+        return ms.isCoalesce()
+                && resultHandler == null
+                && queryStack == 1
+                && !uncommittedWrites
+                && ms.getStatementType() != StatementType.CALLABLE;
+    }
+
+    /**
+     * 游标查询不经过本地缓存, 结果由{@link Cursor}逐行读取
+     */
     @Override
     public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
-        throw new UnfinishedFunctionException("暂无Cursor");
+        ErrorContext.instance().setResource(ms.getResource()).setActivity("executing a cursor query").setObject(ms.getId());
+        if (closed) {
+            throw new ExecutorException("Executor was closed.");
+        }
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        return this.doQueryCursor(ms, parameter, rowBounds, boundSql);
     }
 
     /**
@@ -372,6 +473,7 @@ public abstract class BaseExecutor implements Executor {
         flushStatements();
         if (required) {
             transaction.commit();
+            uncommittedWrites = false;
         }
     }
 
@@ -390,6 +492,7 @@ public abstract class BaseExecutor implements Executor {
         } finally {
             if (required) {
                 transaction.rollback();
+                uncommittedWrites = false;
             }
         }
     }
@@ -409,13 +512,12 @@ public abstract class BaseExecutor implements Executor {
         if (closed) {
             throw new ExecutorException("Executor was closed.");
         }
-        CacheKey cacheKey = new CacheKey();
-        cacheKey.update(ms.getId());
-        cacheKey.update(rowBounds.getOffset());
-        cacheKey.update(rowBounds.getLimit());
-        cacheKey.update(boundSql.getSql());
         // 从XML解析出来的需要的参数
         List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        // 语句id和SQL是预先算好的前缀, 之后是offset, limit, 参数, 环境id和分片
+        CacheKey cacheKey = ms.newCacheKey(boundSql.getSql(), parameterMappings.size() + 4);
+        cacheKey.update(rowBounds.getOffset());
+        cacheKey.update(rowBounds.getLimit());
         TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
         // 用Mapper方法的参数进行对Key构建
         for (ParameterMapping parameterMapping : parameterMappings) {
@@ -431,6 +533,11 @@ public abstract class BaseExecutor implements Executor {
         if (environment != null) {
             cacheKey.update(environment.getId());
         }
+        // 二级缓存和合并查询在会话之间共享, 不同分片的结果不能互相命中
+        String shardId = transaction.getShardId();
+        if (shardId != null) {
+            cacheKey.update(shardId);
+        }
         return cacheKey;
     }
 
@@ -469,4 +576,12 @@ public abstract class BaseExecutor implements Executor {
                                            RowBounds rowBounds, ResultHandler<?> resultHandler,
                                            BoundSql boundSql)
             throws SQLException;
+
+    /**
+     * 返回的{@link Cursor}持有打开的{@link java.sql.Statement}, 不能在此处关闭,
+     * 应在Cursor关闭时随之关闭
+     */
+    protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter,
+                                                   RowBounds rowBounds, BoundSql boundSql)
+            throws SQLException;
 }
@@ -0,0 +1,172 @@
+package org.harvey.batis.executor;
+
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.exception.executor.BatchExecutorException;
+import org.harvey.batis.executor.key.generator.KeyGenerator;
+import org.harvey.batis.executor.key.generator.NoKeyGenerator;
+import org.harvey.batis.executor.result.ResultHandler;
+import org.harvey.batis.executor.statement.StatementHandler;
+import org.harvey.batis.executor.statement.StatementUtil;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.Transaction;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量执行写语句的执行器<br>
+ * 连续的写语句若SQL和{@link MappedStatement}都相同, 则共用一个Statement,
+ * 通过{@link java.sql.PreparedStatement#addBatch()}积攒, 直到{@link #doFlushStatements(boolean)}时才一起执行<br>
+ * flush发生在: 显式调用{@link #flushStatements()}, commit, 以及任何查询之前(保证能查到之前写入的数据)
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-04 20:10
+ * @see org.harvey.batis.util.enums.ExecutorType#BATCH
+ */
+public class BatchExecutor extends BaseExecutor {
+    /**
+     * 批量模式下update的返回值, 真正的影响行数要在flush之后从{@link BatchResult#getUpdateCounts()}获取
+     */
+    public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
+
+    /**
+     * 待执行的Statement, 与{@link #batchResultList}一一对应
+     */
+    private final List<Statement> statementList = new ArrayList<>();
+    private final List<BatchResult> batchResultList = new ArrayList<>();
+    /**
+     * 最后一个Statement的SQL, 用于判断下一条写语句能否并入同一个批次
+     */
+    private String currentSql;
+    private MappedStatement currentStatement;
+
+    public BatchExecutor(Configuration configuration, Transaction transaction) {
+        super(configuration, transaction);
+    }
+
+    @Override
+    public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+        final Configuration configuration = ms.getConfiguration();
+        final StatementHandler handler = configuration.newStatementHandler(
+                this, ms, parameter, RowBounds.DEFAULT, null, null);
+        final BoundSql boundSql = handler.getBoundSql();
+        final String sql = boundSql.getSql();
+        final Statement stmt;
+        if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+            // 与上一条语句相同, 并入同一批次
+            int last = statementList.size() - 1;
+            stmt = statementList.get(last);
+            StatementUtil.applyTransactionTimeout(stmt, stmt.getQueryTimeout(), transaction.getTimeout());
+            handler.parameterize(stmt);
+            BatchResult batchResult = batchResultList.get(last);
+            batchResult.addParameterObject(parameter);
+        } else {
+            Connection connection = super.getConnection(ms.getStatementLog());
+            stmt = handler.prepare(connection, transaction.getTimeout());
+            handler.parameterize(stmt);
+            currentSql = sql;
+            currentStatement = ms;
+            statementList.add(stmt);
+            batchResultList.add(new BatchResult(ms, sql, parameter));
+        }
+        handler.batch(stmt);
+        return BATCH_UPDATE_RETURN_VALUE;
+    }
+
+    /**
+     * 查询之前先执行积攒的写语句
+     */
+    @Override
+    public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql) throws SQLException {
+        Statement stmt = null;
+        try {
+            super.flushStatements();
+            Configuration configuration = ms.getConfiguration();
+            StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+            Connection connection = super.getConnection(ms);
+            stmt = handler.prepare(connection, transaction.getTimeout());
+            handler.parameterize(stmt);
+            return handler.query(stmt, resultHandler);
+        } finally {
+            super.closeStatement(stmt);
+        }
+    }
+
+    /**
+     * 与{@link #doQuery}一样先执行积压的批次
+     */
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        super.flushStatements();
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+        Connection connection = super.getConnection(ms);
+        Statement stmt = handler.prepare(connection, transaction.getTimeout());
+        handler.parameterize(stmt);
+        Cursor<E> cursor = handler.queryCursor(stmt);
+        stmt.closeOnCompletion();
+        return cursor;
+    }
+
+    /**
+     * 依次执行每个批次, 填充{@link BatchResult#setUpdateCounts(int[])}<br>
+     * rollback时不执行, 只关闭Statement
+     *
+     * @throws BatchExecutorException 某一批次执行失败, 携带之前成功的批次
+     */
+    @Override
+    public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+        try {
+            if (isRollback) {
+                return Collections.emptyList();
+            }
+            List<BatchResult> results = new ArrayList<>();
+            for (int i = 0, n = statementList.size(); i < n; i++) {
+                Statement stmt = statementList.get(i);
+                BatchResult batchResult = batchResultList.get(i);
+                try {
+                    batchResult.setUpdateCounts(stmt.executeBatch());
+                    this.processGeneratedKeys(batchResult, stmt);
+                    super.closeStatement(stmt);
+                } catch (BatchUpdateException e) {
+                    String message = "Error executing batch statement '" +
+                            batchResult.getMappedStatement().getId() +
+                            "' (batch index #" + (i + 1) + ")." +
+                            " The following statements were not executed due to this error: " +
+                            (n - i - 1) + ".";
+                    throw new BatchExecutorException(message, e, results, batchResult);
+                }
+                results.add(batchResult);
+            }
+            return results;
+        } finally {
+            for (Statement stmt : statementList) {
+                super.closeStatement(stmt);
+            }
+            currentSql = null;
+            currentStatement = null;
+            statementList.clear();
+            batchResultList.clear();
+        }
+    }
+
+    private void processGeneratedKeys(BatchResult batchResult, Statement stmt) {
+        MappedStatement ms = batchResult.getMappedStatement();
+        KeyGenerator keyGenerator = ms.getKeyGenerator();
+        if (keyGenerator instanceof NoKeyGenerator) {
+            return;
+        }
+        for (Object parameter : batchResult.getParameterObjects()) {
+            keyGenerator.processAfter(this, ms, stmt, parameter);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.harvey.batis.executor;
+
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.cache.CacheStatistics;
+import org.harvey.batis.cache.TableVersions;
+import org.harvey.batis.cache.TransactionalCacheManager;
+import org.harvey.batis.cache.decorators.RefreshAheadCache;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.datasource.sharding.ShardingDataSource;
+import org.harvey.batis.exception.executor.ExecutorException;
+import org.harvey.batis.executor.param.DefaultParameterHandler;
+import org.harvey.batis.executor.result.ResultHandler;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.Environment;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.reflection.MetaObject;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.Transaction;
+import org.harvey.batis.util.enums.ParameterMode;
+import org.harvey.batis.util.enums.StatementType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 二级缓存, 装饰真正执行SQL的{@link Executor}<br>
+ * 每个Mapper命名空间可以有一个{@link Cache}({@link MappedStatement#getCache()}), 在所有会话之间共享<br>
+ * 本会话对二级缓存的修改经由{@link TransactionalCacheManager}缓冲, commit之后才对其他会话可见<br>
+ * 缓存中的结果对象在会话之间共享, 调用方不应修改<br>
+ * 写语句涉及的表已知时只失效读了这些表的结果({@link TableVersions}), 否则清空所在命名空间的缓存
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-05 20:03
+ * @see org.harvey.batis.config.Configuration#isCacheEnabled()
+ */
+public class CachingExecutor implements Executor {
+    private final Executor delegate;
+    private final TransactionalCacheManager tcm;
+
+    /**
+     * @param statistics 二级缓存的放入数在事务提交时才统计
+     */
+    public CachingExecutor(Executor delegate, TableVersions tableVersions, CacheStatistics statistics) {
+        this.delegate = delegate;
+        this.tcm = new TransactionalCacheManager(tableVersions, statistics);
+        delegate.setExecutorWrapper(this);
+    }
+
+    @Override
+    public Transaction getTransaction() {
+        return delegate.getTransaction();
+    }
+
+    /**
+     * 非强制回滚时提交事务缓冲区, 否则丢弃
+     */
+    @Override
+    public void close(boolean forceRollback) {
+        try {
+            if (forceRollback) {
+                tcm.rollback();
+            } else {
+                tcm.commit();
+            }
+        } finally {
+            delegate.close(forceRollback);
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) throws SQLException {
+        this.flushCacheIfRequired(ms);
+        this.invalidateWrittenTables(ms);
+        return delegate.update(ms, parameter);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+        this.flushCacheIfRequired(ms);
+        return delegate.queryCursor(ms, parameter, rowBounds);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler) throws SQLException {
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        CacheKey key = this.createCacheKey(ms, parameter, rowBounds, boundSql);
+        return this.query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+    }
+
+    /**
+     * 先查二级缓存, 未命中再交给{@link #delegate}, 结果暂存到事务缓冲区<br>
+     * 有自定义的{@link ResultHandler}时结果不经过返回值, 不缓存
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
+        Cache cache = ms.getCache();
+        if (cache == null) {
+            return delegate.query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+        }
+        this.flushCacheIfRequired(ms);
+        if (!ms.isUseCache() || resultHandler != null) {
+            return delegate.query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+        }
+        this.ensureNoOutParams(ms, boundSql);
+        Collection<String> readTables = CachingExecutor.readTablesOf(ms, cache);
+        CacheStatistics statistics = ms.getConfiguration().getCacheStatistics();
+        CacheStatistics.Counters counters = statistics.forCache(cache.getId());
+        List<E> list = (List<E>) tcm.getObject(cache, key, readTables);
+        if (list != null) {
+            counters.hit();
+            statistics.forStatement(ms.getId()).hit();
+            return list;
+        }
+        counters.miss();
+        TableVersions.Stamp stamp = tcm.stamp(readTables);
+        long start = System.nanoTime();
+        list = delegate.query(ms, parameter, rowBounds, null, key, boundSql);
+        counters.loaded(System.nanoTime() - start);
+        tcm.putObject(cache, key, list, stamp, StatementReloader.of(ms, parameter, rowBounds, key, boundSql, cache, readTables));
+        return list;
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        return delegate.flushStatements();
+    }
+
+    @Override
+    public void commit(boolean required) throws SQLException {
+        delegate.commit(required);
+        tcm.commit();
+    }
+
+    @Override
+    public void rollback(boolean required) throws SQLException {
+        try {
+            delegate.rollback(required);
+        } finally {
+            if (required) {
+                tcm.rollback();
+            }
+        }
+    }
+
+    /**
+     * 存储过程的OUT参数写回参数对象, 从缓存取值时无法还原, 所以不支持
+     */
+    private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
+        if (ms.getStatementType() != StatementType.CALLABLE) {
+            return;
+        }
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            if (parameterMapping.getMode() != ParameterMode.IN) {
+                throw new ExecutorException("Caching stored procedures with OUT params is not supported.  Please configure use-cache=false in " + ms.getId() + " statement.");
+            }
+        }
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+        return delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    }
+
+    @Override
+    public boolean isCached(MappedStatement ms, CacheKey key) {
+        return delegate.isCached(ms, key);
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
+        delegate.deferLoad(ms, resultObject, property, key, targetType);
+    }
+
+    @Override
+    public void clearLocalCache() {
+        delegate.clearLocalCache();
+    }
+
+    /**
+     * 写语句默认需要清空所在命名空间的二级缓存, 见{@link MappedStatement#isFlushCacheRequired()}
+     */
+    private void flushCacheIfRequired(MappedStatement ms) {
+        Cache cache = ms.getCache();
+        if (cache != null && ms.isFlushCacheRequired()) {
+            tcm.clear(cache);
+        }
+    }
+
+    /**
+     * 写的表已知时, 失效所有命名空间中读了这些表的结果, 以及本命名空间中读的表未知的结果
+     */
+    private void invalidateWrittenTables(MappedStatement ms) {
+        Set<String> writeTables = ms.getWriteTables();
+        if (writeTables == null || writeTables.isEmpty()) {
+            return;
+        }
+        tcm.invalidate(writeTables);
+        Cache cache = ms.getCache();
+        if (cache != null) {
+            tcm.invalidate(Collections.singleton(TableVersions.namespaceTable(cache)));
+        }
+    }
+
+    /**
+     * @return 读的表未知时使用命名空间的伪表
+     */
+    private static Collection<String> readTablesOf(MappedStatement ms, Cache cache) {
+        Set<String> readTables = ms.getReadTables();
+        return readTables != null ? readTables : Collections.singleton(TableVersions.namespaceTable(cache));
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+        throw new UnsupportedOperationException("This method should not be called");
+    }
+
+    /**
+     * 在{@link RefreshAheadCache}的刷新线程中重新执行查询<br>
+     * 用一个自动提交的新连接, 不经过二级缓存<br>
+     * 调用方可能在查询之后修改并复用参数对象, 所以不保留参数对象, 而是保留构建{@link CacheKey}时的SQL和
+     * 解析出的参数值, 刷新时原样重放, 结果总是对应原来的key
+     */
+    private static class StatementReloader implements RefreshAheadCache.Loader {
+        /**
+         * 重放时参数值的名字, 作为{@link BoundSql}的附加参数
+         */
+        private static final String FROZEN_PARAMETER_PREFIX = "__reload_";
+        private final Configuration configuration;
+        private final String statementId;
+        private final RowBounds rowBounds;
+        private final CacheKey key;
+        private final BoundSql boundSql;
+        private final Collection<String> readTables;
+
+        private StatementReloader(MappedStatement ms, RowBounds rowBounds, CacheKey key, BoundSql boundSql,
+                                  Collection<String> readTables) {
+            this.configuration = ms.getConfiguration();
+            this.statementId = ms.getId();
+            this.rowBounds = rowBounds;
+            this.key = key;
+            this.boundSql = boundSql;
+            this.readTables = readTables;
+        }
+
+        /**
+         * @return 缓存不提前刷新, 或者查询路由到了某个分片(刷新时无法还原), 则为null
+         */
+        private static StatementReloader of(MappedStatement ms, Object parameter, RowBounds rowBounds, CacheKey key,
+                                            BoundSql boundSql, Cache cache, Collection<String> readTables) {
+            if (!(cache instanceof RefreshAheadCache)) {
+                return null;
+            }
+            Environment environment = ms.getConfiguration().getEnvironment();
+            if (environment == null || environment.getDataSource() instanceof ShardingDataSource) {
+                return null;
+            }
+            return new StatementReloader(ms, rowBounds, key, StatementReloader.freeze(ms, parameter, boundSql), readTables);
+        }
+
+        /**
+         * @return SQL相同, 参数值在此时就从参数对象中取出, 不再引用参数对象
+         */
+        private static BoundSql freeze(MappedStatement ms, Object parameter, BoundSql boundSql) {
+            Configuration configuration = ms.getConfiguration();
+            List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+            List<ParameterMapping> frozenMappings = new ArrayList<>(parameterMappings.size());
+            List<Object> values = new ArrayList<>(parameterMappings.size());
+            for (int i = 0; i < parameterMappings.size(); i++) {
+                ParameterMapping mapping = parameterMappings.get(i);
+                frozenMappings.add(new ParameterMapping.Builder(configuration, FROZEN_PARAMETER_PREFIX + i, mapping.getTypeHandler())
+                        .javaType(mapping.getJavaType())
+                        .mode(mapping.getMode())
+                        .build());
+                values.add(DefaultParameterHandler.getPorpertyFromParameterObject(mapping.getProperty(), boundSql,
+                        configuration.getTypeHandlerRegistry(), configuration, parameter));
+            }
+            BoundSql frozen = new BoundSql(configuration, boundSql.getSql(), frozenMappings, null);
+            for (int i = 0; i < values.size(); i++) {
+                frozen.setAdditionalParameter(FROZEN_PARAMETER_PREFIX + i, values.get(i));
+            }
+            return frozen;
+        }
+
+        @Override
+        public Object load() throws SQLException {
+            MappedStatement ms = configuration.getMappedStatement(statementId);
+            // 查询之前记下版本, 刷新期间提交的写会让这次的结果失效
+            TableVersions.Stamp stamp = configuration.getTableVersions().stamp(readTables);
+            Environment environment = configuration.getEnvironment();
+            Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+            Executor executor = new SimpleExecutor(configuration, tx);
+            try {
+                return new TableVersions.Stamped(executor.query(ms, null, rowBounds, null, key, boundSql), stamp);
+            } finally {
+                executor.close(false);
+            }
+        }
+    }
+}
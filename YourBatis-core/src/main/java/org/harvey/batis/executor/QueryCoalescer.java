@@ -0,0 +1,80 @@
+package org.harvey.batis.executor;
+
+import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.exception.executor.ExecutorException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 合并并发的相同查询(single-flight)<br>
+ * 多个会话同时执行{@link CacheKey}相同的查询时, 只有第一个真正访问数据库, 其余的等待并共享它的结果,
+ * 避免缓存失效时大量相同的查询同时压到连接池上<br>
+ * 等待者拿到的是结果列表的浅拷贝, 列表中的对象与其他会话共享, 不应修改
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 19:32
+ * @see org.harvey.batis.mapping.MappedStatement#isCoalesce()
+ */
+public class QueryCoalescer {
+    private final Map<CacheKey, CompletableFuture<List<?>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 真正执行查询的回调
+     */
+    @FunctionalInterface
+    public interface Query<E> {
+        List<E> execute() throws SQLException;
+    }
+
+    /**
+     * @param key   相同的key视为相同的查询
+     * @param query 没有相同的查询正在执行时才调用
+     * @throws SQLException 执行查询的一方抛出的异常, 等待者收到同一个异常
+     */
+    @SuppressWarnings("unchecked")
+    public <E> List<E> execute(CacheKey key, Query<E> query) throws SQLException {
+        CompletableFuture<List<?>> flight = new CompletableFuture<>();
+        CompletableFuture<List<?>> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            return new ArrayList<>((List<E>) QueryCoalescer.await(leader));
+        }
+        try {
+            List<E> list = query.execute();
+            flight.complete(list);
+            return list;
+        } catch (SQLException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static List<?> await(CompletableFuture<List<?>> leader) throws SQLException {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutorException("Interrupted while waiting for a coalesced query.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ExecutorException("Error executing a coalesced query.  Cause: " + cause, cause);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.harvey.batis.executor;
+
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.executor.result.ResultHandler;
+import org.harvey.batis.executor.statement.StatementHandler;
+import org.harvey.batis.executor.statement.StatementUtil;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 复用{@link Statement}的执行器<br>
+ * 同一个会话中, SQL相同的语句只会预编译一次, 之后只需要重新注入参数<br>
+ * 缓存的Statement在{@link #doFlushStatements(boolean)}时关闭,
+ * 也就是在commit, rollback和close时关闭
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-03 21:40
+ * @see org.harvey.batis.util.enums.ExecutorType#REUSE
+ */
+public class ReuseExecutor extends BaseExecutor {
+    /**
+     * key为{@link BoundSql#getSql()}, value为依据该SQL预编译的Statement
+     */
+    private final Map<String, Statement> statementMap = new HashMap<>();
+    /**
+     * 与{@link #statementMap}相同, 但Statement来自只读副本的连接,
+     * 分开存放, 避免写操作之后的查询复用副本上的Statement
+     *
+     * @see BaseExecutor#isReadOnly(MappedStatement)
+     */
+    private final Map<String, Statement> readOnlyStatementMap = new HashMap<>();
+
+    public ReuseExecutor(Configuration configuration, Transaction transaction) {
+        super(configuration, transaction);
+    }
+
+    @Override
+    public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(
+                this, ms, parameter, RowBounds.DEFAULT, null, null);
+        Statement stmt = this.prepareStatement(handler, ms);
+        return handler.update(stmt);
+    }
+
+    @Override
+    public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+        Statement stmt = this.prepareStatement(handler, ms);
+        return handler.query(stmt, resultHandler);
+    }
+
+    /**
+     * Statement仍由{@link #statementMap}管理, 所以不设置{@link Statement#closeOnCompletion()}
+     */
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+        Statement stmt = this.prepareStatement(handler, ms);
+        return handler.queryCursor(stmt);
+    }
+
+    /**
+     * 关闭所有缓存的Statement
+     */
+    @Override
+    public List<BatchResult> doFlushStatements(boolean isRollback) {
+        for (Statement stmt : statementMap.values()) {
+            super.closeStatement(stmt);
+        }
+        for (Statement stmt : readOnlyStatementMap.values()) {
+            super.closeStatement(stmt);
+        }
+        statementMap.clear();
+        readOnlyStatementMap.clear();
+        return Collections.emptyList();
+    }
+
+    /**
+     * 存在可用的缓存就复用, 否则预编译新的Statement并缓存<br>
+     * 无论是否复用, 都会重新注入参数
+     *
+     * @see StatementHandler#prepare(Connection, Integer)
+     * @see StatementHandler#parameterize(Statement)
+     */
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
+        Statement stmt;
+        String sql = handler.getBoundSql().getSql();
+        Map<String, Statement> statementMap = super.isReadOnly(ms) ? readOnlyStatementMap : this.statementMap;
+        if (ReuseExecutor.hasStatementFor(statementMap, sql)) {
+            stmt = statementMap.get(sql);
+            StatementUtil.applyTransactionTimeout(stmt, stmt.getQueryTimeout(), transaction.getTimeout());
+        } else {
+            Connection connection = super.getConnection(ms);
+            stmt = handler.prepare(connection, transaction.getTimeout());
+            statementMap.put(sql, stmt);
+        }
+        handler.parameterize(stmt);
+        return stmt;
+    }
+
+    /**
+     * @return 缓存中存在该SQL的Statement, 且Statement和其连接都没有被关闭
+     */
+    private static boolean hasStatementFor(Map<String, Statement> statementMap, String sql) {
+        Statement stmt = statementMap.get(sql);
+        if (stmt == null) {
+            return false;
+        }
+        try {
+            if (!stmt.isClosed() && !stmt.getConnection().isClosed()) {
+                return true;
+            }
+        } catch (SQLException e) {
+            // 视作不可用
+        }
+        statementMap.remove(sql);
+        return false;
+    }
+}
@@ -0,0 +1,243 @@
+package org.harvey.batis.executor;
+
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.cursor.MergingCursor;
+import org.harvey.batis.datasource.sharding.ShardingDataSource;
+import org.harvey.batis.exception.ExceptionFactory;
+import org.harvey.batis.exception.executor.ExecutorException;
+import org.harvey.batis.mapping.Environment;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.reflection.MetaClass;
+import org.harvey.batis.reflection.MetaObject;
+import org.harvey.batis.reflection.invoke.Invoker;
+import org.harvey.batis.session.DefaultSqlSession;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.session.SqlSession;
+import org.harvey.batis.transaction.Transaction;
+import org.harvey.batis.util.enums.ExecutorType;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 在{@link ShardingDataSource}的每个分片上并行执行同一条查询, 再用{@link MergingCursor}流式归并<br>
+ * 每个分片各自打开一个自动提交的会话, 以{@link Cursor}的形式读取, 只有归并堆中的当前行在内存中<br>
+ * 有limit时每个分片只需要查出前offset+limit行, 配置了{@link org.harvey.batis.executor.pagination.Dialect}时会下推到SQL<br>
+ * 分片的查询在专用的{@link Configuration#getScatterExecutor()}中执行, 不占用异步Mapper方法的线程池
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 17:40
+ * @see MappedStatement#isScatter()
+ */
+public class ScatterGatherQuery {
+    private final Configuration configuration;
+
+    public ScatterGatherQuery(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param rowBounds 作用于归并后的结果
+     * @return 归并后的游标, 读完之前需要调用方关闭
+     * @throws ExecutorException 环境中没有配置分片
+     */
+    public <E> Cursor<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+        Environment environment = configuration.getEnvironment();
+        if (environment == null || !(environment.getDataSource() instanceof ShardingDataSource)) {
+            throw new ExecutorException(ms.getId() + " is declared as scatter, but no shards are configured.");
+        }
+        ShardingDataSource shardingDataSource = (ShardingDataSource) environment.getDataSource();
+        RowBounds shardRowBounds = ScatterGatherQuery.shardRowBounds(rowBounds);
+        List<CompletableFuture<Cursor<E>>> futures = new ArrayList<>();
+        for (DataSource shard : shardingDataSource.getShards().values()) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> this.openCursor(environment, shard, ms.getId(), parameter, shardRowBounds),
+                    configuration.getScatterExecutor()));
+        }
+        List<Cursor<E>> cursors = new ArrayList<>(futures.size());
+        CompletionException failure = null;
+        for (CompletableFuture<Cursor<E>> future : futures) {
+            try {
+                cursors.add(future.join());
+            } catch (CompletionException e) {
+                failure = e;
+            }
+        }
+        Comparator<E> comparator = this.mergeComparator(ms.getMergeOrder());
+        MergingCursor<E> cursor = new MergingCursor<>(cursors, comparator, rowBounds.getOffset(), rowBounds.getLimit());
+        if (failure != null) {
+            cursor.close();
+            Throwable cause = failure.getCause() == null ? failure : failure.getCause();
+            throw ExceptionFactory.wrapException("Error querying " + ms.getId() + " across shards.  Cause: " + cause, failure);
+        }
+        return cursor;
+    }
+
+    /**
+     * 每个分片从头开始查出offset+limit行, 跳过在归并后进行
+     */
+    private static RowBounds shardRowBounds(RowBounds rowBounds) {
+        if (rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT) {
+            return RowBounds.DEFAULT;
+        }
+        long limit = (long) rowBounds.getOffset() + rowBounds.getLimit();
+        return new RowBounds(RowBounds.NO_ROW_OFFSET, (int) Math.min(limit, RowBounds.NO_ROW_LIMIT));
+    }
+
+    private <E> Cursor<E> openCursor(Environment environment, DataSource shard, String statement,
+                                     Object parameter, RowBounds rowBounds) {
+        Transaction tx = environment.getTransactionFactory().newTransaction(shard, null, true);
+        SqlSession session = new DefaultSqlSession(configuration, configuration.newExecutor(tx, ExecutorType.SIMPLE), true);
+        try {
+            return new SessionCursor<>(session.selectCursor(statement, parameter, rowBounds), session);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param mergeOrder 如"createTime desc, id", 为null时返回null
+     * @throws ExecutorException 排序方向不是asc或desc
+     */
+    private <E> Comparator<E> mergeComparator(String mergeOrder) {
+        if (mergeOrder == null || mergeOrder.trim().isEmpty()) {
+            return null;
+        }
+        Comparator<E> comparator = null;
+        for (String item : mergeOrder.split(",")) {
+            String[] parts = item.trim().split("\\s+");
+            if (parts.length > 2 || (parts.length == 2
+                    && !"asc".equalsIgnoreCase(parts[1]) && !"desc".equalsIgnoreCase(parts[1]))) {
+                throw new ExecutorException("Invalid merge-order item: '" + item.trim() + "'");
+            }
+            PropertyReader reader = new PropertyReader(parts[0]);
+            Comparator<E> next = (a, b) -> ScatterGatherQuery.compare(reader.read(a), reader.read(b));
+            if (parts.length == 2 && "desc".equalsIgnoreCase(parts[1])) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    /**
+     * 读取行的一个属性, 在归并堆的每次比较中调用<br>
+     * 同一次查询的行通常是同一个类, 遇到新的类时才解析一次getter; Map和嵌套属性仍然通过{@link MetaObject}读取
+     */
+    private class PropertyReader {
+        private final String property;
+        private Class<?> rowClass;
+        /**
+         * 为null时通过{@link MetaObject}读取
+         */
+        private Invoker getter;
+
+        private PropertyReader(String property) {
+            this.property = property;
+        }
+
+        private Object read(Object row) {
+            if (row == null) {
+                return null;
+            }
+            Class<?> type = row.getClass();
+            if (type != rowClass) {
+                this.resolve(type);
+            }
+            if (getter == null) {
+                return configuration.newMetaObject(row).getValue(property);
+            }
+            try {
+                return getter.invoke(row, null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new ExecutorException("Could not read property '" + property + "' of " + type.getName()
+                        + " for merging.  Cause: " + e, e);
+            }
+        }
+
+        private void resolve(Class<?> type) {
+            rowClass = type;
+            getter = null;
+            if (Map.class.isAssignableFrom(type) || property.indexOf('.') >= 0) {
+                return;
+            }
+            MetaClass metaClass = MetaClass.forClass(type, configuration.getReflectorFactory());
+            if (metaClass.hasGetter(property)) {
+                getter = metaClass.getGetInvoker(property);
+            }
+        }
+    }
+
+    /**
+     * 与数据库的升序一致, null在前
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (!(a instanceof Comparable)) {
+            throw new ExecutorException("Cannot merge by a property of type " + a.getClass().getName() + ", it is not Comparable");
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    /**
+     * 分片的游标, 关闭时一并关闭打开它的会话
+     */
+    private static class SessionCursor<E> implements Cursor<E> {
+        private final Cursor<E> delegate;
+        private final SqlSession session;
+
+        private SessionCursor(Cursor<E> delegate, SqlSession session) {
+            this.delegate = delegate;
+            this.session = session;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return delegate.isConsumed();
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return delegate.getCurrentIndex();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return delegate.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
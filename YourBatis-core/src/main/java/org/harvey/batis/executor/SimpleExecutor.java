@@ -1,9 +1,9 @@
 package org.harvey.batis.executor;
 
 import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
 import org.harvey.batis.executor.result.ResultHandler;
 import org.harvey.batis.executor.statement.StatementHandler;
-import org.harvey.batis.io.log.Log;
 import org.harvey.batis.mapping.BoundSql;
 import org.harvey.batis.mapping.MappedStatement;
 import org.harvey.batis.session.RowBounds;
@@ -34,7 +34,7 @@ public class SimpleExecutor extends BaseExecutor {
             Configuration configuration = ms.getConfiguration();
             StatementHandler handler = configuration.newStatementHandler(
                     this, ms, parameter, RowBounds.DEFAULT, null, null);
-            stmt = this.prepareStatement(handler, ms.getStatementLog());
+            stmt = this.prepareStatement(handler, ms);
             return handler.update(stmt);
         } finally {
             this.closeStatement(stmt);
@@ -51,22 +51,37 @@ public class SimpleExecutor extends BaseExecutor {
             Configuration configuration = ms.getConfiguration();
             // 获取StatementHandler
             StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
-            stmt = this.prepareStatement(handler, ms.getStatementLog());
+            stmt = this.prepareStatement(handler, ms);
             return handler.query(stmt, resultHandler);
         } finally {
             super.closeStatement(stmt);
         }
     }
 
+    /**
+     * Statement交给{@link Cursor}, 在ResultSet关闭时随之关闭
+     *
+     * @see Statement#closeOnCompletion()
+     */
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+        Statement stmt = this.prepareStatement(handler, ms);
+        Cursor<E> cursor = handler.queryCursor(stmt);
+        stmt.closeOnCompletion();
+        return cursor;
+    }
+
     /**
      * 准备{@link Statement}, 并注入参数
      *
-     * @see BaseExecutor#getConnection(Log)
+     * @see BaseExecutor#getConnection(MappedStatement)
      * @see StatementHandler#prepare(Connection, Integer)
      * @see StatementHandler#parameterize(Statement)
      */
-    private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
-        Connection connection = super.getConnection(statementLog);
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
+        Connection connection = super.getConnection(ms);
         // 获取Statement
         Statement stmt = handler.prepare(connection, transaction.getTimeout());
         // 注入参数
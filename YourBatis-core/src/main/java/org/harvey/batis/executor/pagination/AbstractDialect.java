@@ -0,0 +1,203 @@
+package org.harvey.batis.executor.pagination;
+
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 分页的值以{@code ?}占位符的形式追加, 而不是直接拼进SQL,
+ * 这样不同的页共用同一条SQL, 可以被数据库和{@link org.harvey.batis.executor.ReuseExecutor}复用<br>
+ * 值作为{@link BoundSql}的附加参数传入, 见{@link BoundSql#setAdditionalParameter(String, Object)}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 14:26
+ */
+public abstract class AbstractDialect implements Dialect {
+    public static final String OFFSET_PARAMETER = "_rowBoundsOffset";
+    public static final String LIMIT_PARAMETER = "_rowBoundsLimit";
+
+    /**
+     * {@inheritDoc}
+     * 分页子句追加在末尾的语句结束符和行注释之前, 有加锁子句时插入在加锁子句之前<br>
+     * 已经自带分页(顶层有{@code LIMIT}, {@code OFFSET}或{@code FETCH}), 含有多条语句,
+     * 或引号/括号不配对时不改写
+     */
+    @Override
+    public BoundSql paginate(Configuration configuration, BoundSql boundSql, RowBounds rowBounds) {
+        String originalSql = boundSql.getSql();
+        Tail tail = Tail.of(originalSql);
+        if (tail == null) {
+            return null;
+        }
+        boolean hasOffset = rowBounds.getOffset() > RowBounds.NO_ROW_OFFSET;
+        boolean hasLimit = rowBounds.getLimit() < RowBounds.NO_ROW_LIMIT;
+        List<String> pageParameterNames = new ArrayList<>(2);
+        StringBuilder sql = new StringBuilder(tail.end + 32).append(originalSql, 0, tail.insertAt);
+        this.appendPageClause(sql, hasOffset, hasLimit, pageParameterNames);
+        if (tail.lockingStart < tail.end) {
+            sql.append(' ').append(originalSql, tail.lockingStart, tail.end);
+        }
+
+        List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings().size() + 2);
+        parameterMappings.addAll(boundSql.getParameterMappings());
+        for (String name : pageParameterNames) {
+            parameterMappings.add(new ParameterMapping.Builder(configuration, name, Integer.class).build());
+        }
+        BoundSql pageBoundSql = new BoundSql(configuration, sql.toString(), parameterMappings, boundSql.getParameterObject());
+        for (Map.Entry<String, Object> entry : boundSql.getAdditionalParameters().entrySet()) {
+            pageBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+        pageBoundSql.setAdditionalParameter(OFFSET_PARAMETER, rowBounds.getOffset());
+        pageBoundSql.setAdditionalParameter(LIMIT_PARAMETER, rowBounds.getLimit());
+        return pageBoundSql;
+    }
+
+    /**
+     * 在sql末尾追加分页子句
+     *
+     * @param hasOffset          需要跳过记录
+     * @param hasLimit           需要限制记录数
+     * @param pageParameterNames 按占位符的顺序添加{@link #OFFSET_PARAMETER}或{@link #LIMIT_PARAMETER}
+     */
+    protected abstract void appendPageClause(StringBuilder sql, boolean hasOffset, boolean hasLimit, List<String> pageParameterNames);
+
+    /**
+     * 从头扫描一遍SQL, 跳过字符串, 带引号的标识符和注释, 只看括号外的关键字
+     */
+    private static class Tail {
+        /**
+         * 最后一个有效字符之后, 不含末尾的空白符, 注释和{@code ;}
+         */
+        private int end;
+        /**
+         * 加锁子句的开始, 没有时等于{@link #end}
+         */
+        private int lockingStart;
+        /**
+         * 分页子句插入的位置, 是加锁子句之前最后一个有效字符之后
+         */
+        private int insertAt;
+
+        /**
+         * @return 不能安全改写时为null
+         */
+        private static Tail of(String sql) {
+            Tail tail = new Tail();
+            List<String> words = new ArrayList<>();
+            // 每个关键字之前最后一个有效字符之后的位置
+            List<int[]> positions = new ArrayList<>();
+            int depth = 0;
+            boolean terminated = false;
+            int n = sql.length();
+            int i = 0;
+            while (i < n) {
+                char c = sql.charAt(i);
+                char next = i + 1 < n ? sql.charAt(i + 1) : 0;
+                if (c == '-' && next == '-') {
+                    int newline = sql.indexOf('\n', i);
+                    i = newline < 0 ? n : newline + 1;
+                    continue;
+                }
+                if (c == '/' && next == '*') {
+                    int close = sql.indexOf("*/", i + 2);
+                    i = close < 0 ? n : close + 2;
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (c == ';' && depth == 0) {
+                    terminated = true;
+                    i++;
+                    continue;
+                }
+                if (terminated) {
+                    // 结束符之后还有语句
+                    return null;
+                }
+                int start = i;
+                if (c == '\'' || c == '"' || c == '`') {
+                    i = Tail.skipQuoted(sql, i);
+                    if (i < 0) {
+                        return null;
+                    }
+                } else if (Character.isLetter(c) || c == '_') {
+                    while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+                        i++;
+                    }
+                    if (depth == 0 && (start == 0 || sql.charAt(start - 1) != '.')) {
+                        words.add(sql.substring(start, i).toUpperCase(Locale.ENGLISH));
+                        positions.add(new int[]{start, tail.end});
+                    }
+                } else {
+                    if (c == '(') {
+                        depth++;
+                    } else if (c == ')' && --depth < 0) {
+                        return null;
+                    }
+                    i++;
+                }
+                tail.end = i;
+            }
+            if (depth != 0) {
+                return null;
+            }
+            tail.lockingStart = tail.end;
+            tail.insertAt = tail.end;
+            for (int k = 0; k < words.size(); k++) {
+                String word = words.get(k);
+                if ("LIMIT".equals(word) || "OFFSET".equals(word) || "FETCH".equals(word)) {
+                    // 已经自带分页
+                    return null;
+                }
+                String following = k + 1 < words.size() ? words.get(k + 1) : null;
+                if (tail.lockingStart == tail.end && Tail.isLockingClause(word, following)) {
+                    tail.lockingStart = positions.get(k)[0];
+                    tail.insertAt = positions.get(k)[1];
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * {@code FOR UPDATE}, {@code FOR SHARE}, {@code FOR NO KEY UPDATE}, {@code FOR KEY SHARE}, {@code LOCK IN SHARE MODE}
+         */
+        private static boolean isLockingClause(String word, String following) {
+            if ("FOR".equals(word)) {
+                return "UPDATE".equals(following) || "SHARE".equals(following)
+                        || "NO".equals(following) || "KEY".equals(following);
+            }
+            return "LOCK".equals(word) && "IN".equals(following);
+        }
+
+        /**
+         * 引号内重复两次的引号和反斜杠之后的字符都视作转义
+         *
+         * @return 结束引号之后的位置, 没有结束引号时为-1
+         */
+        private static int skipQuoted(String sql, int open) {
+            char quote = sql.charAt(open);
+            for (int i = open + 1; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                        i++;
+                    } else {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
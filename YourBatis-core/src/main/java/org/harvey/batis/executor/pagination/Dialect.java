@@ -0,0 +1,40 @@
+package org.harvey.batis.executor.pagination;
+
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.session.RowBounds;
+
+/**
+ * 数据库方言, 把{@link RowBounds}改写进SQL, 由数据库完成分页<br>
+ * 否则只能在客户端逐行跳过{@link RowBounds#getOffset()}之前的记录, 深分页时会传输大量无用的数据
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 14:20
+ * @see Configuration#getDialect()
+ */
+public interface Dialect {
+    /**
+     * @param boundSql  原始的SQL, 不会被修改
+     * @param rowBounds 不是{@link RowBounds#DEFAULT}
+     * @return 带有分页子句的新BoundSql, 不能安全改写时为null, 此时仍按{@link RowBounds}在客户端分页
+     */
+    BoundSql paginate(Configuration configuration, BoundSql boundSql, RowBounds rowBounds);
+
+    /**
+     * @return 能否把IN列表作为一个JDBC数组参数绑定
+     * @see #arrayInList(String)
+     */
+    default boolean supportsArrayParameters() {
+        return false;
+    }
+
+    /**
+     * @param parameter 数组参数的占位符, 形如{@code #{name}}
+     * @return 代替整个IN列表(包括括号)的SQL, 跟在{@code IN}之后
+     * @see org.harvey.batis.scripting.xml.node.ForEachSqlNode#getArrayType()
+     */
+    default String arrayInList(String parameter) {
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not support array parameters");
+    }
+}
@@ -0,0 +1,27 @@
+package org.harvey.batis.executor.pagination;
+
+import org.harvey.batis.session.RowBounds;
+
+import java.util.List;
+
+/**
+ * {@code LIMIT ? OFFSET ?}, 适用于MySQL, PostgreSQL, H2, SQLite等
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 14:41
+ */
+public class LimitOffsetDialect extends AbstractDialect {
+    /**
+     * 有的数据库(如MySQL)不支持单独的OFFSET, 此时以{@link RowBounds#NO_ROW_LIMIT}作为LIMIT
+     */
+    @Override
+    protected void appendPageClause(StringBuilder sql, boolean hasOffset, boolean hasLimit, List<String> pageParameterNames) {
+        sql.append(" LIMIT ?");
+        pageParameterNames.add(LIMIT_PARAMETER);
+        if (hasOffset) {
+            sql.append(" OFFSET ?");
+            pageParameterNames.add(OFFSET_PARAMETER);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.harvey.batis.executor.pagination;
+
+import java.util.List;
+
+/**
+ * SQL:2008标准的{@code OFFSET ? ROWS FETCH NEXT ? ROWS ONLY}, 适用于Oracle 12c+, SQL Server 2012+, DB2等<br>
+ * SQL Server要求语句带有ORDER BY
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 14:45
+ */
+public class OffsetFetchDialect extends AbstractDialect {
+    @Override
+    protected void appendPageClause(StringBuilder sql, boolean hasOffset, boolean hasLimit, List<String> pageParameterNames) {
+        sql.append(" OFFSET ? ROWS");
+        pageParameterNames.add(OFFSET_PARAMETER);
+        if (hasLimit) {
+            sql.append(" FETCH NEXT ? ROWS ONLY");
+            pageParameterNames.add(LIMIT_PARAMETER);
+        }
+    }
+}
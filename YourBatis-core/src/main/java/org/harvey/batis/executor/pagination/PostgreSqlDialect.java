@@ -0,0 +1,21 @@
+package org.harvey.batis.executor.pagination;
+
+/**
+ * {@code LIMIT ? OFFSET ?}, 并且能把IN列表作为一个数组参数绑定: {@code IN (SELECT * FROM UNNEST(?))}<br>
+ * 适用于PostgreSQL, H2等
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:10
+ */
+public class PostgreSqlDialect extends LimitOffsetDialect {
+    @Override
+    public boolean supportsArrayParameters() {
+        return true;
+    }
+
+    @Override
+    public String arrayInList(String parameter) {
+        return "(SELECT * FROM UNNEST(" + parameter + "))";
+    }
+}
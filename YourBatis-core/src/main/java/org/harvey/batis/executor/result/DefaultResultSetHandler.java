@@ -3,6 +3,7 @@ package org.harvey.batis.executor.result;
 import org.harvey.batis.cache.CacheKey;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.cursor.DefaultCursor;
 import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.exception.executor.ExecutorException;
 import org.harvey.batis.executor.Executor;
@@ -659,11 +660,24 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
 
     /**
-     * TODO
+     * 只取第一个ResultSet, 交给{@link DefaultCursor}逐行映射<br>
+     * Cursor不支持多结果集, 所以要求恰好一个ResultMap
      */
     @Override
     public <E> Cursor<E> handleCursorResultSets(Statement stmt) throws SQLException {
-        throw new UnfinishedFunctionException();
+        ErrorContext.instance().setActivity("handling cursor results").setObject(mappedStatement.getId());
+        ResultSetWrapper rsw = this.getFirstResultSet(stmt);
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        int resultMapCount = resultMaps.size();
+        this.validateResultMapsCount(rsw, resultMapCount);
+        if (resultMapCount != 1) {
+            throw new ExecutorException("Cursor results cannot be mapped to multiple resultMaps");
+        }
+        if (rsw == null) {
+            throw new ExecutorException("A query was run for a Cursor but no ResultSet was returned for the Mapped Statement '" + mappedStatement.getId() + "'.");
+        }
+        ResultMap resultMap = resultMaps.get(0);
+        return new DefaultCursor<>(this, resultMap, rsw, rowBounds);
     }
 
     /**
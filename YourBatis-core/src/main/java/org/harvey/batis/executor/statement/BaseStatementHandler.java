@@ -13,6 +13,8 @@ import org.harvey.batis.mapping.MappedStatement;
 import org.harvey.batis.reflection.factory.ObjectFactory;
 import org.harvey.batis.session.RowBounds;
 import org.harvey.batis.util.ErrorContext;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.harvey.batis.util.enums.StatementType;
 import org.harvey.batis.util.type.TypeHandlerRegistry;
 
 import java.sql.Connection;
@@ -45,7 +47,6 @@ public abstract class BaseStatementHandler implements StatementHandler {
         this.configuration = mappedStatement.getConfiguration();
         this.executor = executor;
         this.mappedStatement = mappedStatement;
-        this.rowBounds = rowBounds;
 
         this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
         this.objectFactory = configuration.getObjectFactory();
@@ -57,11 +58,33 @@ public abstract class BaseStatementHandler implements StatementHandler {
             this.generateKeys(parameterObject);
             this.boundSql = mappedStatement.getBoundSql(parameterObject);
         }
+        if (this.isPaginatedByDialect(rowBounds)) {
+            BoundSql pageBoundSql = configuration.getDialect().paginate(configuration, this.boundSql, rowBounds);
+            if (pageBoundSql != null) {
+                // 由数据库分页, 结果集不需要再跳过和截断
+                this.boundSql = pageBoundSql;
+                rowBounds = RowBounds.DEFAULT;
+            }
+        }
+        this.rowBounds = rowBounds;
 
         this.parameterHandler = configuration
                 .newParameterHandler(mappedStatement, parameterObject, this.boundSql);
         this.resultSetHandler = configuration
-                .newResultSetHandler(executor, mappedStatement, rowBounds, parameterHandler, resultHandler, boundSql);
+                .newResultSetHandler(executor, mappedStatement, rowBounds, parameterHandler, resultHandler, this.boundSql);
+    }
+
+    /**
+     * 配置了{@link Configuration#getDialect()}, 且查询语句带有非默认的{@link RowBounds}时, 把分页改写进SQL<br>
+     * 存储过程不改写. {@link org.harvey.batis.cache.CacheKey}在此之前已由原始SQL和RowBounds算出, 不受影响
+     */
+    private boolean isPaginatedByDialect(RowBounds rowBounds) {
+        return configuration.getDialect() != null
+                && rowBounds != null
+                && rowBounds != RowBounds.DEFAULT
+                && (rowBounds.getOffset() > RowBounds.NO_ROW_OFFSET || rowBounds.getLimit() < RowBounds.NO_ROW_LIMIT)
+                && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT
+                && mappedStatement.getStatementType() != StatementType.CALLABLE;
     }
 
     /**
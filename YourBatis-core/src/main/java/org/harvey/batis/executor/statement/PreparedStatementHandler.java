@@ -1,7 +1,6 @@
 package org.harvey.batis.executor.statement;
 
 import org.harvey.batis.cursor.Cursor;
-import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.executor.Executor;
 import org.harvey.batis.executor.key.generator.Jdbc3KeyGenerator;
 import org.harvey.batis.executor.key.generator.KeyGenerator;
@@ -54,7 +53,8 @@ public class PreparedStatementHandler extends BaseStatementHandler {
 
     @Override
     public void batch(Statement statement) throws SQLException {
-        throw new UnfinishedFunctionException();
+        PreparedStatement ps = (PreparedStatement) statement;
+        ps.addBatch();
     }
 
     @Override
@@ -81,8 +81,15 @@ public class PreparedStatementHandler extends BaseStatementHandler {
         return resultSetHandler.handleResultSets(ps);
     }
 
+    /**
+     * 执行查询, 但不立即读取结果, 由返回的{@link Cursor}逐行读取
+     *
+     * @see ResultSetHandler#handleCursorResultSets(Statement)
+     */
     @Override
     public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
-        throw new UnfinishedFunctionException();
+        PreparedStatement ps = (PreparedStatement) statement;
+        ps.execute();
+        return resultSetHandler.handleCursorResultSets(ps);
     }
 }
\ No newline at end of file
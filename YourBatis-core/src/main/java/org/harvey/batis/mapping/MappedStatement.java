@@ -1,6 +1,9 @@
 package org.harvey.batis.mapping;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.harvey.batis.cache.Cache;
+import org.harvey.batis.cache.CacheKey;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.executor.key.generator.Jdbc3KeyGenerator;
 import org.harvey.batis.executor.key.generator.KeyGenerator;
@@ -17,6 +20,7 @@ import org.harvey.batis.util.enums.StatementType;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * TODO
@@ -53,9 +57,76 @@ public class MappedStatement {
     private String[] resultSets;
 
     private boolean flushCacheRequired;
+    /**
+     * 是否使用二级缓存, 只对查询语句有意义
+     */
+    private boolean useCache;
+    /**
+     * 所在命名空间的二级缓存, 没有配置则为null
+     */
+    private Cache cache;
+    /**
+     * 是否合并多个会话并发执行的相同查询, 只对查询语句有意义
+     *
+     * @see org.harvey.batis.executor.QueryCoalescer
+     */
+    private boolean coalesce;
+    /**
+     * 是否在所有分片上并行执行, 再归并各分片的结果, 只对查询语句有意义
+     *
+     * @see org.harvey.batis.executor.ScatterGatherQuery
+     */
+    private boolean scatter;
+    /**
+     * 查询语句也在主库上执行, 不路由到只读副本, 如加锁的读
+     *
+     * @see org.harvey.batis.datasource.ReadWriteDataSource#isLockingRead(String)
+     */
+    private boolean useMaster;
+    /**
+     * 归并各分片结果时的排序, 如"createTime desc, id", 属性名是结果对象的属性, 为null时按分片顺序依次拼接<br>
+     * 各分片的SQL需要按相同的顺序排序
+     */
+    private String mergeOrder;
+    /**
+     * 语句读的表, 小写; 为null表示未知
+     *
+     * @see org.harvey.batis.builder.SqlTableExtractor
+     */
+    private Set<String> readTables;
+    /**
+     * 语句写的表, 小写; 查询语句为空集合, 为null表示未知<br>
+     * 已知时写语句只失效读了这些表的缓存, 见{@link org.harvey.batis.cache.TableVersions}
+     */
+    private Set<String> writeTables;
 
     @Deprecated
     private boolean hasNestedResultMaps;
+    /**
+     * 只有语句id的缓存key前缀, 第一次构建key时创建
+     *
+     * @see #newCacheKey(String, int)
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile CacheKey cacheKeyPrefix;
+
+    /**
+     * 创建以语句id和SQL开头的缓存key<br>
+     * 复制已经算好hash的语句id前缀, 再加入SQL; 动态SQL每次都是新的字符串, 也只创建一个key和一个数组
+     *
+     * @param sql             {@link BoundSql#getSql()}
+     * @param expectedUpdates 预计之后还会update的实体个数
+     */
+    public CacheKey newCacheKey(String sql, int expectedUpdates) {
+        CacheKey prefix = cacheKeyPrefix;
+        if (prefix == null) {
+            prefix = new CacheKey(id);
+            cacheKeyPrefix = prefix;
+        }
+        CacheKey cacheKey = new CacheKey(prefix, expectedUpdates + 1);
+        cacheKey.update(sql);
+        return cacheKey;
+    }
 
     /**
      * 解析param, 绑定参数位置和参数值<br>
@@ -131,6 +202,46 @@ public class MappedStatement {
             return this;
         }
 
+        public Builder useCache(boolean useCache) {
+            product.useCache = useCache;
+            return this;
+        }
+
+        public Builder cache(Cache cache) {
+            product.cache = cache;
+            return this;
+        }
+
+        public Builder coalesce(boolean coalesce) {
+            product.coalesce = coalesce;
+            return this;
+        }
+
+        public Builder useMaster(boolean useMaster) {
+            product.useMaster = useMaster;
+            return this;
+        }
+
+        public Builder scatter(boolean scatter) {
+            product.scatter = scatter;
+            return this;
+        }
+
+        public Builder mergeOrder(String mergeOrder) {
+            product.mergeOrder = mergeOrder;
+            return this;
+        }
+
+        public Builder readTables(Set<String> readTables) {
+            product.readTables = readTables;
+            return this;
+        }
+
+        public Builder writeTables(Set<String> writeTables) {
+            product.writeTables = writeTables;
+            return this;
+        }
+
         public Builder statementType(StatementType statementType) {
             product.statementType = statementType;
             return this;
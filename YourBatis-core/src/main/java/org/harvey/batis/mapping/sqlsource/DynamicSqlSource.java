@@ -6,6 +6,8 @@ import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.mapping.BoundSql;
 import org.harvey.batis.scripting.xml.DynamicContext;
 import org.harvey.batis.scripting.xml.SqlNode;
+import org.harvey.batis.scripting.xml.compile.SqlNodeCompiler;
+import org.harvey.batis.scripting.xml.compile.SqlRenderer;
 
 /**
  * TODO
@@ -17,6 +19,17 @@ import org.harvey.batis.scripting.xml.SqlNode;
 public class DynamicSqlSource implements SqlSource {
     private final Configuration configuration;
     private final SqlNode rootSqlNode;
+    /**
+     * 编译的结果, 不能编译时为null
+     *
+     * @see Configuration#isCompileDynamicSql()
+     */
+    private SqlRenderer renderer;
+    private volatile boolean compiled;
+    /**
+     * 本语句渲染后绑定的参数个数的最大值, 用于确定下一次渲染时bindings的初始容量
+     */
+    private volatile int expectedBindings;
 
     public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
         this.configuration = configuration;
@@ -25,16 +38,52 @@ public class DynamicSqlSource implements SqlSource {
 
     @Override
     public BoundSql getBoundSql(Object parameterObject) {
-        DynamicContext context = new DynamicContext(configuration, parameterObject);
-        // 解析sqlNode, 然后将结果存入context
-        rootSqlNode.apply(context);
+        SqlRenderer compiledRenderer = this.compiledRenderer();
+        if (compiledRenderer != null) {
+            return compiledRenderer.getBoundSql(parameterObject);
+        }
+        DynamicContext context = new DynamicContext(configuration, parameterObject, expectedBindings);
+        String sql;
+        try {
+            // 解析sqlNode, 然后将结果存入context
+            rootSqlNode.apply(context);
+            sql = context.getSql();
+        } finally {
+            context.release();
+        }
+        int bindings = context.getBindings().size();
+        if (bindings > expectedBindings) {
+            expectedBindings = Math.min(bindings, DynamicContext.MAX_EXPECTED_BINDINGS);
+        }
         SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
         Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
         SqlSource sqlSource = sqlSourceParser
-                .build(context.getSql(), parameterType, context.getBindings());
+                .build(sql, parameterType, context.getBindings());
         // 将context的Bindings视作AdditionalParameter, 加入boundSql中
         BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
         context.getBindings().forEach(boundSql::setAdditionalParameter);
         return boundSql;
     }
+
+    /**
+     * @return 编译后的SQL, 没有启用编译, 还没有使用过或不能编译时为null
+     */
+    public SqlRenderer getRenderer() {
+        return compiled ? renderer : null;
+    }
+
+    private SqlRenderer compiledRenderer() {
+        if (!configuration.isCompileDynamicSql()) {
+            return null;
+        }
+        if (!compiled) {
+            synchronized (this) {
+                if (!compiled) {
+                    renderer = SqlNodeCompiler.compile(configuration, rootSqlNode);
+                    compiled = true;
+                }
+            }
+        }
+        return renderer;
+    }
 }
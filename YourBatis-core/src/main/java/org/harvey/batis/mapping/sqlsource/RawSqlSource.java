@@ -30,8 +30,12 @@ public class RawSqlSource implements SqlSource {
 
     private static String getSql(Configuration configuration, SqlNode rootSqlNode) {
         DynamicContext context = new DynamicContext(configuration, null);
-        rootSqlNode.apply(context);
-        return context.getSql();
+        try {
+            rootSqlNode.apply(context);
+            return context.getSql();
+        } finally {
+            context.release();
+        }
     }
 
     @Override
@@ -60,6 +60,12 @@ public interface ConfigXmlConstants {
     String DATASOURCE_INITIAL_SIZE_ELEMENT = "initialSize";
     String DATASOURCE_MAX_ACTIVE_ELEMENT = "maxActive";
     String DATASOURCE_MAX_WAITING_MILLION_ELEMENT = "maxWaitMillion";
+    String REPLICAS_ELEMENT = "replicas";
+    String REPLICAS_STRATEGY_ATTRIBUTION = "strategy";
+    String SHARDS_ELEMENT = "shards";
+    String SHARDS_RESOLVER_ATTRIBUTION = "resolver";
+    String SHARD_ELEMENT = "shard";
+    String SHARD_NAME_ATTRIBUTION = "name";
     String ROOT_ELEMENT = CONFIG_ELEMENT;
 
 
@@ -72,6 +72,74 @@ public interface MapperXmlConstants {
         char RESULT_MAP_ATTRIBUTION_SEPARATOR = ' ';
 
         String RESULT_TYPE_ATTRIBUTION = "result-type";
+        /**
+         * 执行前是否清空二级缓存, 写语句默认为true
+         */
+        String FLUSH_CACHE_ATTRIBUTION = "flush-cache";
+        /**
+         * 是否使用二级缓存, 查询语句默认为true
+         */
+        String USE_CACHE_ATTRIBUTION = "use-cache";
+        /**
+         * 每次从数据库取回的行数, 见{@link java.sql.Statement#setFetchSize(int)}, 流式查询时使用
+         */
+        String FETCH_SIZE_ATTRIBUTION = "fetch-size";
+        /**
+         * 是否合并多个会话并发执行的相同查询, 默认为false
+         */
+        String COALESCE_ATTRIBUTION = "coalesce";
+        /**
+         * 是否在所有分片上并行执行后归并结果, 默认为false
+         */
+        String SCATTER_ATTRIBUTION = "scatter";
+        /**
+         * 查询是否在主库上执行, 默认只有加锁的读在主库上执行
+         */
+        String USE_MASTER_ATTRIBUTION = "use-master";
+        /**
+         * 归并各分片结果的排序, 如"createTime desc, id"
+         */
+        String MERGE_ORDER_ATTRIBUTION = "merge-order";
+        /**
+         * 语句涉及的表, 逗号分隔, 不配置则从SQL中提取
+         */
+        String TABLES_ATTRIBUTION = "tables";
+    }
+
+    interface Cache {
+        String ELEMENT_NAME = "cache";
+        /**
+         * 淘汰策略, lru, fifo, soft, weak或none, 默认为lru
+         */
+        String EVICTION_ATTRIBUTION = "eviction";
+        /**
+         * lru和fifo的容量
+         */
+        String SIZE_ATTRIBUTION = "size";
+        /**
+         * 定时清空的间隔, 毫秒
+         */
+        String FLUSH_INTERVAL_ATTRIBUTION = "flush-interval";
+        /**
+         * 未命中时是否阻塞其他读同一个key的线程
+         */
+        String BLOCKING_ATTRIBUTION = "blocking";
+        /**
+         * 分段加锁的段数
+         */
+        String STRIPES_ATTRIBUTION = "stripes";
+        /**
+         * 堆外存储的容量, MB
+         */
+        String OFF_HEAP_CAPACITY_ATTRIBUTION = "off-heap-capacity";
+        /**
+         * 条目的存活时间, 毫秒
+         */
+        String TTL_ATTRIBUTION = "ttl";
+        /**
+         * 过期前多久开始异步刷新, 毫秒
+         */
+        String REFRESH_AHEAD_ATTRIBUTION = "refresh-ahead";
     }
 
     interface DynamicSql {
@@ -95,6 +163,8 @@ public interface MapperXmlConstants {
         String OPEN_ATTRIBUTION = "open";
         String CLOSE_ATTRIBUTION = "close";
         String SEPARATOR_ATTRIBUTION = "separator";
+        String ARRAY_TYPE_ATTRIBUTION = "arrayType";
+        String PADDING_ATTRIBUTION = "padding";
         String MATCH_ATTRIBUTION = "match";
     }
 
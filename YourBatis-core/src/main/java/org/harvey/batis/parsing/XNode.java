@@ -149,6 +149,22 @@ public class XNode {
         return value == null ? defaultValue : value;
     }
 
+    /**
+     * @return 属性不存在则为null
+     */
+    public Boolean getBooleanAttribute(String name) {
+        String value = attributes.getProperty(name);
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    /**
+     * @return 属性不存在则为null
+     */
+    public Integer getIntAttribute(String name) {
+        String value = attributes.getProperty(name);
+        return value == null ? null : Integer.valueOf(value);
+    }
+
     public Properties getChildrenAsProperties() {
         Properties properties = new Properties();
         for (XNode child : getChildren()) {
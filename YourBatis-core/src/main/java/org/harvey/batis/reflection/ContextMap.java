@@ -18,6 +18,14 @@ public class ContextMap extends HashMap<String, Object> {
         this.parameterMetaObject = parameterMetaObject;
     }
 
+    /**
+     * @param expectedSize 预计存入的键值对数, 据此确定初始容量, 存入这么多时不需要扩容
+     */
+    public ContextMap(MetaObject parameterMetaObject, int expectedSize) {
+        super(expectedSize < 12 ? 16 : (int) (expectedSize / 0.75f) + 1);
+        this.parameterMetaObject = parameterMetaObject;
+    }
+
     /**
      * @param key 普通的key或者reflect中的properties的概念
      * @return map中存储的值, 如果不存在, 则解析properties对{@link #parameterMetaObject}进行反射
@@ -0,0 +1,24 @@
+package org.harvey.batis.scripting.js;
+
+import java.util.Map;
+
+/**
+ * 编译后的表达式, 由{@link ExpressionParser#parse(String)}生成<br>
+ * 解析只进行一次, 之后每次求值都直接遍历语法树, 不再重复解析表达式文本
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-02 20:14
+ * @see LanguagePhaser#compile(String)
+ */
+@FunctionalInterface
+public interface Expression {
+    /**
+     * 依据root求值
+     *
+     * @param root 变量的来源, 一般是{@link org.harvey.batis.scripting.xml.DynamicContext#getBindings()}<br>
+     *             表达式中的变量名将通过{@link PropertyAccessor}从root中取出
+     * @return 表达式的值
+     */
+    Object getValue(Map<String, Object> root);
+}
@@ -1,11 +1,6 @@
 package org.harvey.batis.scripting.js;
 
-import org.harvey.batis.exception.builder.BuilderException;
-
-import java.lang.reflect.Array;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,7 +13,21 @@ import java.util.Map;
 public class ExpressionEvaluator {
     public static boolean evaluateBoolean(
             String expression, Map<String, Object> parameterObject) {
-        Object value = LanguagePhaser.phase(expression, parameterObject);
+        return toBoolean(LanguagePhaser.phase(expression, parameterObject));
+    }
+
+    /**
+     * @param expression 预先编译好的表达式, 见{@link LanguagePhaser#compile(String)}
+     */
+    public static boolean evaluateBoolean(
+            Expression expression, Map<String, Object> parameterObject) {
+        return toBoolean(expression.getValue(parameterObject));
+    }
+
+    /**
+     * Boolean取其值, Number不为0时为true, 其余非null即为true
+     */
+    public static boolean toBoolean(Object value) {
         if (value instanceof Boolean) {
             return (Boolean) value;
         }
@@ -0,0 +1,576 @@
+package org.harvey.batis.scripting.js;
+
+import org.harvey.batis.exception.scripting.ScriptingException;
+import org.harvey.batis.reflection.DefaultReflectorFactory;
+import org.harvey.batis.reflection.MetaObject;
+import org.harvey.batis.reflection.ReflectorFactory;
+import org.harvey.batis.reflection.SystemMetaObject;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ExpressionParser}生成的语法树节点, 以及求值时的运算规则<br>
+ * 运算规则尽量与原先JavaScript引擎的结果保持一致:
+ * <ul>
+ *     <li>数字之间按数值比较, 与类型无关, 即{@code 1 == 1L == 1.0}</li>
+ *     <li>数字与字符串比较时, 将字符串转为数字, 转换失败则不相等</li>
+ *     <li>{@code +}有一方为字符串时进行字符串拼接</li>
+ *     <li>逻辑运算的真假判断见{@link ExpressionEvaluator#toBoolean(Object)}</li>
+ * </ul>
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-02 21:05
+ */
+final class ExpressionNodes {
+    /**
+     * 所有表达式共用, 避免每次访问属性都重新反射
+     */
+    private static final ReflectorFactory REFLECTOR_FACTORY = new DefaultReflectorFactory();
+    /**
+     * 方法调用的缓存, key为{@code 类名#方法名/参数个数}
+     */
+    private static final Map<String, Method> METHOD_CACHE = new ConcurrentHashMap<>();
+
+    private ExpressionNodes() {
+        // Prevent Instantiation of Static Class
+    }
+
+    static class Literal implements Expression {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return value;
+        }
+    }
+
+    /**
+     * 从root中取出的变量
+     */
+    static class Variable implements Expression {
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            PropertyAccessor accessor = LanguagePhaser.getPropertyAccessor(root);
+            if (accessor != null) {
+                return accessor.getProperty(null, root, name);
+            }
+            return root == null ? null : root.get(name);
+        }
+    }
+
+    /**
+     * {@code target.name}
+     */
+    static class Member implements Expression {
+        private final Expression target;
+        private final String name;
+
+        Member(Expression target, String name) {
+            this.target = target;
+            this.name = name;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return getProperty(target.getValue(root), name);
+        }
+    }
+
+    /**
+     * {@code target[index]}
+     */
+    static class Index implements Expression {
+        private final Expression target;
+        private final Expression index;
+
+        Index(Expression target, Expression index) {
+            this.target = target;
+            this.index = index;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            Object object = target.getValue(root);
+            Object key = index.getValue(root);
+            if (object instanceof Map) {
+                return ((Map<?, ?>) object).get(key);
+            }
+            if (key instanceof Number) {
+                int i = ((Number) key).intValue();
+                if (object instanceof List) {
+                    List<?> list = (List<?>) object;
+                    return i >= 0 && i < list.size() ? list.get(i) : null;
+                }
+                if (object != null && object.getClass().isArray()) {
+                    return i >= 0 && i < Array.getLength(object) ? Array.get(object, i) : null;
+                }
+                if (object instanceof CharSequence) {
+                    CharSequence sequence = (CharSequence) object;
+                    return i >= 0 && i < sequence.length() ? String.valueOf(sequence.charAt(i)) : null;
+                }
+            }
+            return getProperty(object, String.valueOf(key));
+        }
+    }
+
+    /**
+     * {@code target.name(arguments)}
+     */
+    static class MethodCall implements Expression {
+        private final Expression target;
+        private final String name;
+        private final Expression[] arguments;
+
+        MethodCall(Expression target, String name, List<Expression> arguments) {
+            this.target = target;
+            this.name = name;
+            this.arguments = arguments.toArray(new Expression[0]);
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            Object object = target.getValue(root);
+            if (object == null) {
+                throw new ScriptingException("Cannot call method '" + name + "' of null.");
+            }
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].getValue(root);
+            }
+            Method method = findMethod(object.getClass(), name, values.length);
+            try {
+                return method.invoke(object, values);
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new ScriptingException("Error invoking method '" + name + "' of " + object.getClass() + ". Cause: " + e, e);
+            } catch (InvocationTargetException e) {
+                throw new ScriptingException("Error invoking method '" + name + "' of " + object.getClass() + ". Cause: " + e.getTargetException(), e.getTargetException());
+            }
+        }
+    }
+
+    static class Not implements Expression {
+        private final Expression operand;
+
+        Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return !ExpressionEvaluator.toBoolean(operand.getValue(root));
+        }
+    }
+
+    static class Negate implements Expression {
+        private final Expression operand;
+
+        Negate(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return arithmetic(0, operand.getValue(root), '-');
+        }
+    }
+
+    static class And implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        And(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            // 短路, 保证 a != null and a.b 不会在a为null时访问a.b
+            return ExpressionEvaluator.toBoolean(left.getValue(root)) &&
+                    ExpressionEvaluator.toBoolean(right.getValue(root));
+        }
+    }
+
+    static class Or implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        Or(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return ExpressionEvaluator.toBoolean(left.getValue(root)) ||
+                    ExpressionEvaluator.toBoolean(right.getValue(root));
+        }
+    }
+
+    static class Conditional implements Expression {
+        private final Expression condition;
+        private final Expression whenTrue;
+        private final Expression whenFalse;
+
+        Conditional(Expression condition, Expression whenTrue, Expression whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return ExpressionEvaluator.toBoolean(condition.getValue(root)) ?
+                    whenTrue.getValue(root) : whenFalse.getValue(root);
+        }
+    }
+
+    /**
+     * {@code ==}和{@code !=}, 严格相等({@code ===})也按此规则处理
+     */
+    static class Equal implements Expression {
+        private final Expression left;
+        private final Expression right;
+        private final boolean negate;
+
+        Equal(Expression left, Expression right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return negate != looseEquals(left.getValue(root), right.getValue(root));
+        }
+    }
+
+    static class Compare implements Expression {
+        private final Expression left;
+        private final Expression right;
+        private final String operator;
+
+        Compare(Expression left, Expression right, String operator) {
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            Object l = left.getValue(root);
+            Object r = right.getValue(root);
+            if (l == null || r == null) {
+                // JavaScript中null与数字比较时视作0, 这里直接视作比较失败
+                return false;
+            }
+            int result = compare(l, r);
+            switch (operator) {
+                case "<":
+                    return result < 0;
+                case "<=":
+                    return result <= 0;
+                case ">":
+                    return result > 0;
+                default:
+                    return result >= 0;
+            }
+        }
+    }
+
+    static class Arithmetic implements Expression {
+        private final Expression left;
+        private final Expression right;
+        private final char operator;
+
+        Arithmetic(Expression left, Expression right, char operator) {
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+        }
+
+        @Override
+        public Object getValue(Map<String, Object> root) {
+            return arithmetic(left.getValue(root), right.getValue(root), operator);
+        }
+    }
+
+    /**
+     * 读取target的属性name
+     */
+    static Object getProperty(Object target, String name) {
+        if (target == null) {
+            throw new ScriptingException("Cannot read property '" + name + "' of null.");
+        }
+        PropertyAccessor accessor = LanguagePhaser.getPropertyAccessor(target);
+        if (accessor != null) {
+            return accessor.getProperty(null, target, name);
+        }
+        if (target instanceof Map) {
+            return ((Map<?, ?>) target).get(name);
+        }
+        if ("length".equals(name)) {
+            if (target.getClass().isArray()) {
+                return Array.getLength(target);
+            }
+            if (target instanceof CharSequence) {
+                return ((CharSequence) target).length();
+            }
+        }
+        MetaObject metaObject = MetaObject.forObject(target, SystemMetaObject.DEFAULT_OBJECT_FACTORY,
+                SystemMetaObject.DEFAULT_OBJECT_WRAPPER_FACTORY, REFLECTOR_FACTORY);
+        return metaObject.getValue(name);
+    }
+
+    private static Method findMethod(Class<?> type, String name, int argumentCount) {
+        String key = type.getName() + "#" + name + "/" + argumentCount;
+        Method method = METHOD_CACHE.get(key);
+        if (method != null) {
+            return method;
+        }
+        for (Method candidate : type.getMethods()) {
+            if (candidate.getName().equals(name) && candidate.getParameterCount() == argumentCount &&
+                    !Modifier.isStatic(candidate.getModifiers())) {
+                method = candidate;
+                break;
+            }
+        }
+        if (method == null) {
+            throw new ScriptingException("No public method '" + name + "' with " + argumentCount +
+                    " argument(s) found in " + type + ".");
+        }
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            // 非public类的public方法, 如List.of(...).size(), 需要换成public的接口或父类上声明的方法
+            method = findAccessibleMethod(type, method);
+        }
+        METHOD_CACHE.putIfAbsent(key, method);
+        return method;
+    }
+
+    private static Method findAccessibleMethod(Class<?> type, Method method) {
+        if (type == null) {
+            return method;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                return type.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException ignored) {
+                // 继续向上查找
+            }
+        }
+        for (Class<?> anInterface : type.getInterfaces()) {
+            Method found = findAccessibleMethod(anInterface, method);
+            if (Modifier.isPublic(found.getDeclaringClass().getModifiers())) {
+                return found;
+            }
+        }
+        return findAccessibleMethod(type.getSuperclass(), method);
+    }
+
+    static boolean looseEquals(Object left, Object right) {
+        if (left == right) {
+            return true;
+        }
+        if (left == null || right == null) {
+            return false;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return compareNumbers((Number) left, (Number) right) == 0;
+        }
+        if (left instanceof Number && right instanceof CharSequence) {
+            BigDecimal number = toBigDecimal(right.toString());
+            return number != null && compareNumbers((Number) left, number) == 0;
+        }
+        if (left instanceof CharSequence && right instanceof Number) {
+            BigDecimal number = toBigDecimal(left.toString());
+            return number != null && compareNumbers(number, (Number) right) == 0;
+        }
+        if (left instanceof CharSequence || right instanceof CharSequence) {
+            // 'true' == true, 'A' == Enum.A, 'c' == 'c'(Character)
+            if (isStringLike(left) && isStringLike(right)) {
+                return left.toString().equals(right.toString());
+            }
+        }
+        return Objects.equals(left, right);
+    }
+
+    private static boolean isStringLike(Object o) {
+        return o instanceof CharSequence || o instanceof Character || o instanceof Boolean || o instanceof Enum;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return compareNumbers((Number) left, (Number) right);
+        }
+        if (left instanceof Number || right instanceof Number) {
+            BigDecimal l = left instanceof Number ? null : toBigDecimal(left.toString());
+            BigDecimal r = right instanceof Number ? null : toBigDecimal(right.toString());
+            if (l != null) {
+                return compareNumbers(l, (Number) right);
+            }
+            if (r != null) {
+                return compareNumbers((Number) left, r);
+            }
+        }
+        if (left instanceof CharSequence && right instanceof CharSequence) {
+            return left.toString().compareTo(right.toString());
+        }
+        if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            return ((Comparable) left).compareTo(right);
+        }
+        throw new ScriptingException("Can not compare " + left.getClass() + " with " + right.getClass() + ".");
+    }
+
+    private static int compareNumbers(Number left, Number right) {
+        if (isNotFinite(left) || isNotFinite(right)) {
+            return Double.compare(left.doubleValue(), right.doubleValue());
+        }
+        if (isIntegral(left) && isIntegral(right)) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+        return toBigDecimal(left).compareTo(toBigDecimal(right));
+    }
+
+    static Object arithmetic(Object left, Object right, char operator) {
+        if (operator == '+' && (isStringLike(left) && !(left instanceof Boolean) ||
+                isStringLike(right) && !(right instanceof Boolean))) {
+            return String.valueOf(left) + right;
+        }
+        Number l = toNumber(left, operator);
+        Number r = toNumber(right, operator);
+        if (isIntegral(l) && isIntegral(r)) {
+            long a = l.longValue();
+            long b = r.longValue();
+            switch (operator) {
+                case '+':
+                    return narrow(Math.addExact(a, b));
+                case '-':
+                    return narrow(Math.subtractExact(a, b));
+                case '*':
+                    return narrow(Math.multiplyExact(a, b));
+                case '/':
+                    if (b != 0 && a % b == 0) {
+                        return narrow(a / b);
+                    }
+                    return (double) a / b;
+                default:
+                    if (b == 0) {
+                        return Double.NaN;
+                    }
+                    return narrow(a % b);
+            }
+        }
+        if (l instanceof BigDecimal || l instanceof BigInteger || r instanceof BigDecimal || r instanceof BigInteger) {
+            BigDecimal a = toBigDecimal(l);
+            BigDecimal b = toBigDecimal(r);
+            switch (operator) {
+                case '+':
+                    return a.add(b);
+                case '-':
+                    return a.subtract(b);
+                case '*':
+                    return a.multiply(b);
+                case '/':
+                    return a.divide(b, MathContext.DECIMAL128);
+                default:
+                    return a.remainder(b);
+            }
+        }
+        double a = l.doubleValue();
+        double b = r.doubleValue();
+        switch (operator) {
+            case '+':
+                return a + b;
+            case '-':
+                return a - b;
+            case '*':
+                return a * b;
+            case '/':
+                return a / b;
+            default:
+                return a % b;
+        }
+    }
+
+    private static Number toNumber(Object value, char operator) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        if (value instanceof CharSequence) {
+            BigDecimal number = toBigDecimal(value.toString());
+            if (number != null) {
+                return number;
+            }
+        }
+        throw new ScriptingException("Operator '" + operator + "' can not be applied to '" + value + "'.");
+    }
+
+    /**
+     * 结果能用int表示就用int, 使{@code ${offset + 1}}等与原先的表现一致
+     */
+    private static Number narrow(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    private static boolean isNotFinite(Number n) {
+        return (n instanceof Double || n instanceof Float) && !Double.isFinite(n.doubleValue());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        }
+        if (n instanceof BigInteger) {
+            return new BigDecimal((BigInteger) n);
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return new BigDecimal(String.valueOf(n));
+    }
+
+    /**
+     * @return 无法转为数字则返回null
+     */
+    private static BigDecimal toBigDecimal(String s) {
+        String trimmed = s.trim();
+        if (trimmed.isEmpty()) {
+            // JavaScript中 '' == 0
+            return BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package org.harvey.batis.scripting.js;
+
+import org.harvey.batis.exception.scripting.ScriptingException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 将表达式文本解析成由{@link ExpressionNodes}组成的语法树<br>
+ * 语法与JavaScript的表达式子集一致, 另外支持{@code and}, {@code or}, {@code not}作为
+ * {@code &&}, {@code ||}, {@code !}的别名(XML中书写{@code &&}需要转义)
+ * <pre>{@code
+ * ternary        := or ('?' ternary ':' ternary)?
+ * or             := and (('||' | 'or') and)*
+ * and            := equality (('&&' | 'and') equality)*
+ * equality       := relational (('==' | '!=' | '===' | '!==') relational)*
+ * relational     := additive (('<' | '<=' | '>' | '>=') additive)*
+ * additive       := multiplicative (('+' | '-') multiplicative)*
+ * multiplicative := unary (('*' | '/' | '%') unary)*
+ * unary          := ('!' | 'not' | '-' | '+') unary | postfix
+ * postfix        := primary ('.' IDENTIFIER ('(' arguments ')')? | '[' ternary ']')*
+ * primary        := NUMBER | STRING | 'true' | 'false' | 'null' | IDENTIFIER | '(' ternary ')'
+ * }</pre>
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-02 20:20
+ * @see LanguagePhaser#compile(String)
+ */
+public class ExpressionParser {
+    private final String expression;
+    private final List<Token> tokens;
+    /**
+     * 指向{@link #tokens}中下一个待消费的令牌
+     */
+    private int position;
+
+    private ExpressionParser(String expression) {
+        this.expression = expression;
+        this.tokens = new Lexer(expression).tokenize();
+        this.position = 0;
+    }
+
+    /**
+     * @param expression 表达式文本
+     * @return 编译后的表达式
+     * @throws ScriptingException 表达式语法错误
+     */
+    public static Expression parse(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new ScriptingException("Expression can not be empty.");
+        }
+        ExpressionParser parser = new ExpressionParser(expression);
+        Expression result = parser.ternary();
+        if (parser.peek().type != TokenType.EOF) {
+            throw parser.error("Unexpected token '" + parser.peek().text + "'");
+        }
+        return result;
+    }
+
+    private Expression ternary() {
+        Expression condition = this.or();
+        if (!this.match("?")) {
+            return condition;
+        }
+        Expression whenTrue = this.ternary();
+        this.expect(":");
+        Expression whenFalse = this.ternary();
+        return new ExpressionNodes.Conditional(condition, whenTrue, whenFalse);
+    }
+
+    private Expression or() {
+        Expression left = this.and();
+        while (this.match("||") || this.matchKeyword("or")) {
+            left = new ExpressionNodes.Or(left, this.and());
+        }
+        return left;
+    }
+
+    private Expression and() {
+        Expression left = this.equality();
+        while (this.match("&&") || this.matchKeyword("and")) {
+            left = new ExpressionNodes.And(left, this.equality());
+        }
+        return left;
+    }
+
+    private Expression equality() {
+        Expression left = this.relational();
+        while (true) {
+            if (this.match("==") || this.match("===")) {
+                left = new ExpressionNodes.Equal(left, this.relational(), false);
+            } else if (this.match("!=") || this.match("!==")) {
+                left = new ExpressionNodes.Equal(left, this.relational(), true);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression relational() {
+        Expression left = this.additive();
+        while (true) {
+            Token token = this.peek();
+            if (token.type != TokenType.OPERATOR) {
+                return left;
+            }
+            switch (token.text) {
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                    position++;
+                    left = new ExpressionNodes.Compare(left, this.additive(), token.text);
+                    break;
+                default:
+                    return left;
+            }
+        }
+    }
+
+    private Expression additive() {
+        Expression left = this.multiplicative();
+        while (true) {
+            if (this.match("+")) {
+                left = new ExpressionNodes.Arithmetic(left, this.multiplicative(), '+');
+            } else if (this.match("-")) {
+                left = new ExpressionNodes.Arithmetic(left, this.multiplicative(), '-');
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression multiplicative() {
+        Expression left = this.unary();
+        while (true) {
+            if (this.match("*")) {
+                left = new ExpressionNodes.Arithmetic(left, this.unary(), '*');
+            } else if (this.match("/")) {
+                left = new ExpressionNodes.Arithmetic(left, this.unary(), '/');
+            } else if (this.match("%")) {
+                left = new ExpressionNodes.Arithmetic(left, this.unary(), '%');
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression unary() {
+        if (this.match("!") || this.matchKeyword("not")) {
+            return new ExpressionNodes.Not(this.unary());
+        }
+        if (this.match("-")) {
+            return new ExpressionNodes.Negate(this.unary());
+        }
+        if (this.match("+")) {
+            return this.unary();
+        }
+        return this.postfix();
+    }
+
+    private Expression postfix() {
+        Expression target = this.primary();
+        while (true) {
+            if (this.match(".")) {
+                Token name = this.next();
+                if (name.type != TokenType.IDENTIFIER) {
+                    throw this.error("Expected property name after '.' but found '" + name.text + "'");
+                }
+                if (this.match("(")) {
+                    target = new ExpressionNodes.MethodCall(target, name.text, this.arguments());
+                } else {
+                    target = new ExpressionNodes.Member(target, name.text);
+                }
+            } else if (this.match("[")) {
+                Expression index = this.ternary();
+                this.expect("]");
+                target = new ExpressionNodes.Index(target, index);
+            } else {
+                return target;
+            }
+        }
+    }
+
+    /**
+     * 调用前已经消费了{@code (}
+     */
+    private List<Expression> arguments() {
+        List<Expression> arguments = new ArrayList<>();
+        if (this.match(")")) {
+            return arguments;
+        }
+        do {
+            arguments.add(this.ternary());
+        } while (this.match(","));
+        this.expect(")");
+        return arguments;
+    }
+
+    private Expression primary() {
+        Token token = this.next();
+        switch (token.type) {
+            case NUMBER:
+                return new ExpressionNodes.Literal(token.value);
+            case STRING:
+                return new ExpressionNodes.Literal(token.value);
+            case IDENTIFIER:
+                switch (token.text) {
+                    case "true":
+                        return new ExpressionNodes.Literal(Boolean.TRUE);
+                    case "false":
+                        return new ExpressionNodes.Literal(Boolean.FALSE);
+                    case "null":
+                    case "undefined":
+                        return new ExpressionNodes.Literal(null);
+                    default:
+                        if (this.peekIs("(")) {
+                            throw this.error("Function call '" + token.text + "(...)' is not supported");
+                        }
+                        return new ExpressionNodes.Variable(token.text);
+                }
+            case OPERATOR:
+                if ("(".equals(token.text)) {
+                    Expression inner = this.ternary();
+                    this.expect(")");
+                    return inner;
+                }
+                throw this.error("Unexpected token '" + token.text + "'");
+            default:
+                throw this.error("Unexpected end of expression");
+        }
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private Token next() {
+        Token token = tokens.get(position);
+        if (token.type != TokenType.EOF) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean peekIs(String operator) {
+        Token token = this.peek();
+        return token.type == TokenType.OPERATOR && token.text.equals(operator);
+    }
+
+    /**
+     * 下一个令牌是operator则消费它并返回true
+     */
+    private boolean match(String operator) {
+        if (!this.peekIs(operator)) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * 下一个令牌是关键字keyword则消费它并返回true
+     */
+    private boolean matchKeyword(String keyword) {
+        Token token = this.peek();
+        if (token.type != TokenType.IDENTIFIER || !token.text.equals(keyword)) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    private void expect(String operator) {
+        if (!this.match(operator)) {
+            throw this.error("Expected '" + operator + "' but found '" + this.peek().text + "'");
+        }
+    }
+
+    private ScriptingException error(String message) {
+        return new ScriptingException(message + " at position " + this.peek().start +
+                " in expression '" + expression + "'.");
+    }
+
+    private enum TokenType {
+        IDENTIFIER, NUMBER, STRING, OPERATOR, EOF
+    }
+
+    private static class Token {
+        private final TokenType type;
+        /**
+         * 令牌在表达式中的原文
+         */
+        private final String text;
+        /**
+         * 字面量的值, 只有{@link TokenType#NUMBER}和{@link TokenType#STRING}有值
+         */
+        private final Object value;
+        /**
+         * 令牌在表达式中的起始位置, 报错用
+         */
+        private final int start;
+
+        private Token(TokenType type, String text, Object value, int start) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.start = start;
+        }
+    }
+
+    /**
+     * 词法分析, 将表达式文本切分为{@link Token}
+     */
+    private static class Lexer {
+        /**
+         * 多字符的运算符, 长的在前, 保证贪心匹配
+         */
+        private static final String[] OPERATORS = {
+                "===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+                "<", ">", "!", "+", "-", "*", "/", "%", "?", ":", "(", ")", "[", "]", ".", ","};
+        private final String text;
+        private int offset;
+
+        private Lexer(String text) {
+            this.text = text;
+            this.offset = 0;
+        }
+
+        private List<Token> tokenize() {
+            List<Token> tokens = new ArrayList<>();
+            while (true) {
+                this.skipWhitespace();
+                if (offset >= text.length()) {
+                    tokens.add(new Token(TokenType.EOF, "<EOF>", null, offset));
+                    return tokens;
+                }
+                char c = text.charAt(offset);
+                if (Character.isJavaIdentifierStart(c)) {
+                    tokens.add(this.identifier());
+                } else if (Character.isDigit(c) ||
+                        (c == '.' && offset + 1 < text.length() && Character.isDigit(text.charAt(offset + 1)))) {
+                    tokens.add(this.number());
+                } else if (c == '\'' || c == '"') {
+                    tokens.add(this.string(c));
+                } else {
+                    tokens.add(this.operator());
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+                offset++;
+            }
+        }
+
+        private Token identifier() {
+            int start = offset;
+            while (offset < text.length() && Character.isJavaIdentifierPart(text.charAt(offset))) {
+                offset++;
+            }
+            return new Token(TokenType.IDENTIFIER, text.substring(start, offset), null, start);
+        }
+
+        private Token number() {
+            int start = offset;
+            boolean decimal = false;
+            while (offset < text.length()) {
+                char c = text.charAt(offset);
+                if (c == '.' && !decimal && offset + 1 < text.length() && Character.isDigit(text.charAt(offset + 1))) {
+                    decimal = true;
+                } else if (!Character.isDigit(c)) {
+                    break;
+                }
+                offset++;
+            }
+            String number = text.substring(start, offset);
+            Object value;
+            if (decimal) {
+                value = Double.valueOf(number);
+            } else {
+                long longValue = Long.parseLong(number);
+                value = longValue <= Integer.MAX_VALUE ? (Object) (int) longValue : (Object) longValue;
+            }
+            return new Token(TokenType.NUMBER, number, value, start);
+        }
+
+        private Token string(char quote) {
+            int start = offset;
+            // 跳过开头的引号
+            offset++;
+            StringBuilder value = new StringBuilder();
+            while (offset < text.length()) {
+                char c = text.charAt(offset++);
+                if (c == quote) {
+                    return new Token(TokenType.STRING, text.substring(start, offset), value.toString(), start);
+                }
+                if (c != '\\' || offset >= text.length()) {
+                    value.append(c);
+                    continue;
+                }
+                // 转义字符
+                char escaped = text.charAt(offset++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+            throw new ScriptingException("Unterminated string literal at position " + start +
+                    " in expression '" + text + "'.");
+        }
+
+        private Token operator() {
+            for (String operator : OPERATORS) {
+                if (text.startsWith(operator, offset)) {
+                    int start = offset;
+                    offset += operator.length();
+                    return new Token(TokenType.OPERATOR, operator, null, start);
+                }
+            }
+            throw new ScriptingException("Unexpected character '" + text.charAt(offset) +
+                    "' at position " + offset + " in expression '" + text + "'.");
+        }
+    }
+}
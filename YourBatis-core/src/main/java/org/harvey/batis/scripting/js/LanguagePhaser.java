@@ -1,23 +1,24 @@
 package org.harvey.batis.scripting.js;
 
-import org.harvey.batis.scripting.xml.DynamicContext;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * TODO
+ * 表达式的解析和求值<br>
+ * 表达式文本只在第一次使用时由{@link ExpressionParser}解析, 解析结果缓存在{@link #EXPRESSION_CACHE}中,
+ * 之后的求值直接复用语法树, 变量则通过{@link PropertyAccessor}从root中读取
  *
  * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
  * @version 1.0
  * @date 2024-08-25 18:13
  */
 public class LanguagePhaser {
-    private static final ScriptEngineManager SCRIPT_ENGINE_MANAGER = new ScriptEngineManager();
     private static final Map<Class<?>, PropertyAccessor> PROPERTY_ACCESSOR = new HashMap<>();
+    /**
+     * key为表达式文本, value为编译后的表达式
+     */
+    private static final Map<String, Expression> EXPRESSION_CACHE = new ConcurrentHashMap<>();
 
     public static PropertyAccessor setPropertyAccessor(Class<?> key, PropertyAccessor value) {
         synchronized (PROPERTY_ACCESSOR) {
@@ -33,35 +34,26 @@ public class LanguagePhaser {
         return PROPERTY_ACCESSOR.get(key);
     }
 
-    public static Object phase(String expression, Map<String, Object> root) {
-        ScriptEngine engine = SCRIPT_ENGINE_MANAGER.getEngineByName("js");
-        PropertyAccessor accessor = PROPERTY_ACCESSOR.get(getTargetClass(root));
-        putParamToEngine(root, accessor, engine);
-        Object result;
-        try {
-            result = engine.eval(expression);
-        } catch (ScriptException e) {
-            throw new RuntimeException(e);
+    /**
+     * 编译表达式, 相同的表达式文本只会解析一次
+     *
+     * @param expression 表达式文本
+     * @return 编译后的表达式, 线程安全, 可以重复求值
+     * @throws org.harvey.batis.exception.scripting.ScriptingException 表达式语法错误
+     */
+    public static Expression compile(String expression) {
+        Expression compiled = EXPRESSION_CACHE.get(expression);
+        if (compiled == null) {
+            compiled = ExpressionParser.parse(expression);
+            EXPRESSION_CACHE.putIfAbsent(expression, compiled);
         }
-        return result;
+        return compiled;
     }
 
-    private static void putParamToEngine(Map<String, Object> root, PropertyAccessor accessor, ScriptEngine engine) {
-        root.keySet().forEach(name -> {
-            Object property;
-            if (DynamicContext.PARAMETER_OBJECT_KEY.equals(name)) {
-                property = root.get(name);
-                if (property instanceof Map) {
-                    putParamToEngine((Map<String, Object>) property, accessor, engine);
-                }
-            } else {
-                property = accessor.getProperty(null, root, name);
-                engine.put(name, property);
-            }
-        });
+    public static Object phase(String expression, Map<String, Object> root) {
+        return compile(expression).getValue(root);
     }
 
-
     public static Class<?> getTargetClass(Object o) {
         return o == null ? null : (o instanceof Class ? (Class<?>) o : o.getClass());
     }
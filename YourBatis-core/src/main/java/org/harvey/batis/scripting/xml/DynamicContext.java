@@ -7,7 +7,6 @@ import org.harvey.batis.scripting.js.LanguagePhaser;
 import org.harvey.batis.scripting.js.PropertyAccessor;
 
 import java.util.Map;
-import java.util.StringJoiner;
 
 /**
  * 组装sql语句
@@ -19,6 +18,12 @@ import java.util.StringJoiner;
 public class DynamicContext {
 
     public static final String PARAMETER_OBJECT_KEY = "_parameter";
+    /**
+     * 按统计预估的绑定个数的上限, 以免个别很大的foreach使之后每次渲染都分配很大的Map
+     *
+     * @see #DynamicContext(Configuration, Object, int)
+     */
+    public static final int MAX_EXPECTED_BINDINGS = 512;
 
     static {
         LanguagePhaser.setPropertyAccessor(ContextMap.class, new ContextAccessor());
@@ -26,30 +31,50 @@ public class DynamicContext {
 
     private final ContextMap bindings;
     /**
-     * <pre>{@code
-     * StringJoiner sj = new StringJoiner(",");
-     * sj.add("apple");
-     * sj.add("banana");
-     * sj.add("orange");
-     * String result = sj.toString();
-     * // "apple,banana,orange"
-     * }</pre>
+     * 拼装中的sql, 每次{@link #appendSql(String)}之间用{@code " "}连接<br>
+     * 第一次拼接时才从当前线程获取, {@link #release()}时归还
      */
-    private final StringJoiner sqlJoiner = new StringJoiner(" ");
+    private SqlBuffer sqlBuffer;
     private int uniqueNumber = 0;
 
     public DynamicContext(Configuration configuration, Object parameterObject) {
+        this(configuration, parameterObject, 0);
+    }
+
+    /**
+     * @param expectedBindings 预计绑定的参数个数, 用于预先确定{@link #bindings}的容量, 避免foreach等绑定时扩容
+     */
+    public DynamicContext(Configuration configuration, Object parameterObject, int expectedBindings) {
         MetaObject metaObject = null;
         if (parameterObject != null && !(parameterObject instanceof Map)) {
             metaObject = configuration.newMetaObject(parameterObject);
         }
-        bindings = new ContextMap(metaObject);
+        bindings = new ContextMap(metaObject, expectedBindings);
         bindings.put(PARAMETER_OBJECT_KEY, parameterObject);
     }
 
+    /**
+     * 供包装其他context的子类使用, 共用被包装者的{@link #bindings}, 不再新建
+     *
+     * @param delegate 被包装的context
+     */
+    protected DynamicContext(DynamicContext delegate) {
+        this.bindings = delegate.bindings;
+    }
+
 
     public String getSql() {
-        return sqlJoiner.toString().trim();
+        return sqlBuffer == null ? "" : sqlBuffer.toTrimmedString();
+    }
+
+    /**
+     * 拼装结束后归还sql的缓冲区, 之后不能再拼接
+     */
+    public void release() {
+        if (sqlBuffer != null) {
+            sqlBuffer.release();
+            sqlBuffer = null;
+        }
     }
 
     public Map<String, Object> getBindings() {
@@ -57,7 +82,12 @@ public class DynamicContext {
     }
 
     public void appendSql(String sql) {
-        sqlJoiner.add(sql);
+        if (sqlBuffer == null) {
+            sqlBuffer = SqlBuffer.acquire();
+        } else {
+            sqlBuffer.append(' ');
+        }
+        sqlBuffer.append(sql);
     }
 
     public void bind(String name, Object value) {
@@ -0,0 +1,224 @@
+package org.harvey.batis.scripting.xml;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * 拼装SQL用的可增长的字符缓冲区, 只在一个线程中使用<br>
+ * 通过{@link #acquire()}获取, 用完后{@link #release()}归还给当前线程, 同一线程的下一次拼装复用已经增长过的数组<br>
+ * trim和前后缀的覆盖都直接在数组上完成, 不产生中间的String<br>
+ * 嵌套使用(如trim内部)时每一层各取一个; 没有归还的缓冲区只是不再复用, 不影响正确性
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:50
+ */
+public class SqlBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * 超过这个容量的缓冲区不再复用, 以免个别很长的SQL一直占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    /**
+     * 每个线程最多保留的缓冲区数, 足够trim嵌套几层
+     */
+    private static final int MAX_POOLED = 4;
+    private static final ThreadLocal<ArrayDeque<SqlBuffer>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private char[] value;
+    private int count;
+    private boolean released;
+
+    private SqlBuffer() {
+        this.value = new char[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return 当前线程空闲的缓冲区, 没有时新建, 长度为0
+     */
+    public static SqlBuffer acquire() {
+        SqlBuffer buffer = POOL.get().pollFirst();
+        if (buffer == null) {
+            return new SqlBuffer();
+        }
+        buffer.released = false;
+        return buffer;
+    }
+
+    /**
+     * 归还给当前线程, 之后不能再使用
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        count = 0;
+        ArrayDeque<SqlBuffer> pool = POOL.get();
+        if (value.length <= MAX_RETAINED_CAPACITY && pool.size() < MAX_POOLED) {
+            pool.addFirst(this);
+        }
+    }
+
+    public int length() {
+        return count;
+    }
+
+    public char charAt(int index) {
+        return value[index];
+    }
+
+    public void setLength(int length) {
+        this.count = length;
+    }
+
+    /**
+     * @param str null时同{@link StringBuilder#append(String)}, 拼入"null"
+     */
+    public SqlBuffer append(String str) {
+        if (str == null) {
+            str = "null";
+        }
+        int length = str.length();
+        this.ensureCapacity(count + length);
+        str.getChars(0, length, value, count);
+        count += length;
+        return this;
+    }
+
+    public SqlBuffer append(char c) {
+        this.ensureCapacity(count + 1);
+        value[count++] = c;
+        return this;
+    }
+
+    public void insert(int offset, String str) {
+        int length = str.length();
+        this.ensureCapacity(count + length);
+        System.arraycopy(value, offset, value, offset + length, count - offset);
+        str.getChars(0, length, value, offset);
+        count += length;
+    }
+
+    public void delete(int start, int end) {
+        System.arraycopy(value, end, value, start, count - end);
+        count -= end - start;
+    }
+
+    /**
+     * 忽略大小写, 比较从offset开始的内容是否是str
+     */
+    public boolean regionMatches(int offset, String str) {
+        int length = str.length();
+        if (offset < 0 || offset + length > count) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c1 = value[offset + i];
+            char c2 = str.charAt(i);
+            if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 从start开始的内容是否只有空白符, 空白符同{@link String#trim()}
+     */
+    public boolean isBlank(int start) {
+        for (int i = start; i < count; i++) {
+            if (value[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 去除从start开始的内容头尾的空白符, 同{@link String#trim()}
+     */
+    public void trim(int start) {
+        int end = count;
+        while (end > start && value[end - 1] <= ' ') {
+            end--;
+        }
+        count = end;
+        int first = start;
+        while (first < end && value[first] <= ' ') {
+            first++;
+        }
+        if (first > start) {
+            this.delete(start, first);
+        }
+    }
+
+    /**
+     * 把从mid开始的内容移动到start处, 原来[start, mid)的内容接在其后
+     */
+    public void rotate(int start, int mid) {
+        this.reverse(start, mid);
+        this.reverse(mid, count);
+        this.reverse(start, count);
+    }
+
+    private void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            char temp = value[i];
+            value[i] = value[j];
+            value[j] = temp;
+        }
+    }
+
+    /**
+     * 连续的空白符缩为一个空格, 并去除头尾的空白符<br>
+     * 空白符同{@link org.harvey.batis.builder.SqlSourceBuilder#removeExtraWhitespaces(String)}
+     */
+    public void shrinkWhitespaces() {
+        int length = 0;
+        boolean whitespace = true;
+        for (int i = 0; i < count; i++) {
+            char c = value[i];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace && length > 0) {
+                value[length++] = ' ';
+            }
+            whitespace = false;
+            value[length++] = c;
+        }
+        count = length;
+    }
+
+    public String substring(int start) {
+        return new String(value, start, count - start);
+    }
+
+    /**
+     * @return 去除头尾空白符后的内容, 缓冲区不变
+     */
+    public String toTrimmedString() {
+        int start = 0;
+        int end = count;
+        while (start < end && value[start] <= ' ') {
+            start++;
+        }
+        while (end > start && value[end - 1] <= ' ') {
+            end--;
+        }
+        return new String(value, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(value, 0, count);
+    }
+
+    private void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity > value.length) {
+            value = Arrays.copyOf(value, Math.max(value.length << 1, minimumCapacity));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.harvey.batis.scripting.xml;
 
 import org.harvey.batis.builder.BaseBuilder;
+import org.harvey.batis.builder.SqlSourceBuilder;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.exception.builder.BuilderException;
 import org.harvey.batis.mapping.sqlsource.DynamicSqlSource;
@@ -8,9 +9,7 @@ import org.harvey.batis.mapping.sqlsource.RawSqlSource;
 import org.harvey.batis.mapping.sqlsource.SqlSource;
 import org.harvey.batis.parsing.XNode;
 import org.harvey.batis.scripting.xml.handler.*;
-import org.harvey.batis.scripting.xml.node.MixedSqlNode;
-import org.harvey.batis.scripting.xml.node.StaticTextSqlNode;
-import org.harvey.batis.scripting.xml.node.TextSqlNode;
+import org.harvey.batis.scripting.xml.node.*;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -64,10 +63,140 @@ public class XmlScriptBuilder extends BaseBuilder {
     public SqlSource parseScriptNode() {
         // 解析当前SQL语句
         MixedSqlNode rootSqlNode = this.parseDynamicTags(context);
+        // 构建时能确定的部分都先算好, 运行时只处理动态的部分
+        this.normalize(rootSqlNode, true, false);
+        if (this.isDynamic && XmlScriptBuilder.isStatic(rootSqlNode)) {
+            // 动态的部分都被折叠了
+            this.isDynamic = false;
+        }
         return this.isDynamic ? new DynamicSqlSource(configuration, rootSqlNode) :
                 new RawSqlSource(configuration, rootSqlNode, parameterType);
     }
 
+    /**
+     * 构建时的优化, 结果与解释执行原来的节点树相同:
+     * <ol>
+     *     <li>合并同一层相邻的{@link StaticTextSqlNode}, 顶层的片段之间补上{@link DynamicContext#appendSql(String)}会加的{@code " "},
+     *     trim内部的片段直接相连</li>
+     *     <li>{@link Configuration#isShrinkWhitespacesInSql()}时, 把静态文本中连续的空白符缩成一个(保留第一个, 以免影响trim的覆盖)</li>
+     *     <li>内部只有静态文本的trim/where/set, 在构建时就完成trim, 折叠为{@link StaticTextSqlNode}</li>
+     * </ol>
+     *
+     * @param joining   为false时在trim内部
+     * @param inForEach 在foreach的元素内部, 且不在更内层的trim内部.
+     *                  此时第一个不为空白的片段前会加分隔符, 所以空白的片段不与之后的片段合并
+     */
+    private void normalize(SqlNode node, boolean joining, boolean inForEach) {
+        if (node instanceof MixedSqlNode) {
+            this.normalizeContents(((MixedSqlNode) node).getContents(), joining, inForEach);
+        } else if (node instanceof TrimSqlNode) {
+            this.normalize(((TrimSqlNode) node).getContents(), false, false);
+        } else if (node instanceof ForEachSqlNode) {
+            this.normalize(((ForEachSqlNode) node).getContents(), joining, true);
+        } else if (node instanceof IfSqlNode) {
+            this.normalize(((IfSqlNode) node).getContents(), joining, inForEach);
+        } else if (node instanceof ChooseSqlNode) {
+            ChooseSqlNode choose = (ChooseSqlNode) node;
+            for (SqlNode when : choose.getWhenSqlNodes()) {
+                this.normalize(when, joining, inForEach);
+            }
+            if (choose.getDefaultSqlNode() != null) {
+                this.normalize(choose.getDefaultSqlNode(), joining, inForEach);
+            }
+        }
+    }
+
+    private void normalizeContents(List<SqlNode> contents, boolean joining, boolean inForEach) {
+        List<SqlNode> normalized = new ArrayList<>(contents.size());
+        // 正在合并的静态文本
+        StringBuilder text = null;
+        for (SqlNode child : contents) {
+            this.normalize(child, joining, inForEach);
+            String childText = XmlScriptBuilder.staticTextOf(child);
+            if (childText == null) {
+                XmlScriptBuilder.flushText(text, normalized, this.configuration);
+                text = null;
+                normalized.add(child);
+            } else if (text == null) {
+                text = new StringBuilder(childText);
+            } else if ((inForEach && text.toString().trim().isEmpty()) || XmlScriptBuilder.mayOpenToken(text)) {
+                // 以#或\结尾的可能与之后的文本组成#{, 在trim内部原本不相连, 不合并
+                XmlScriptBuilder.flushText(text, normalized, this.configuration);
+                text = new StringBuilder(childText);
+            } else {
+                if (joining) {
+                    text.append(' ');
+                }
+                text.append(childText);
+            }
+        }
+        XmlScriptBuilder.flushText(text, normalized, this.configuration);
+        contents.clear();
+        contents.addAll(normalized);
+    }
+
+    /**
+     * @return 静态文本, 或内部只有静态文本的trim完成trim后的结果; 其余节点为null
+     */
+    private static String staticTextOf(SqlNode node) {
+        if (node instanceof StaticTextSqlNode) {
+            return ((StaticTextSqlNode) node).getText();
+        }
+        if (node instanceof TrimSqlNode && ((TrimSqlNode) node).getContents() instanceof MixedSqlNode) {
+            List<SqlNode> contents = ((MixedSqlNode) ((TrimSqlNode) node).getContents()).getContents();
+            if (contents.isEmpty()) {
+                return ((TrimSqlNode) node).applyTrim("");
+            }
+            if (contents.size() == 1 && contents.get(0) instanceof StaticTextSqlNode) {
+                return ((TrimSqlNode) node).applyTrim(((StaticTextSqlNode) contents.get(0)).getText());
+            }
+        }
+        return null;
+    }
+
+    private static boolean mayOpenToken(StringBuilder text) {
+        if (text.length() == 0) {
+            return false;
+        }
+        char last = text.charAt(text.length() - 1);
+        return last == '#' || last == '\\';
+    }
+
+    private static void flushText(StringBuilder text, List<SqlNode> normalized, Configuration configuration) {
+        if (text == null) {
+            return;
+        }
+        String result = configuration.isShrinkWhitespacesInSql() ?
+                XmlScriptBuilder.collapseWhitespaces(text) : text.toString();
+        normalized.add(new StaticTextSqlNode(result));
+    }
+
+    /**
+     * 连续的空白符只保留第一个, 空白符与{@link SqlSourceBuilder#removeExtraWhitespaces(String)}相同
+     */
+    private static String collapseWhitespaces(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean whitespace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean isWhitespace = c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+            if (!isWhitespace || !whitespace) {
+                result.append(c);
+            }
+            whitespace = isWhitespace;
+        }
+        return result.toString();
+    }
+
+    private static boolean isStatic(MixedSqlNode root) {
+        for (SqlNode node : root.getContents()) {
+            if (!(node instanceof StaticTextSqlNode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * TODO
      * 其他嵌套的Node也可以调用该方法来解析
@@ -0,0 +1,289 @@
+package org.harvey.batis.scripting.xml.compile;
+
+import org.harvey.batis.builder.SqlSourceBuilder;
+import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.reflection.property.PropertyTokenizer;
+import org.harvey.batis.scripting.xml.DynamicContext;
+import org.harvey.batis.scripting.xml.SqlBuffer;
+import org.harvey.batis.scripting.xml.node.ForEachSqlNode;
+import org.harvey.batis.scripting.xml.node.TrimSqlNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次渲染的状态, 只在渲染线程中使用<br>
+ * 片段的拼接规则与解释执行时相同: 顶层像{@link DynamicContext#appendSql(String)}一样用{@code " "}连接每个片段,
+ * trim内部的片段直接相连; {@code #{}}直接写为{@code ?}, 同时按顺序记下参数<br>
+ * 记录形状时不拼接SQL, 只把决定SQL和参数的因素(分支, foreach的元素个数, {@code ${}}的值, 参数的类型)记入{@link #shape}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:10
+ */
+class RenderContext {
+    private final DynamicContext context;
+    /**
+     * 记录形状时为null
+     */
+    private final SqlBuffer sql;
+    /**
+     * 每个?对应的参数名, 已经按foreach重命名
+     */
+    private final List<String> properties = new ArrayList<>();
+    private final List<Map<String, String>> expressions = new ArrayList<>();
+    /**
+     * 不为null时只记录形状
+     *
+     * @see SqlRenderer
+     */
+    private final CacheKey shape;
+    /**
+     * 为false时在trim内部
+     */
+    private boolean joining = true;
+    /**
+     * 顶层已经拼入的片段数
+     */
+    private int pieces;
+    /**
+     * 当前foreach元素的分隔符, 嵌套时指向外层
+     */
+    Separator separator;
+    /**
+     * 当前foreach元素的重命名, 嵌套时指向外层
+     */
+    Scope scope;
+
+    RenderContext(DynamicContext context) {
+        this(context, null);
+    }
+
+    RenderContext(DynamicContext context, CacheKey shape) {
+        this.context = context;
+        this.shape = shape;
+        this.sql = shape == null ? SqlBuffer.acquire() : null;
+    }
+
+    DynamicContext getContext() {
+        return context;
+    }
+
+    boolean isRecording() {
+        return shape != null;
+    }
+
+    /**
+     * 记录一个决定形状的因素, 例如分支是否命中
+     */
+    void shape(Object factor) {
+        if (shape != null) {
+            shape.update(factor);
+        }
+    }
+
+    /**
+     * 开始拼入一个片段, 相当于一次{@link DynamicContext#appendSql(String)}, 之后写入片段的内容
+     *
+     * @param blank 片段是否只有空白符
+     */
+    void piece(boolean blank) {
+        if (shape != null) {
+            return;
+        }
+        this.piece(separator, blank);
+    }
+
+    /**
+     * 同foreach的元素对内容的处理: 第一个不为空白的片段之前先拼入分隔符
+     */
+    private void piece(Separator separator, boolean blank) {
+        if (separator == null) {
+            if (joining && pieces++ > 0) {
+                sql.append(' ');
+            }
+            return;
+        }
+        if (!separator.applied && !blank) {
+            this.piece(separator.outer, SqlNodeCompiler.isBlank(separator.text));
+            sql.append(separator.text);
+            separator.applied = true;
+        }
+        this.piece(separator.outer, blank);
+    }
+
+    void literal(String text) {
+        if (shape != null) {
+            return;
+        }
+        sql.append(text);
+    }
+
+    void parameter(RenderNodes.Parameter parameter) {
+        String name = parameter.name;
+        String property = parameter.property;
+        for (Scope s = scope; s != null; s = s.outer) {
+            String renamed = null;
+            if (name.equals(s.item)) {
+                renamed = ForEachSqlNode.itemizeItem(s.item, s.uniqueNumber);
+            } else if (s.index != null && name.equals(s.index)) {
+                renamed = ForEachSqlNode.itemizeItem(s.index, s.uniqueNumber);
+            }
+            if (renamed != null) {
+                property = renamed + property.substring(name.length());
+                name = renamed;
+            }
+        }
+        properties.add(property);
+        if (shape != null) {
+            return;
+        }
+        sql.append(SqlSourceBuilder.ParameterMappingTokenHandler.SQL_PARAMETER_PLACEHOLDER);
+        expressions.add(parameter.expression);
+    }
+
+    /**
+     * {@code ${}}的值, 其中也可能有{@code #{}}
+     */
+    void text(String value) {
+        if (shape != null) {
+            shape.update(value);
+        }
+        if (!value.contains(SqlSourceBuilder.PARAMETER_OPEN_TOKEN) || !SqlNodeCompiler.isSplittable(value)) {
+            this.literal(value);
+            return;
+        }
+        for (Object segment : SqlNodeCompiler.split(value)) {
+            if (segment instanceof RenderNodes.Parameter) {
+                this.parameter((RenderNodes.Parameter) segment);
+            } else {
+                this.literal((String) segment);
+            }
+        }
+    }
+
+    Region beginRegion() {
+        Region region = new Region(sql.length(), joining, pieces, separator);
+        joining = false;
+        separator = null;
+        return region;
+    }
+
+    /**
+     * 在缓冲区中原地对区域内拼装的sql做trim, 作为一个片段拼入
+     */
+    void endRegion(Region region, TrimSqlNode node) {
+        joining = region.joining;
+        pieces = region.pieces;
+        separator = region.separator;
+        node.applyTrim(sql, region.start);
+        int end = sql.length();
+        // 片段之前的空格和分隔符先拼在末尾, 再移到片段之前
+        this.piece(sql.isBlank(region.start));
+        sql.rotate(region.start, end);
+    }
+
+    /**
+     * 参数的类型由渲染结束时的绑定决定, 所以在最后记入形状
+     *
+     * @return 形状, 参数的类型不能只由绑定的值的类决定时返回null, 此时不能复用
+     * @see SqlSourceBuilder.ParameterMappingTokenHandler#buildParameterMapping(String, Map)
+     */
+    CacheKey getShape() {
+        Map<String, Object> bindings = context.getBindings();
+        for (String property : properties) {
+            PropertyTokenizer prop = new PropertyTokenizer(property);
+            if (!bindings.containsKey(prop.getIndexedName())) {
+                // 由参数对象的类决定, 已经在形状中
+                continue;
+            }
+            if (prop.getIndex() != null || prop.hasNext()) {
+                return null;
+            }
+            Object value = bindings.get(property);
+            shape.update(value == null ? null : value.getClass());
+        }
+        return shape;
+    }
+
+    /**
+     * 缩减空白符时直接在缓冲区中进行, 只能调用一次
+     */
+    String getSql(boolean shrinkWhitespaces) {
+        if (!shrinkWhitespaces) {
+            return sql.toTrimmedString();
+        }
+        sql.shrinkWhitespaces();
+        return sql.toString();
+    }
+
+    /**
+     * 归还sql的缓冲区
+     */
+    void release() {
+        if (sql != null) {
+            sql.release();
+        }
+    }
+
+    /**
+     * 与{@link SqlSourceBuilder}一样, 按渲染结束时的绑定决定参数的类型
+     */
+    List<ParameterMapping> getParameterMappings(Configuration configuration, Class<?> parameterType) {
+        List<ParameterMapping> parameterMappings = new ArrayList<>(properties.size());
+        if (properties.isEmpty()) {
+            return parameterMappings;
+        }
+        SqlSourceBuilder.ParameterMappingTokenHandler handler = new SqlSourceBuilder.ParameterMappingTokenHandler(
+                configuration, parameterType, context.getBindings());
+        for (int i = 0; i < properties.size(); i++) {
+            parameterMappings.add(handler.buildParameterMapping(properties.get(i), expressions.get(i)));
+        }
+        return parameterMappings;
+    }
+
+    static class Separator {
+        final Separator outer;
+        String text;
+        boolean applied;
+
+        Separator(Separator outer) {
+            this.outer = outer;
+        }
+
+        void reset(String text) {
+            this.text = text;
+            this.applied = false;
+        }
+    }
+
+    static class Scope {
+        final String item;
+        final String index;
+        final Scope outer;
+        int uniqueNumber;
+
+        Scope(String item, String index, Scope outer) {
+            this.item = item;
+            this.index = index;
+            this.outer = outer;
+        }
+    }
+
+    static class Region {
+        private final int start;
+        private final boolean joining;
+        private final int pieces;
+        private final Separator separator;
+
+        private Region(int start, boolean joining, int pieces, Separator separator) {
+            this.start = start;
+            this.joining = joining;
+            this.pieces = pieces;
+            this.separator = separator;
+        }
+    }
+}
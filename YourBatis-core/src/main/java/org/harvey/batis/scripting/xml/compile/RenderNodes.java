@@ -0,0 +1,313 @@
+package org.harvey.batis.scripting.xml.compile;
+
+import org.harvey.batis.builder.SqlSourceBuilder;
+import org.harvey.batis.exception.scripting.ScriptingException;
+import org.harvey.batis.scripting.js.Expression;
+import org.harvey.batis.scripting.js.ExpressionEvaluator;
+import org.harvey.batis.scripting.xml.DynamicContext;
+import org.harvey.batis.scripting.xml.node.ForEachSqlNode;
+import org.harvey.batis.scripting.xml.node.TrimSqlNode;
+import org.harvey.batis.util.type.SimpleTypeRegistry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * {@link SqlNodeCompiler}生成的渲染树节点, 与{@link org.harvey.batis.scripting.xml.SqlNode}一一对应<br>
+ * 区别在于: 文本中的{@code #{}}在编译时已经解析为{@link Parameter}, 表达式已经编译,
+ * trim和foreach不再为每个节点或元素包装一个{@link DynamicContext}, 而是直接写入{@link RenderContext}
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:10
+ */
+final class RenderNodes {
+    private RenderNodes() {
+        // Prevent Instantiation of Static Class
+    }
+
+    interface RenderNode {
+        /**
+         * @return 同{@link org.harvey.batis.scripting.xml.SqlNode#apply(DynamicContext)}
+         */
+        boolean render(RenderContext context);
+    }
+
+    /**
+     * 文本中的一个{@code #{}}
+     */
+    static class Parameter {
+        /**
+         * 第一个空白符之前的内容, foreach按它判断是否需要重命名为{@link ForEachSqlNode#itemizeItem(String, int)}
+         */
+        final String name;
+        final String property;
+        /**
+         * {@link SqlSourceBuilder.ParameterMappingTokenHandler#parseParameterMapping(String)}的结果
+         */
+        final Map<String, String> expression;
+
+        Parameter(String content) {
+            this.expression = SqlSourceBuilder.ParameterMappingTokenHandler.parseParameterMapping(content);
+            this.property = expression.get("property");
+            String trimmed = content.trim();
+            int end = 0;
+            while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) {
+                end++;
+            }
+            this.name = trimmed.substring(0, end);
+        }
+    }
+
+    /**
+     * {@link org.harvey.batis.scripting.xml.node.StaticTextSqlNode}, 或不含{@code ${}}的片段
+     */
+    static class Text implements RenderNode {
+        /**
+         * String或{@link Parameter}
+         */
+        private final Object[] segments;
+        private final boolean blank;
+
+        Text(Object[] segments, boolean blank) {
+            this.segments = segments;
+            this.blank = blank;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            context.piece(blank);
+            for (Object segment : segments) {
+                if (segment instanceof Parameter) {
+                    context.parameter((Parameter) segment);
+                } else {
+                    context.literal((String) segment);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@link org.harvey.batis.scripting.xml.node.TextSqlNode}, {@code ${}}的值在渲染时求出
+     */
+    static class DynamicText implements RenderNode {
+        /**
+         * String, {@link Parameter}或{@link Expression}
+         */
+        private final Object[] segments;
+        private final Pattern injectionFilter;
+
+        DynamicText(Object[] segments, Pattern injectionFilter) {
+            this.segments = segments;
+            this.injectionFilter = injectionFilter;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            Map<String, Object> bindings = context.getContext().getBindings();
+            Object parameter = bindings.get(DynamicContext.PARAMETER_OBJECT_KEY);
+            if (parameter == null) {
+                bindings.put("value", null);
+            } else if (SimpleTypeRegistry.isSimpleType(parameter.getClass())) {
+                // 如果是简单类型, 在SQL中能够用value来获取parameter
+                bindings.put("value", parameter);
+            }
+            String[] values = new String[segments.length];
+            boolean blank = true;
+            for (int i = 0; i < segments.length; i++) {
+                Object segment = segments[i];
+                if (segment instanceof Expression) {
+                    Object value = ((Expression) segment).getValue(bindings);
+                    values[i] = value == null ? "" : value.toString();
+                    this.checkInjection(values[i]);
+                    blank = blank && SqlNodeCompiler.isBlank(values[i]);
+                } else if (segment instanceof Parameter) {
+                    blank = false;
+                } else {
+                    blank = blank && SqlNodeCompiler.isBlank((String) segment);
+                }
+            }
+            context.piece(blank);
+            for (int i = 0; i < segments.length; i++) {
+                Object segment = segments[i];
+                if (values[i] != null) {
+                    context.text(values[i]);
+                } else if (segment instanceof Parameter) {
+                    context.parameter((Parameter) segment);
+                } else {
+                    context.literal((String) segment);
+                }
+            }
+            return true;
+        }
+
+        private void checkInjection(String value) {
+            if (injectionFilter != null && !injectionFilter.matcher(value).matches()) {
+                throw new ScriptingException("Invalid input. Please conform to regex" + injectionFilter.pattern());
+            }
+        }
+    }
+
+    static class Mixed implements RenderNode {
+        private final RenderNode[] contents;
+
+        Mixed(RenderNode[] contents) {
+            this.contents = contents;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            for (RenderNode content : contents) {
+                content.render(context);
+            }
+            return true;
+        }
+    }
+
+    static class If implements RenderNode {
+        private final Expression test;
+        private final RenderNode contents;
+
+        If(Expression test, RenderNode contents) {
+            this.test = test;
+            this.contents = contents;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            boolean matched = ExpressionEvaluator.evaluateBoolean(test, context.getContext().getBindings());
+            context.shape(matched);
+            if (!matched) {
+                return false;
+            }
+            contents.render(context);
+            return true;
+        }
+    }
+
+    static class Choose implements RenderNode {
+        private final RenderNode[] whens;
+        private final RenderNode otherwise;
+
+        Choose(RenderNode[] whens, RenderNode otherwise) {
+            this.whens = whens;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            for (RenderNode when : whens) {
+                if (when.render(context)) {
+                    return true;
+                }
+            }
+            if (otherwise != null) {
+                otherwise.render(context);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 内部的片段直接相连地写入缓冲区, 结束后原地对这一段做{@link TrimSqlNode#applyTrim(org.harvey.batis.scripting.xml.SqlBuffer, int)}
+     */
+    static class Trim implements RenderNode {
+        private final TrimSqlNode node;
+        private final RenderNode contents;
+
+        Trim(TrimSqlNode node, RenderNode contents) {
+            this.node = node;
+            this.contents = contents;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            if (context.isRecording()) {
+                // 结果由内部的形状决定
+                return contents.render(context);
+            }
+            RenderContext.Region region = context.beginRegion();
+            boolean result = contents.render(context);
+            context.endRegion(region, node);
+            return result;
+        }
+    }
+
+    static class ForEach implements RenderNode {
+        private final ForEachSqlNode node;
+        private final RenderNode contents;
+
+        ForEach(ForEachSqlNode node, RenderNode contents) {
+            this.node = node;
+            this.contents = contents;
+        }
+
+        @Override
+        public boolean render(RenderContext context) {
+            DynamicContext dynamicContext = context.getContext();
+            Map<String, Object> bindings = dynamicContext.getBindings();
+            Iterable<?> iterable = ForEachSqlNode.evaluateIterable(node.getCollection(), bindings);
+            if (node.isArrayBound()) {
+                // SQL与元素个数无关, 参数的类型在形状中
+                context.piece(false);
+                context.text(node.applyArray(dynamicContext, iterable));
+                return true;
+            }
+            Iterator<?> iterator = iterable.iterator();
+            if (!iterator.hasNext()) {
+                context.shape(0);
+                return true;
+            }
+            String separator = node.getSeparator();
+            this.appendLiteral(context, node.getOpen());
+            RenderContext.Separator elementSeparator = new RenderContext.Separator(context.separator);
+            RenderContext.Scope scope = new RenderContext.Scope(node.getItem(), node.getIndex(), context.scope);
+            boolean first = true;
+            int i = 0;
+            // 补齐时遍历到这个个数, 多出的位置重复最后一个元素
+            int size = 0;
+            int uniqueNumber = 0;
+            // 真实的元素个数, 补齐的位置引用的参数名由它决定
+            int count = 0;
+            while (i < size || iterator.hasNext()) {
+                if (iterator.hasNext()) {
+                    count++;
+                    Object o = iterator.next();
+                    if (!iterator.hasNext() && node.isPadded()) {
+                        size = node.paddedSize(i + 1);
+                    }
+                    uniqueNumber = dynamicContext.getUniqueNumber();
+                    node.applyEach(dynamicContext, o, i, uniqueNumber);
+                }
+                // 分隔符加到每一个元素做前缀的方式
+                elementSeparator.reset(first || separator == null ? "" : separator);
+                // 补齐的位置沿用最后一个元素的uniqueNumber, 不再绑定
+                scope.uniqueNumber = uniqueNumber;
+                context.separator = elementSeparator;
+                context.scope = scope;
+                contents.render(context);
+                context.separator = elementSeparator.outer;
+                context.scope = scope.outer;
+                if (first) {
+                    first = !elementSeparator.applied;
+                }
+                i++;
+            }
+            this.appendLiteral(context, node.getClose());
+            context.shape(count);
+            bindings.remove(node.getItem());
+            bindings.remove(node.getIndex());
+            return true;
+        }
+
+        private void appendLiteral(RenderContext context, String literal) {
+            if (literal != null) {
+                context.piece(SqlNodeCompiler.isBlank(literal));
+                context.literal(literal);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.harvey.batis.scripting.xml.compile;
+
+import org.harvey.batis.builder.SqlSourceBuilder;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.exception.builder.BuilderException;
+import org.harvey.batis.exception.scripting.ScriptingException;
+import org.harvey.batis.io.log.Log;
+import org.harvey.batis.io.log.LogFactory;
+import org.harvey.batis.parsing.GenericTokenParser;
+import org.harvey.batis.scripting.js.LanguagePhaser;
+import org.harvey.batis.scripting.xml.SqlNode;
+import org.harvey.batis.scripting.xml.node.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把动态SQL的{@link SqlNode}树编译成{@link SqlRenderer}<br>
+ * 编译时解析文本中的{@code #{}}和{@code ${}}, 编译条件表达式; 渲染时只剩下求值和拼接<br>
+ * 不能保证与解释执行结果完全相同的树(自定义的{@link SqlNode}, 跨越多个片段的{@code #{}},
+ * 含有{@code #{}}的foreach的open/close/separator等)不编译, 仍然解释执行
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:10
+ * @see Configuration#isCompileDynamicSql()
+ */
+public class SqlNodeCompiler {
+    private static final Log LOG = LogFactory.getLog(SqlNodeCompiler.class);
+    /**
+     * 在解析结果中标记token的位置
+     */
+    private static final char MARK = '\u0000';
+
+    private SqlNodeCompiler() {
+        // Prevent Instantiation of Static Class
+    }
+
+    /**
+     * @return 不能编译时返回null
+     */
+    public static SqlRenderer compile(Configuration configuration, SqlNode root) {
+        try {
+            return new SqlRenderer(configuration, SqlNodeCompiler.compileNode(root));
+        } catch (NotCompilableException e) {
+            LOG.debugIfEnable("Dynamic SQL is interpreted because " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static RenderNodes.RenderNode compileNode(SqlNode node) {
+        Class<?> type = node.getClass();
+        if (type == MixedSqlNode.class) {
+            return new RenderNodes.Mixed(SqlNodeCompiler.compileNodes(((MixedSqlNode) node).getContents()));
+        } else if (type == StaticTextSqlNode.class) {
+            return SqlNodeCompiler.compileText(((StaticTextSqlNode) node).getText());
+        } else if (type == TextSqlNode.class) {
+            TextSqlNode textNode = (TextSqlNode) node;
+            return SqlNodeCompiler.compileDynamicText(textNode.getText(), textNode);
+        } else if (type == IfSqlNode.class) {
+            IfSqlNode ifNode = (IfSqlNode) node;
+            return new RenderNodes.If(ifNode.getBoolExpression(), compileNode(ifNode.getContents()));
+        } else if (type == ChooseSqlNode.class) {
+            ChooseSqlNode chooseNode = (ChooseSqlNode) node;
+            SqlNode otherwise = chooseNode.getDefaultSqlNode();
+            return new RenderNodes.Choose(SqlNodeCompiler.compileNodes(chooseNode.getWhenSqlNodes()),
+                    otherwise == null ? null : compileNode(otherwise));
+        } else if (type == TrimSqlNode.class || type == WhereSqlNode.class || type == SetSqlNode.class) {
+            TrimSqlNode trimNode = (TrimSqlNode) node;
+            return new RenderNodes.Trim(trimNode, compileNode(trimNode.getContents()));
+        } else if (type == ForEachSqlNode.class) {
+            ForEachSqlNode forEachNode = (ForEachSqlNode) node;
+            SqlNodeCompiler.requireLiteral(forEachNode.getOpen());
+            SqlNodeCompiler.requireLiteral(forEachNode.getClose());
+            SqlNodeCompiler.requireLiteral(forEachNode.getSeparator());
+            return new RenderNodes.ForEach(forEachNode, compileNode(forEachNode.getContents()));
+        }
+        throw new NotCompilableException("of unsupported node " + type.getName());
+    }
+
+    private static RenderNodes.RenderNode[] compileNodes(List<SqlNode> nodes) {
+        RenderNodes.RenderNode[] compiled = new RenderNodes.RenderNode[nodes.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compileNode(nodes.get(i));
+        }
+        return compiled;
+    }
+
+    private static RenderNodes.RenderNode compileText(String text) {
+        SqlNodeCompiler.requireSelfContained(text);
+        List<Object> segments = SqlNodeCompiler.compileSegments(text);
+        boolean blank = true;
+        for (Object segment : segments) {
+            blank = blank && segment instanceof String && isBlank((String) segment);
+        }
+        return new RenderNodes.Text(segments.toArray(), blank);
+    }
+
+    /**
+     * 先按{@code ${}}拆分, 再拆分其余文本中的{@code #{}}, 与解释执行时两次解析的顺序相同
+     */
+    private static RenderNodes.RenderNode compileDynamicText(String text, TextSqlNode node) {
+        SqlNodeCompiler.requireSelfContained(text);
+        List<String> scripts = new ArrayList<>();
+        String parsed = new GenericTokenParser(TextSqlNode.SCRIPT_OPEN_TOKEN, TextSqlNode.SCRIPT_CLOSE_TOKEN,
+                content -> {
+                    scripts.add(content);
+                    return String.valueOf(MARK);
+                }).parse(text);
+        List<Object> segments = new ArrayList<>();
+        int start = 0;
+        for (String script : scripts) {
+            int end = parsed.indexOf(MARK, start);
+            segments.addAll(SqlNodeCompiler.compileSegments(parsed.substring(start, end)));
+            try {
+                segments.add(LanguagePhaser.compile(script));
+            } catch (ScriptingException e) {
+                // 留到执行时抛出
+                throw new NotCompilableException("of " + e.getMessage());
+            }
+            start = end + 1;
+        }
+        segments.addAll(SqlNodeCompiler.compileSegments(parsed.substring(start)));
+        return new RenderNodes.DynamicText(segments.toArray(), node.getInjectionFilter());
+    }
+
+    private static List<Object> compileSegments(String text) {
+        List<Object> segments;
+        try {
+            segments = SqlNodeCompiler.split(text);
+        } catch (BuilderException e) {
+            // 留到执行时抛出
+            throw new NotCompilableException("of " + e.getMessage());
+        }
+        for (Object segment : segments) {
+            if (segment instanceof String && ((String) segment).contains(SqlSourceBuilder.PARAMETER_OPEN_TOKEN)) {
+                // 没有闭合或被转义的#{, 可能与之后的片段组成参数
+                throw new NotCompilableException("of unclosed parameter in '" + text + "'");
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 把文本拆分为字符串和{@link RenderNodes.Parameter}
+     *
+     * @param text 不能含有{@link #MARK}
+     */
+    static List<Object> split(String text) {
+        List<String> contents = new ArrayList<>();
+        String parsed = new GenericTokenParser(SqlSourceBuilder.PARAMETER_OPEN_TOKEN, SqlSourceBuilder.PARAMETER_CLOSE_TOKEN,
+                content -> {
+                    contents.add(content);
+                    return String.valueOf(MARK);
+                }).parse(text);
+        List<Object> segments = new ArrayList<>(contents.size() * 2 + 1);
+        int start = 0;
+        for (String content : contents) {
+            int end = parsed.indexOf(MARK, start);
+            if (end > start) {
+                segments.add(parsed.substring(start, end));
+            }
+            segments.add(new RenderNodes.Parameter(content));
+            start = end + 1;
+        }
+        if (start < parsed.length()) {
+            segments.add(parsed.substring(start));
+        }
+        return segments;
+    }
+
+    /**
+     * 解释执行时{@code #{}}在整条SQL拼装完之后才解析, trim内的片段直接相连,
+     * 所以以{@code #}或{@code \}结尾的片段可能影响下一个片段
+     */
+    private static void requireSelfContained(String text) {
+        if (!isSplittable(text) || text.endsWith("#") || text.endsWith("\\")) {
+            throw new NotCompilableException("of text '" + text + "'");
+        }
+    }
+
+    private static void requireLiteral(String text) {
+        if (text != null && (text.contains(SqlSourceBuilder.PARAMETER_OPEN_TOKEN) ||
+                text.contains(TextSqlNode.SCRIPT_OPEN_TOKEN))) {
+            throw new NotCompilableException("of foreach attribute '" + text + "'");
+        }
+    }
+
+    static boolean isSplittable(String text) {
+        return text.indexOf(MARK) < 0;
+    }
+
+    /**
+     * @return 同{@code text.trim().isEmpty()}
+     */
+    static boolean isBlank(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class NotCompilableException extends RuntimeException {
+        NotCompilableException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.harvey.batis.scripting.xml.compile;
+
+import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.cache.CacheStatistics;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.scripting.xml.DynamicContext;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 编译后的动态SQL, 线程安全, 由{@link SqlNodeCompiler}创建<br>
+ * 一次渲染同时得到SQL和{@link ParameterMapping}, 不再需要{@link org.harvey.batis.builder.SqlSourceBuilder}重新解析{@code #{}}<br>
+ * 同一条语句的调用通常只产生少数几种SQL, 只是绑定的值不同. 所以先只求出分支和foreach的元素个数等组成的"形状",
+ * 形状已经渲染过时直接复用SQL和{@link ParameterMapping}, 只需要绑定值; 否则再完整地渲染一次并记住结果<br>
+ * 每条语句最多记住{@link Configuration#getDynamicSqlShapeCacheSize()}种形状, 满了之后按clock(second chance)淘汰:
+ * 上次经过之后没有再命中过的形状让位给新的形状
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:10
+ * @see org.harvey.batis.mapping.sqlsource.DynamicSqlSource
+ */
+public class SqlRenderer {
+    /**
+     * 所有语句的形状缓存合计的统计的id
+     *
+     * @see CacheStatistics#forCache(String)
+     */
+    public static final String SHAPE_CACHE_ID = "DynamicSqlShapes";
+
+    private final Configuration configuration;
+    private final RenderNodes.RenderNode root;
+    /**
+     * 为null时不缓存形状
+     */
+    private final ConcurrentHashMap<CacheKey, Shape> shapes;
+    /**
+     * 形状放入的顺序, 作为clock的环, 只在持有其锁时访问
+     */
+    private final ArrayDeque<CacheKey> clock;
+    private final int maxShapes;
+    private final CacheStatistics.Counters statistics = new CacheStatistics.Counters();
+    private final CacheStatistics.Counters totalStatistics;
+    /**
+     * 渲染后绑定的参数个数的最大值, 用于确定下一次渲染时bindings的初始容量
+     */
+    private volatile int expectedBindings;
+
+    /**
+     * 渲染的结果
+     */
+    private static class Shape {
+        private final String sql;
+        private final List<ParameterMapping> parameterMappings;
+        /**
+         * 上次被clock经过之后是否命中过
+         */
+        private volatile boolean referenced;
+
+        private Shape(String sql, List<ParameterMapping> parameterMappings) {
+            this.sql = sql;
+            this.parameterMappings = parameterMappings;
+        }
+    }
+
+    SqlRenderer(Configuration configuration, RenderNodes.RenderNode root) {
+        this.configuration = configuration;
+        this.root = root;
+        this.maxShapes = configuration.getDynamicSqlShapeCacheSize();
+        this.shapes = maxShapes > 0 ? new ConcurrentHashMap<>() : null;
+        this.clock = maxShapes > 0 ? new ArrayDeque<>(maxShapes) : null;
+        this.totalStatistics = configuration.getCacheStatistics().forCache(SHAPE_CACHE_ID);
+    }
+
+    public BoundSql getBoundSql(Object parameterObject) {
+        Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+        boolean shrinkWhitespaces = configuration.isShrinkWhitespacesInSql();
+        DynamicContext context = new DynamicContext(configuration, parameterObject, expectedBindings);
+        CacheKey key = null;
+        if (shapes != null) {
+            RenderContext recordingContext = new RenderContext(context, new CacheKey(parameterType, shrinkWhitespaces));
+            root.render(recordingContext);
+            key = recordingContext.getShape();
+            Shape shape = key == null ? null : shapes.get(key);
+            if (shape != null) {
+                if (!shape.referenced) {
+                    shape.referenced = true;
+                }
+                this.count(CacheStatistics.Counters::hit);
+                return this.newBoundSql(shape.sql, shape.parameterMappings, parameterObject, context);
+            }
+            this.count(CacheStatistics.Counters::miss);
+            // foreach的序号等都从头开始
+            context = new DynamicContext(configuration, parameterObject, expectedBindings);
+        }
+        RenderContext renderContext = new RenderContext(context);
+        String sql;
+        try {
+            root.render(renderContext);
+            sql = renderContext.getSql(shrinkWhitespaces);
+        } finally {
+            renderContext.release();
+        }
+        List<ParameterMapping> parameterMappings = renderContext.getParameterMappings(configuration, parameterType);
+        if (key != null) {
+            parameterMappings = Collections.unmodifiableList(parameterMappings);
+            this.admit(key, new Shape(sql, parameterMappings));
+        }
+        return this.newBoundSql(sql, parameterMappings, parameterObject, context);
+    }
+
+    /**
+     * 满了时先淘汰一个形状. 只在未命中时调用, 加锁不影响命中的读取
+     */
+    private void admit(CacheKey key, Shape shape) {
+        synchronized (clock) {
+            if (shapes.containsKey(key)) {
+                return;
+            }
+            while (shapes.size() >= maxShapes) {
+                CacheKey candidate = clock.pollFirst();
+                Shape old = shapes.get(candidate);
+                if (old.referenced) {
+                    // 给第二次机会
+                    old.referenced = false;
+                    clock.addLast(candidate);
+                } else {
+                    shapes.remove(candidate);
+                    this.count(counters -> counters.evicted(1));
+                }
+            }
+            shapes.put(key, shape);
+            clock.addLast(key);
+        }
+        this.count(CacheStatistics.Counters::put);
+    }
+
+    private BoundSql newBoundSql(String sql, List<ParameterMapping> parameterMappings,
+                                 Object parameterObject, DynamicContext context) {
+        int bindings = context.getBindings().size();
+        if (bindings > expectedBindings) {
+            expectedBindings = Math.min(bindings, DynamicContext.MAX_EXPECTED_BINDINGS);
+        }
+        BoundSql boundSql = new BoundSql(configuration, sql, parameterMappings, parameterObject);
+        // 将context的Bindings视作AdditionalParameter, 加入boundSql中
+        context.getBindings().forEach(boundSql::setAdditionalParameter);
+        return boundSql;
+    }
+
+    private void count(Consumer<CacheStatistics.Counters> counter) {
+        counter.accept(statistics);
+        counter.accept(totalStatistics);
+    }
+
+    /**
+     * @return 本语句的形状缓存的命中率等
+     */
+    public CacheStatistics.Snapshot getShapeStatistics() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * @return 已经记住的形状数
+     */
+    public int getShapeCount() {
+        return shapes == null ? 0 : shapes.size();
+    }
+}
@@ -1,6 +1,8 @@
 package org.harvey.batis.scripting.xml.handler;
 
+import org.harvey.batis.builder.SqlSourceBuilder;
 import org.harvey.batis.config.Configuration;
+import org.harvey.batis.exception.builder.BuilderException;
 import org.harvey.batis.parsing.MapperXmlConstants;
 import org.harvey.batis.parsing.XNode;
 import org.harvey.batis.scripting.xml.AbstractNodeHandler;
@@ -8,6 +10,7 @@ import org.harvey.batis.scripting.xml.SqlNode;
 import org.harvey.batis.scripting.xml.XmlScriptBuilder;
 import org.harvey.batis.scripting.xml.node.ForEachSqlNode;
 import org.harvey.batis.scripting.xml.node.MixedSqlNode;
+import org.harvey.batis.scripting.xml.node.StaticTextSqlNode;
 
 import java.util.List;
 
@@ -26,6 +29,8 @@ public class ForEachHandler extends AbstractNodeHandler {
     private static final String OPEN_ATTRIBUTION = MapperXmlConstants.DynamicSql.OPEN_ATTRIBUTION;
     private static final String CLOSE_ATTRIBUTION = MapperXmlConstants.DynamicSql.CLOSE_ATTRIBUTION;
     private static final String SEPARATOR_ATTRIBUTION = MapperXmlConstants.DynamicSql.SEPARATOR_ATTRIBUTION;
+    private static final String ARRAY_TYPE_ATTRIBUTION = MapperXmlConstants.DynamicSql.ARRAY_TYPE_ATTRIBUTION;
+    private static final String PADDING_ATTRIBUTION = MapperXmlConstants.DynamicSql.PADDING_ATTRIBUTION;
 
     public ForEachHandler(Configuration configuration, XmlScriptBuilder key) {
         super(configuration, key);
@@ -42,10 +47,35 @@ public class ForEachHandler extends AbstractNodeHandler {
         String open = nodeToHandle.getAttributeValue(OPEN_ATTRIBUTION);
         String close = nodeToHandle.getAttributeValue(CLOSE_ATTRIBUTION);
         String separator = nodeToHandle.getAttributeValue(SEPARATOR_ATTRIBUTION);
+        String arrayType = nodeToHandle.getAttributeValue(ARRAY_TYPE_ATTRIBUTION);
+        boolean padding = Boolean.TRUE.equals(nodeToHandle.getBooleanAttribute(PADDING_ATTRIBUTION));
+        if (arrayType != null && !isItemOnly(mixedSqlNode, item)) {
+            // 以数组绑定的是元素本身
+            throw new BuilderException("<foreach> with arrayType must contain only #{" + item + "}, " +
+                    "but collection '" + collection + "' does not.");
+        }
         ForEachSqlNode foreach = new ForEachSqlNode(
                 configuration, mixedSqlNode,
                 collection, item, index,
-                open, close, separator);
+                open, close, separator,
+                arrayType, padding);
         targetContents.add(foreach);
     }
+
+    /**
+     * @return 内容只有{@code #{item}}
+     */
+    private static boolean isItemOnly(MixedSqlNode contents, String item) {
+        List<SqlNode> nodes = contents.getContents();
+        if (item == null || nodes.size() != 1 || !(nodes.get(0) instanceof StaticTextSqlNode)) {
+            return false;
+        }
+        String text = ((StaticTextSqlNode) nodes.get(0)).getText().trim();
+        if (!text.startsWith(SqlSourceBuilder.PARAMETER_OPEN_TOKEN) || !text.endsWith(SqlSourceBuilder.PARAMETER_CLOSE_TOKEN)) {
+            return false;
+        }
+        String content = text.substring(SqlSourceBuilder.PARAMETER_OPEN_TOKEN.length(),
+                text.length() - SqlSourceBuilder.PARAMETER_CLOSE_TOKEN.length());
+        return item.equals(SqlSourceBuilder.ParameterMappingTokenHandler.parseParameterMapping(content).get("property"));
+    }
 }
\ No newline at end of file
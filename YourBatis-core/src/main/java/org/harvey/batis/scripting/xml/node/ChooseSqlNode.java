@@ -1,5 +1,6 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.parsing.GenericTokenParser;
 import org.harvey.batis.scripting.xml.DynamicContext;
@@ -15,6 +16,7 @@ import java.util.Map;
  * @version 1.0
  * @date 2024-08-12 23:09
  */
+@Getter
 public class ChooseSqlNode implements SqlNode {
     /**
      * 所有when节点解析后的SqlNode组成的集合<br>
@@ -1,5 +1,6 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.scripting.xml.SqlNode;
 
@@ -10,6 +11,7 @@ import org.harvey.batis.scripting.xml.SqlNode;
  * @version 1.0
  * @date 2024-08-12 22:24
  */
+@Getter
 public abstract class DynamicSqlNode implements SqlNode {
 
     protected final Configuration configuration;
@@ -4,15 +4,18 @@ import lombok.Getter;
 import org.harvey.batis.builder.SqlSourceBuilder;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.exception.builder.BuilderException;
+import org.harvey.batis.executor.pagination.Dialect;
 import org.harvey.batis.parsing.GenericTokenParser;
 import org.harvey.batis.parsing.TokenHandler;
 import org.harvey.batis.scripting.js.LanguagePhaser;
 import org.harvey.batis.scripting.js.PropertyAccessor;
 import org.harvey.batis.scripting.xml.DynamicContext;
 import org.harvey.batis.scripting.xml.SqlNode;
+import org.harvey.batis.util.type.ArrayParameter;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -23,10 +26,15 @@ import java.util.Map;
  * @version 1.0
  * @date 2024-08-12 21:45
  */
+@Getter
 public class ForEachSqlNode extends DynamicSqlNode {
     public static final String ITEM_PREFIX = "__foreach_";
     public static final String PARAMETER_OPEN_TOKEN = SqlSourceBuilder.PARAMETER_OPEN_TOKEN;
     public static final String PARAMETER_CLOSE_TOKEN = SqlSourceBuilder.PARAMETER_CLOSE_TOKEN;
+    /**
+     * 以数组绑定时, 参数名为{@link #itemizeItem(String, int)}
+     */
+    private static final String ARRAY_ITEM = "array_";
     /**
      * 参数名
      */
@@ -51,10 +59,34 @@ public class ForEachSqlNode extends DynamicSqlNode {
      * 分隔符
      */
     private final String separator;
+    /**
+     * 不为null时是IN列表, 元素在数据库中的类型名, 内容只能是{@code #{item}}<br>
+     * {@link Dialect#supportsArrayParameters()}时整个集合作为一个数组参数绑定, open/close/separator不再使用,
+     * SQL与元素个数无关; 否则按{@link #padding}补齐
+     */
+    private final String arrayType;
+    /**
+     * IN列表的元素个数补齐到2的幂(或更大的个数时的线性档位), 多出的位置重复最后一个元素的参数.
+     * 这样不同个数的集合只产生少数几种SQL, 预编译的语句能够复用
+     *
+     * @see #paddedSize(int)
+     */
+    private final boolean padding;
 
     public ForEachSqlNode(Configuration configuration, SqlNode contents,
                           String collection, String item, String index,
                           String open, String close, String separator) {
+        this(configuration, contents, collection, item, index, open, close, separator, null, false);
+    }
+
+    /**
+     * @param arrayType {@link #arrayType}
+     * @param padding   {@link #padding}
+     */
+    public ForEachSqlNode(Configuration configuration, SqlNode contents,
+                          String collection, String item, String index,
+                          String open, String close, String separator,
+                          String arrayType, boolean padding) {
         super(configuration, contents);
         this.collection = collection;
         this.item = item;
@@ -62,34 +94,48 @@ public class ForEachSqlNode extends DynamicSqlNode {
         this.open = open;
         this.close = close;
         this.separator = separator;
+        this.arrayType = arrayType;
+        this.padding = padding;
     }
 
     @Override
     public boolean apply(DynamicContext context) {
         Iterable<?> iterable = evaluateIterable(collection, context.getBindings());
-        System.out.println(iterable);
-        if (!iterable.iterator().hasNext()) {
+        if (this.isArrayBound()) {
+            context.appendSql(this.applyArray(context, iterable));
+            return true;
+        }
+        Iterator<?> iterator = iterable.iterator();
+        if (!iterator.hasNext()) {
             return true;
         }
         applyOpen(context);
         boolean first = true;
         int i = 0;
-        for (Object o : iterable) {
-            DynamicContext oldContext = context;
+        // 补齐时遍历到这个个数, 多出的位置重复最后一个元素
+        int size = 0;
+        // 包装用的context在元素之间复用, 每个元素只重置分隔符和重命名的序号
+        PrefixedContext prefixedContext = new PrefixedContext(context);
+        RenamedDynamicContext renamedContext = new RenamedDynamicContext(prefixedContext, index, item);
+        int uniqueNumber = 0;
+        while (i < size || iterator.hasNext()) {
+            if (iterator.hasNext()) {
+                Object o = iterator.next();
+                if (!iterator.hasNext() && this.isPadded()) {
+                    size = this.paddedSize(i + 1);
+                }
+                uniqueNumber = context.getUniqueNumber();
+                this.applyEach(context, o, i, uniqueNumber);
+            }
             // 分隔符加到每一个元素做前缀的方式
-            context = new PrefixedContext(context,
-                    first || separator == null ? "" : separator);
-
-            int uniqueNumber = context.getUniqueNumber();
-            this.applyEach(context, o, i, uniqueNumber);
-            contents.apply(new RenamedDynamicContext(
-                    configuration, context, index, item, uniqueNumber));
+            prefixedContext.reset(first || separator == null ? "" : separator);
+            // 补齐的位置不再绑定, 沿用最后一个元素的uniqueNumber, 引用它已经绑定的参数
+            renamedContext.reset(uniqueNumber);
+            contents.apply(renamedContext);
             if (first) {
                 // first完成了前缀(分隔符), 就不是first了
-                first = !((PrefixedContext) context).isPrefixApplied();
+                first = !prefixedContext.isPrefixApplied();
             }
-
-            context = oldContext;
             i++;
         }
 
@@ -103,7 +149,70 @@ public class ForEachSqlNode extends DynamicSqlNode {
 
 
 
-    private static Iterable<?> evaluateIterable(String iterable, Map<String, Object> parameterObject) {
+    /**
+     * @return 整个集合作为一个数组参数绑定, 由{@link Configuration#getDialect()}决定
+     */
+    public boolean isArrayBound() {
+        if (arrayType == null) {
+            return false;
+        }
+        Dialect dialect = configuration.getDialect();
+        return dialect != null && dialect.supportsArrayParameters();
+    }
+
+    /**
+     * @return 元素个数需要补齐
+     */
+    public boolean isPadded() {
+        return padding || (arrayType != null && !this.isArrayBound());
+    }
+
+    /**
+     * 不超过{@link Configuration#getInListPaddingLinearThreshold()}时为不小于size的2的幂, 否则为不小于size的它的倍数,
+     * 再限制在{@link Configuration#getInListPaddingMaxSize()}以内
+     *
+     * @return 补齐后的元素个数, 不小于size
+     */
+    public int paddedSize(int size) {
+        if (size <= 1) {
+            return size;
+        }
+        int threshold = configuration.getInListPaddingLinearThreshold();
+        long padded;
+        if (threshold > 0 && size > threshold) {
+            padded = ((long) size + threshold - 1) / threshold * threshold;
+        } else {
+            padded = Long.highestOneBit(size - 1) << 1;
+        }
+        int max = configuration.getInListPaddingMaxSize();
+        if (max > 0 && padded > max) {
+            padded = Math.max(size, max);
+        }
+        return (int) Math.min(padded, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 把集合作为一个{@link ArrayParameter}绑定, Map绑定的是value
+     *
+     * @return 代替整个IN列表的SQL
+     * @see Dialect#arrayInList(String)
+     */
+    public String applyArray(DynamicContext context, Iterable<?> iterable) {
+        List<Object> elements = new ArrayList<>();
+        for (Object o : iterable) {
+            elements.add(o instanceof Map.Entry ? ((Map.Entry<?, ?>) o).getValue() : o);
+        }
+        String name = itemizeItem(ARRAY_ITEM, context.getUniqueNumber());
+        context.bind(name, new ArrayParameter(arrayType, elements.toArray()));
+        return configuration.getDialect().arrayInList(PARAMETER_OPEN_TOKEN + name + PARAMETER_CLOSE_TOKEN);
+    }
+
+    /**
+     * @param iterable        集合的参数名
+     * @param parameterObject 绑定的参数
+     * @return 数组和Map也转为可以遍历的集合, Map遍历的是entry
+     */
+    public static Iterable<?> evaluateIterable(String iterable, Map<String, Object> parameterObject) {
         PropertyAccessor propertyAccessor = LanguagePhaser.getPropertyAccessor(parameterObject);
         Object value = propertyAccessor.getProperty(null, parameterObject, iterable);
         if (value == null) {
@@ -131,7 +240,7 @@ public class ForEachSqlNode extends DynamicSqlNode {
      * @see #applyIndex(DynamicContext, Object, int)
      * @see #applyItem(DynamicContext, Object, int)
      */
-    private void applyEach(DynamicContext context,
+    public void applyEach(DynamicContext context,
                            Object itemValue, Object indexValue, int uniqueNumber) {
         // list/set, 索引为index
         if (itemValue instanceof Map.Entry) {
@@ -192,18 +301,36 @@ public class ForEachSqlNode extends DynamicSqlNode {
      */
     private static class RenamedDynamicContext extends DynamicContext {
         private final DynamicContext delegate;
-        private final int index;
         private final String indexName;
         private final String itemName;
-
-        public RenamedDynamicContext(
-                Configuration configuration, DynamicContext delegate,
-                String indexName, String itemName, int i) {
-            super(configuration, null);
+        /**
+         * 将SQL中的原item和index名字转成Bindings里存储的键的名字
+         */
+        private final GenericTokenParser parser;
+        private int index;
+
+        public RenamedDynamicContext(DynamicContext delegate, String indexName, String itemName) {
+            super(delegate);
             this.delegate = delegate;
-            this.index = i;
             this.indexName = indexName;
             this.itemName = itemName;
+            TokenHandler renameHandler = content -> {
+                String newContent = rename(content, this.itemName, this.index);
+                if (this.indexName != null && newContent == content) {
+                    newContent = rename(content, this.indexName, this.index);
+                }
+                return PARAMETER_OPEN_TOKEN + newContent + PARAMETER_CLOSE_TOKEN;
+            };
+            this.parser = new GenericTokenParser(PARAMETER_OPEN_TOKEN, PARAMETER_CLOSE_TOKEN, renameHandler);
+        }
+
+        /**
+         * 开始下一个元素
+         *
+         * @param i 元素的uniqueNumber
+         */
+        public void reset(int i) {
+            this.index = i;
         }
 
         @Override
@@ -218,27 +345,31 @@ public class ForEachSqlNode extends DynamicSqlNode {
 
         @Override
         public void appendSql(String sql) {
-            // 将SQL中的原item和index名字转成Bindings里存储的键的名字
-            TokenHandler renameHandler = content -> {
-                String newContent = rename(content, itemName, index);
-                if (indexName != null && newContent.equals(content)) {
-                    newContent = rename(content, indexName, index);
-                }
-                return PARAMETER_OPEN_TOKEN + newContent + PARAMETER_CLOSE_TOKEN;
-            };
-            GenericTokenParser parser = new GenericTokenParser(
-                    PARAMETER_OPEN_TOKEN, PARAMETER_CLOSE_TOKEN, renameHandler);
-
             delegate.appendSql(parser.parse(sql));
         }
 
 
+        /**
+         * 内容以targetName开头(前面可以有空白符), 且其后是空白符或结尾时, 把它替换为{@link #itemizeItem(String, int)}<br>
+         * 每个元素的每个{@code #{}}都会调用, 所以直接比较字符, 不使用正则表达式
+         *
+         * @return 不匹配时返回content本身
+         */
         private static String rename(String content, String targetName, int index) {
-            return content.replaceFirst(filterRegex(targetName), itemizeItem(targetName, index));
-        }
-
-        private static String filterRegex(String name) {
-            return "^\\s*" + name + "(?!\\S)";
+            if (targetName == null) {
+                return content;
+            }
+            int length = content.length();
+            int start = 0;
+            while (start < length && Character.isWhitespace(content.charAt(start))) {
+                start++;
+            }
+            int end = start + targetName.length();
+            if (!content.startsWith(targetName, start)
+                    || (end < length && !Character.isWhitespace(content.charAt(end)))) {
+                return content;
+            }
+            return content.substring(0, start) + itemizeItem(targetName, index) + content.substring(end);
         }
 
         @Override
@@ -257,13 +388,21 @@ public class ForEachSqlNode extends DynamicSqlNode {
      */
     private class PrefixedContext extends DynamicContext {
         private final DynamicContext delegate;
-        private final String prefix;
+        private String prefix;
         @Getter
         private boolean prefixApplied;
 
-        public PrefixedContext(DynamicContext delegate, String prefix) {
-            super(configuration, null);
+        public PrefixedContext(DynamicContext delegate) {
+            super(delegate);
             this.delegate = delegate;
+        }
+
+        /**
+         * 开始下一个元素
+         *
+         * @param prefix 该元素的前缀(分隔符)
+         */
+        public void reset(String prefix) {
             this.prefix = prefix;
             this.prefixApplied = false;
         }
@@ -303,7 +442,7 @@ public class ForEachSqlNode extends DynamicSqlNode {
     /**
      * {@link #ITEM_PREFIX}+item_index
      */
-    private static String itemizeItem(String item, int index) {
+    public static String itemizeItem(String item, int index) {
         return ITEM_PREFIX + item + "_" + index;
     }
 }
@@ -1,7 +1,10 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.config.Configuration;
+import org.harvey.batis.scripting.js.Expression;
 import org.harvey.batis.scripting.js.ExpressionEvaluator;
+import org.harvey.batis.scripting.js.LanguagePhaser;
 import org.harvey.batis.scripting.xml.DynamicContext;
 import org.harvey.batis.scripting.xml.SqlNode;
 
@@ -10,13 +13,17 @@ import org.harvey.batis.scripting.xml.SqlNode;
  * @version 1.0
  * @date 2024-08-13 00:00
  */
+@Getter
 public class IfSqlNode extends DynamicSqlNode {
 
-    private final String boolExpression;
+    /**
+     * 构建时编译, 表达式有语法错误时在解析Mapper阶段就能发现
+     */
+    private final Expression boolExpression;
 
     public IfSqlNode(Configuration configuration, SqlNode contents, String boolExpression) {
         super(configuration, contents);
-        this.boolExpression = boolExpression;
+        this.boolExpression = LanguagePhaser.compile(boolExpression);
     }
 
     @Override
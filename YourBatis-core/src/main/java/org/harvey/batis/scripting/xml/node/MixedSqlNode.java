@@ -1,5 +1,6 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.scripting.xml.DynamicContext;
 import org.harvey.batis.scripting.xml.SqlNode;
 
@@ -14,6 +15,7 @@ import java.util.List;
  * @see #contents
  * @see #apply(DynamicContext)
  */
+@Getter
 public class MixedSqlNode implements SqlNode {
     /**
      * 存放孩子节点<br>
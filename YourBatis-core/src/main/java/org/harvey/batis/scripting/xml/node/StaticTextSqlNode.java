@@ -1,5 +1,6 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.scripting.xml.DynamicContext;
 import org.harvey.batis.scripting.xml.SqlNode;
 
@@ -11,6 +12,7 @@ import org.harvey.batis.scripting.xml.SqlNode;
  * @version 1.0
  * @date 2024-08-12 00:08
  */
+@Getter
 public class StaticTextSqlNode implements SqlNode {
     private final String text;
 
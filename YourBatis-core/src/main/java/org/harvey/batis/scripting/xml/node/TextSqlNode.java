@@ -23,6 +23,7 @@ import java.util.regex.Pattern;
  * @version 1.0
  * @date 2024-08-12 00:07
  */
+@Getter
 public class TextSqlNode implements SqlNode {
     private final String text;
     /**
@@ -108,7 +109,7 @@ public class TextSqlNode implements SqlNode {
                 // 如果是简单类型, 在SQL中能够用value来获取parameter
                 context.getBindings().put("value", parameter);
             }
-            Object value = LanguagePhaser.phase(content, context.getBindings());
+            Object value = LanguagePhaser.compile(content).getValue(context.getBindings());
             String srtValue = value == null ? "" : value.toString();
             checkInjection(srtValue);
             return srtValue;
@@ -1,7 +1,9 @@
 package org.harvey.batis.scripting.xml.node;
 
+import lombok.Getter;
 import org.harvey.batis.config.Configuration;
 import org.harvey.batis.scripting.xml.DynamicContext;
+import org.harvey.batis.scripting.xml.SqlBuffer;
 import org.harvey.batis.scripting.xml.SqlNode;
 
 import java.util.*;
@@ -13,6 +15,7 @@ import java.util.*;
  * @version 1.0
  * @date 2024-08-12 17:33
  */
+@Getter
 public class TrimSqlNode extends DynamicSqlNode {
 
     /**
@@ -86,33 +89,110 @@ public class TrimSqlNode extends DynamicSqlNode {
     public boolean apply(DynamicContext context) {
         // 包装context, 使其包装后具有检查前后缀的能力
         TrimmedDynamicContext trimmedContext = new TrimmedDynamicContext(context);
-        boolean result = contents.apply(trimmedContext);
-        trimmedContext.applyTrim();
-        return result;
+        try {
+            boolean result = contents.apply(trimmedContext);
+            trimmedContext.applyTrim();
+            return result;
+        } finally {
+            trimmedContext.release();
+        }
+    }
+
+    /**
+     * @param sql trim内部拼装完成的sql
+     * @return 可以加入原sql的结果
+     * @see #applyTrim(SqlBuffer, int)
+     */
+    public String applyTrim(String sql) {
+        SqlBuffer buffer = SqlBuffer.acquire();
+        try {
+            buffer.append(sql);
+            this.applyTrim(buffer, 0);
+            return buffer.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * 对trim内部拼装完成的sql去除头尾空白符, 去除要覆盖的前后缀, 再加上前后缀, 都在缓冲区中原地完成<br>
+     * 要覆盖的前后缀在构建时已经转为大写, 这里忽略大小写比较, 不再把整段sql转为大写
+     *
+     * @param sql   缓冲区, 从start开始到末尾是trim内部拼装完成的sql
+     * @param start trim内部的sql在缓冲区中的起始位置
+     */
+    public void applyTrim(SqlBuffer sql, int start) {
+        // 去除头尾空格
+        sql.trim(start);
+        if (sql.length() == start) {
+            return;
+        }
+        // 前后缀都按去除之前的sql比较
+        int prefixToRemove = this.matchPrefix(sql, start);
+        int suffixToRemove = this.matchSuffix(sql, start);
+        if (suffixToRemove > 0) {
+            sql.setLength(Math.max(sql.length() - suffixToRemove, start + prefixToRemove));
+        }
+        if (prefixToRemove > 0) {
+            sql.delete(start, start + prefixToRemove);
+        }
+        if (prefix != null) {
+            sql.insert(start, " ");
+            sql.insert(start, prefix);
+        }
+        if (suffix != null) {
+            sql.append(' ').append(suffix);
+        }
+    }
+
+    /**
+     * @return 要去除的前缀的长度, 没有匹配时为0
+     */
+    private int matchPrefix(SqlBuffer sql, int start) {
+        if (prefixesToOverride == null) {
+            return 0;
+        }
+        for (String toRemove : prefixesToOverride) {
+            if (sql.regionMatches(start, toRemove)) {
+                return toRemove.trim().length();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return 要去除的后缀的长度, 没有匹配时为0
+     */
+    private int matchSuffix(SqlBuffer sql, int start) {
+        if (suffixesToOverride == null) {
+            return 0;
+        }
+        for (String toRemove : suffixesToOverride) {
+            String trimmedToRemove = toRemove.trim();
+            if (endsWith(sql, start, toRemove) || endsWith(sql, start, trimmedToRemove)) {
+                return trimmedToRemove.length();
+            }
+        }
+        return 0;
+    }
+
+    private static boolean endsWith(SqlBuffer sql, int start, String suffix) {
+        int offset = sql.length() - suffix.length();
+        return offset >= start && sql.regionMatches(offset, suffix);
     }
 
     private class TrimmedDynamicContext extends DynamicContext {
         private final DynamicContext delegate;
-        /**
-         * prefix只加一遍, 做标记
-         */
-        private boolean prefixApplied;
-        /**
-         * suffix只加一遍, 做标记
-         */
-        private boolean suffixApplied;
         /**
          * trim内部的sql区别父类的{@link DynamicContext#getSql()}保存<br>
          * 完成对trim内部的sql的trim之后, 再一并加入到总sql中去<br>
          */
-        private StringBuilder sqlBuffer;
+        private final SqlBuffer sqlBuffer;
 
         public TrimmedDynamicContext(DynamicContext delegate) {
-            super(configuration, null);
+            super(delegate);
             this.delegate = delegate;
-            this.prefixApplied = false;
-            this.suffixApplied = false;
-            this.sqlBuffer = new StringBuilder();
+            this.sqlBuffer = SqlBuffer.acquire();
         }
 
         /**
@@ -142,71 +222,14 @@ public class TrimSqlNode extends DynamicSqlNode {
         }
 
         public void applyTrim() {
-            // 去除头尾空格
-            sqlBuffer = new StringBuilder(sqlBuffer.toString().trim());
-            // 转大小写之后对sqlBuffer不产生影响
-            String upperSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
-            if (!upperSql.isEmpty()) {
-                this.applyPrefix(sqlBuffer, upperSql);
-                this.applySuffix(sqlBuffer, upperSql);
-            }
+            TrimSqlNode.this.applyTrim(sqlBuffer, 0);
             // 加入原sql
             delegate.appendSql(sqlBuffer.toString());
         }
 
-        private void applyPrefix(StringBuilder sql, String upperSql) {
-            if (prefixApplied) {
-                return;
-            }
-            prefixApplied = true;
-            if (prefixesToOverride != null) {
-                overridePrefixes(sql, upperSql);
-            }
-            if (prefix != null) {
-                addPrefix(sql);
-            }
-        }
-
-        private void addPrefix(StringBuilder sql) {
-            sql.insert(0, " ");
-            sql.insert(0, prefix);
-        }
-
-        private void overridePrefixes(StringBuilder sql, String upperSql) {
-            for (String toRemove : prefixesToOverride) {
-                if (upperSql.startsWith(toRemove)) {
-                    sql.delete(0, toRemove.trim().length());
-                    break;
-                }
-            }
-        }
-
-        private void applySuffix(StringBuilder sql, String upperSql) {
-            if (suffixApplied) {
-                return;
-            }
-            suffixApplied = true;
-            if (suffixesToOverride != null) {
-                overrideSuffixes(sql, upperSql);
-            }
-            if (suffix != null) {
-                addSuffix(sql);
-            }
-        }
-
-        private void addSuffix(StringBuilder sql) {
-            sql.append(" ");
-            sql.append(suffix);
-        }
-
-        private void overrideSuffixes(StringBuilder sql, String upperSql) {
-            for (String toRemove : suffixesToOverride) {
-                if (upperSql.endsWith(toRemove) || upperSql.endsWith(toRemove.trim())) {
-                    int start = sql.length() - toRemove.trim().length();
-                    sql.delete(start, sql.length());
-                    break;
-                }
-            }
+        @Override
+        public void release() {
+            sqlBuffer.release();
         }
     }
 }
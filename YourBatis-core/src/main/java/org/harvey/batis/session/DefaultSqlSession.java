@@ -6,11 +6,14 @@ import org.harvey.batis.exception.ExceptionFactory;
 import org.harvey.batis.exception.UnfinishedFunctionException;
 import org.harvey.batis.executor.BatchResult;
 import org.harvey.batis.executor.Executor;
+import org.harvey.batis.executor.ScatterGatherQuery;
+import org.harvey.batis.executor.result.ResultHandler;
 import org.harvey.batis.mapping.MappedStatement;
 import org.harvey.batis.reflection.ParamNameResolver;
 import org.harvey.batis.util.ErrorContext;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -52,8 +55,9 @@ public class DefaultSqlSession implements SqlSession {
     @Override
     public void close() {
         try {
-            executor.close(this.isCommitOrRollbackRequired(false));
+            // 游标持有Statement, 需要在连接关闭之前关闭
             this.closeCursors();
+            executor.close(this.isCommitOrRollbackRequired(false));
             dirty = false;
         } finally {
             ErrorContext.instance().reset();
@@ -97,6 +101,11 @@ public class DefaultSqlSession implements SqlSession {
         return configuration;
     }
 
+    @Override
+    public void routeShard(Object shardKey) {
+        executor.getTransaction().routeShard(shardKey);
+    }
+
     @Override
     public List<BatchResult> flushStatements() {
         try {
@@ -132,6 +141,66 @@ public class DefaultSqlSession implements SqlSession {
         }
     }
 
+    @Override
+    public void select(String statement, Object parameter, ResultHandler<?> handler) {
+        this.select(statement, parameter, RowBounds.DEFAULT, handler);
+    }
+
+    /**
+     * 结果直接交给handler, 不经过返回值
+     */
+    @Override
+    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler<?> handler) {
+        try {
+            MappedStatement ms = configuration.getMappedStatement(statement);
+            executor.query(ms, this.wrapCollection(parameter), rowBounds, handler);
+        } catch (Exception e) {
+            throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+        return this.selectCursor(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * 返回的游标会被记录在{@link #cursorList}中, 以便在{@link #close()}时关闭
+     */
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+        try {
+            MappedStatement ms = configuration.getMappedStatement(statement);
+            Cursor<T> cursor = executor.queryCursor(ms, this.wrapCollection(parameter), rowBounds);
+            this.registerCursor(cursor);
+            return cursor;
+        } catch (Exception e) {
+            throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
+    /**
+     * 返回的游标同样记录在{@link #cursorList}中, 本会话关闭时一并关闭各分片的会话
+     */
+    @Override
+    public <T> Cursor<T> selectScatterCursor(String statement, Object parameter, RowBounds rowBounds) {
+        MappedStatement ms = configuration.getMappedStatement(statement);
+        Cursor<T> cursor = new ScatterGatherQuery(configuration).query(ms, parameter, rowBounds);
+        this.registerCursor(cursor);
+        return cursor;
+    }
+
+    private <T> void registerCursor(Cursor<T> cursor) {
+        if (cursorList == null) {
+            cursorList = new ArrayList<>();
+        }
+        cursorList.add(cursor);
+    }
+
     /**
      * @see ParamNameResolver#wrapToMapIfCollection(Object, String)
      */
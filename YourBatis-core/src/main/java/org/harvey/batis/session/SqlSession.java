@@ -1,7 +1,9 @@
 package org.harvey.batis.session;
 
 import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
 import org.harvey.batis.executor.BatchResult;
+import org.harvey.batis.executor.result.ResultHandler;
 
 import java.io.Closeable;
 import java.util.List;
@@ -35,6 +37,15 @@ public interface SqlSession extends Closeable {
 
     Configuration getConfiguration();
 
+    /**
+     * 依据分片键把本会话的事务路由到对应的分片, 需要在第一条语句执行之前调用<br>
+     * 使用{@link org.harvey.batis.annotation.ShardKey}的Mapper方法会自动调用
+     *
+     * @param shardKey 分片键, 为null时不改变当前的分片
+     * @see org.harvey.batis.datasource.sharding.ShardingDataSource
+     */
+    void routeShard(Object shardKey);
+
     /**
      * Flushes(刷新) batch statements(语句).
      *
@@ -68,6 +79,52 @@ public interface SqlSession extends Closeable {
      */
     <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds);
 
+    /**
+     * @see #select(String, Object, RowBounds, ResultHandler)
+     */
+    void select(String statement, Object parameter, ResultHandler<?> handler);
+
+    /**
+     * 每映射出一行就交给handler处理, 不会在内存中积累结果列表, 适合大结果集的聚合计算<br>
+     * 调用{@link org.harvey.batis.executor.result.ResultContext#stop()}可以提前结束读取
+     *
+     * @param statement 执行语句的唯一标识
+     * @param parameter 需要被填充入语句的参数实体
+     * @param rowBounds 跳过和限制的行数
+     * @param handler   逐行处理结果
+     */
+    void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler<?> handler);
+
+    /**
+     * @see #selectCursor(String, Object, RowBounds)
+     */
+    <T> Cursor<T> selectCursor(String statement, Object parameter);
+
+    /**
+     * 以游标的形式查询, 结果在迭代时才逐行从数据库读取并映射, 适合结果集很大的查询<br>
+     * 游标读完后自动关闭, 未读完的游标在会话关闭时关闭
+     *
+     * @param <T>       返回值类型
+     * @param statement 执行语句的唯一标识
+     * @param parameter 需要被填充入语句的参数实体
+     * @param rowBounds 跳过和限制的行数
+     * @return 延迟读取结果的游标
+     */
+    <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
+
+    /**
+     * 在所有分片上执行并流式归并, 分片的查询各自使用自动提交的会话, 与本会话的事务无关<br>
+     * 游标读完后自动关闭, 未读完的游标在本会话关闭时关闭, 同时释放各分片的连接
+     *
+     * @param <T>       返回值类型
+     * @param statement 执行语句的唯一标识, 需要声明为scatter
+     * @param parameter 需要被填充入语句的参数实体
+     * @param rowBounds 作用于归并后的结果
+     * @return 归并后的游标
+     * @see org.harvey.batis.executor.ScatterGatherQuery
+     */
+    <T> Cursor<T> selectScatterCursor(String statement, Object parameter, RowBounds rowBounds);
+
 
     /**
      * 执行Insert语句
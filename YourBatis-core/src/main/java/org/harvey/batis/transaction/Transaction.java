@@ -19,6 +19,35 @@ public interface Transaction {
      */
     Connection getConnection() throws SQLException;
 
+    /**
+     * 检索用于执行语句的连接, 默认与{@link #getConnection()}相同
+     *
+     * @param readOnly 语句只读, 且本事务中还没有写操作. 支持读写分离的实现可以返回只读副本的连接
+     * @see org.harvey.batis.datasource.ReadWriteDataSource
+     */
+    default Connection getConnection(boolean readOnly) throws SQLException {
+        return this.getConnection();
+    }
+
+    /**
+     * 按分片键选择本事务使用的DataSource, 必须在打开连接之前调用, 默认什么都不做
+     *
+     * @param shardKey 分片键, 为null时不改变当前的选择
+     * @see org.harvey.batis.datasource.sharding.ShardingDataSource
+     */
+    default void routeShard(Object shardKey) {
+    }
+
+    /**
+     * 同一条语句和参数在不同分片上的结果不同, 所以分片要加入缓存的key
+     *
+     * @return 路由到的分片名, 没有路由时为null
+     * @see org.harvey.batis.executor.BaseExecutor#createCacheKey
+     */
+    default String getShardId() {
+        return null;
+    }
+
     /**
      * 提交本{@link Transaction}对象的数据库连接
      */
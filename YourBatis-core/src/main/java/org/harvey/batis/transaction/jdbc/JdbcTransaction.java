@@ -1,5 +1,7 @@
 package org.harvey.batis.transaction.jdbc;
 
+import org.harvey.batis.datasource.ReadWriteDataSource;
+import org.harvey.batis.datasource.sharding.ShardingDataSource;
 import org.harvey.batis.exception.transaction.TransactionException;
 import org.harvey.batis.io.log.Log;
 import org.harvey.batis.io.log.LogFactory;
@@ -22,7 +24,19 @@ public class JdbcTransaction implements Transaction {
     private static final Log LOG = LogFactory.getLog(JdbcTransaction.class);
 
     protected Connection connection;
+    /**
+     * 读写分离时从只读副本获取的连接, 总是自动提交, 不参与commit/rollback
+     */
+    protected Connection readConnection;
     protected DataSource dataSource;
+    /**
+     * 构造时传入的是分片的DataSource, 此时{@link #dataSource}是路由后的分片
+     */
+    protected ShardingDataSource shardingDataSource;
+    /**
+     * 路由到的分片名, 没有路由或使用默认DataSource时为null
+     */
+    protected String shardId;
     protected TransactionIsolationLevel level;
     protected boolean autoCommit;
 
@@ -31,6 +45,9 @@ public class JdbcTransaction implements Transaction {
      */
     public JdbcTransaction(DataSource ds, TransactionIsolationLevel desiredLevel, boolean desiredAutoCommit) {
         dataSource = ds;
+        if (ds instanceof ShardingDataSource) {
+            shardingDataSource = (ShardingDataSource) ds;
+        }
         level = desiredLevel;
         autoCommit = desiredAutoCommit;
     }
@@ -53,6 +70,54 @@ public class JdbcTransaction implements Transaction {
         return connection;
     }
 
+    /**
+     * {@inheritDoc}
+     * 一个事务只能在一个分片上, 连接打开后不能再切换到别的分片
+     *
+     * @throws TransactionException 连接已经打开, 但分片键对应了另一个分片
+     */
+    @Override
+    public void routeShard(Object shardKey) {
+        if (shardingDataSource == null || shardKey == null) {
+            return;
+        }
+        String shardName = shardingDataSource.getShardName(shardKey);
+        DataSource shard = shardingDataSource.getShards().get(shardName);
+        if (shard == dataSource) {
+            return;
+        }
+        if (connection != null || readConnection != null) {
+            throw new TransactionException("Cannot route the transaction to the shard of key " + shardKey +
+                    " because its connection is already open on another shard. Use a separate SqlSession per shard.");
+        }
+        dataSource = shard;
+        shardId = shardName;
+    }
+
+    @Override
+    public String getShardId() {
+        return shardId;
+    }
+
+    /**
+     * {@inheritDoc}
+     * {@link #dataSource}是{@link ReadWriteDataSource}时, 只读语句使用副本的连接
+     */
+    @Override
+    public Connection getConnection(boolean readOnly) throws SQLException {
+        if (!readOnly || !(dataSource instanceof ReadWriteDataSource)) {
+            return this.getConnection();
+        }
+        if (readConnection == null) {
+            LOG.debugIfEnable("Opening JDBC read-only Connection");
+            readConnection = ((ReadWriteDataSource) dataSource).getReadConnection();
+            if (!readConnection.getAutoCommit()) {
+                readConnection.setAutoCommit(true);
+            }
+        }
+        return readConnection;
+    }
+
     /**
      * 从{@link #dataSource}中获取Connection, 然后给connection注入配置({@link #level}和{@link #autoCommit})
      */
@@ -127,6 +192,10 @@ public class JdbcTransaction implements Transaction {
      */
     @Override
     public void close() throws SQLException {
+        if (readConnection != null) {
+            LOG.debugIfEnable("Closing JDBC read-only Connection [" + readConnection + "]");
+            readConnection.close();
+        }
         if (connection == null) {
             return;
         }
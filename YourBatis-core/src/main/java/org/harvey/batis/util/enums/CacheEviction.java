@@ -0,0 +1,61 @@
+package org.harvey.batis.util.enums;
+
+/**
+ * 二级缓存的淘汰策略
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 09:10
+ * @see org.harvey.batis.cache.CacheBuilder
+ */
+public enum CacheEviction {
+    /**
+     * 最近最少使用, 超过容量时淘汰最久未访问的
+     *
+     * @see org.harvey.batis.cache.decorators.LruCache
+     */
+    LRU("lru"),
+    /**
+     * 先进先出, 超过容量时淘汰最早放入的
+     *
+     * @see org.harvey.batis.cache.decorators.FifoCache
+     */
+    FIFO("fifo"),
+    /**
+     * 软引用, 内存不足时由GC回收
+     *
+     * @see org.harvey.batis.cache.decorators.SoftCache
+     */
+    SOFT("soft"),
+    /**
+     * 弱引用, 下一次GC时就可能被回收
+     *
+     * @see org.harvey.batis.cache.decorators.WeakCache
+     */
+    WEAK("weak"),
+    /**
+     * 不淘汰, 只有写语句和刷新间隔会清空缓存
+     */
+    NONE("none");
+
+    private final String value;
+
+    CacheEviction(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @param value XML中的配置值, 为null时取{@link #LRU}
+     */
+    public static CacheEviction of(String value) {
+        if (value == null) {
+            return LRU;
+        }
+        for (CacheEviction eviction : values()) {
+            if (eviction.value.equalsIgnoreCase(value)) {
+                return eviction;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cache eviction: " + value);
+    }
+}
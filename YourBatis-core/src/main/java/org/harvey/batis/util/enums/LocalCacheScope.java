@@ -0,0 +1,20 @@
+package org.harvey.batis.util.enums;
+
+/**
+ * 一级缓存(本地缓存)的作用范围
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 16:10
+ * @see org.harvey.batis.executor.BaseExecutor
+ */
+public enum LocalCacheScope {
+    /**
+     * 缓存在整个会话中有效, 直到写操作, commit, rollback或close
+     */
+    SESSION,
+    /**
+     * 每条语句执行完就清空, 缓存只用于一次查询内部的嵌套查询, 相当于关闭了会话级缓存
+     */
+    STATEMENT
+}
@@ -0,0 +1,41 @@
+package org.harvey.batis.util.enums;
+
+/**
+ * 读写分离时, 从多个只读副本中选择一个的策略
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 09:30
+ * @see org.harvey.batis.datasource.ReadWriteDataSource
+ */
+public enum ReplicaSelectStrategy {
+    /**
+     * 依次轮流选择
+     */
+    ROUND_ROBIN("round-robin"),
+    /**
+     * 选择活动连接最少的副本, 见{@link org.harvey.batis.datasource.PoolState#getActiveConnectionCount()}
+     */
+    LEAST_ACTIVE("least-active");
+
+    private final String value;
+
+    ReplicaSelectStrategy(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @param value XML中的配置值, 为null时取{@link #ROUND_ROBIN}
+     */
+    public static ReplicaSelectStrategy of(String value) {
+        if (value == null) {
+            return ROUND_ROBIN;
+        }
+        for (ReplicaSelectStrategy strategy : values()) {
+            if (strategy.value.equals(value)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown replica select strategy: " + value);
+    }
+}
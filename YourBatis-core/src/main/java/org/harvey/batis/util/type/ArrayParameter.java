@@ -0,0 +1,27 @@
+package org.harvey.batis.util.type;
+
+import lombok.Getter;
+
+import java.sql.Connection;
+
+/**
+ * 作为一个JDBC数组绑定的参数, 由{@link ArrayTypeHandler}在设置参数时通过{@link Connection#createArrayOf(String, Object[])}创建数组
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:10
+ * @see org.harvey.batis.scripting.xml.node.ForEachSqlNode
+ */
+@Getter
+public class ArrayParameter {
+    /**
+     * 元素在数据库中的类型名, 如{@code integer}, {@code varchar}
+     */
+    private final String typeName;
+    private final Object[] elements;
+
+    public ArrayParameter(String typeName, Object[] elements) {
+        this.typeName = typeName;
+        this.elements = elements;
+    }
+}
@@ -0,0 +1,49 @@
+package org.harvey.batis.util.type;
+
+import org.harvey.batis.util.enums.JdbcType;
+
+import java.sql.*;
+
+/**
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:10
+ * @see Connection#createArrayOf(String, Object[])
+ * @see PreparedStatement#setArray(int, Array)
+ */
+public class ArrayTypeHandler extends BaseTypeHandler<ArrayParameter> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int paramIndex, ArrayParameter parameter, JdbcType jdbcType) throws SQLException {
+        Array array = ps.getConnection().createArrayOf(parameter.getTypeName(), parameter.getElements());
+        ps.setArray(paramIndex, array);
+        // 驱动在setArray时已经取得了数组的值
+        array.free();
+    }
+
+    @Override
+    public ArrayParameter getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return toParameter(rs.getArray(columnName));
+    }
+
+    @Override
+    public ArrayParameter getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return toParameter(rs.getArray(columnIndex));
+    }
+
+    @Override
+    public ArrayParameter getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return toParameter(cs.getArray(columnIndex));
+    }
+
+    private static ArrayParameter toParameter(Array array) throws SQLException {
+        if (array == null) {
+            return null;
+        }
+        try {
+            return new ArrayParameter(array.getBaseTypeName(), (Object[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+}
@@ -54,6 +54,9 @@ public class TypeHandlerRegistry {
         register(JdbcType.TIMESTAMP, new DateTypeHandler());
         // java.sql.Timestamp
         register(java.sql.Timestamp.class, new SqlTimestampTypeHandler());
+        // java.sql.Array
+        register(ArrayParameter.class, new ArrayTypeHandler());
+        register(JdbcType.ARRAY, new ArrayTypeHandler());
         // unknown Object
         this.unknownTypeHandler = new UnknownTypeHandler(configuration);
         register(Object.class, unknownTypeHandler);
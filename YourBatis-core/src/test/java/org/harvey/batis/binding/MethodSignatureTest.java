@@ -0,0 +1,101 @@
+package org.harvey.batis.binding;
+
+import junit.framework.TestCase;
+import org.harvey.batis.annotation.ShardKey;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.cursor.Cursor;
+import org.harvey.batis.exception.binding.BindingException;
+import org.junit.Assert;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步方法的返回值解析
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 10:12
+ */
+public class MethodSignatureTest extends TestCase {
+    private interface AsyncMapper {
+        CompletableFuture<List<String>> selectAll();
+
+        CompletableFuture<String> selectOne(int id);
+
+        CompletableFuture<Void> deleteAll();
+
+        CompletableFuture<Cursor<String>> selectCursor();
+
+        List<String> selectByCustomer(@ShardKey("customer.id") Order order, @ShardKey Long id);
+
+        List<String> selectByOrder(String name, @ShardKey("customer.id") Order order);
+    }
+
+    public static class Customer {
+        private final Long id;
+
+        public Customer(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    public static class Order {
+        private final Customer customer;
+
+        public Order(Customer customer) {
+            this.customer = customer;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+    }
+
+    private static MapperMethod.MethodSignature signature(String methodName) throws NoSuchMethodException {
+        for (Method method : AsyncMapper.class.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return new MapperMethod.MethodSignature(new Configuration(), AsyncMapper.class, method);
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+
+    public void testUnwrapFuture() throws NoSuchMethodException {
+        MapperMethod.MethodSignature many = signature("selectAll");
+        Assert.assertTrue(many.isReturnsFuture());
+        Assert.assertTrue(many.isReturnsMany());
+        Assert.assertEquals(List.class, many.getReturnType());
+
+        MapperMethod.MethodSignature one = signature("selectOne");
+        Assert.assertTrue(one.isReturnsFuture());
+        Assert.assertFalse(one.isReturnsMany());
+        Assert.assertEquals(String.class, one.getReturnType());
+
+        Assert.assertTrue(signature("deleteAll").isReturnsVoid());
+
+        try {
+            signature("selectCursor");
+            Assert.fail();
+        } catch (BindingException ignored) {
+        }
+    }
+
+    public void testExtractShardKey() throws NoSuchMethodException {
+        MapperMethod.MethodSignature byOrder = signature("selectByOrder");
+        Assert.assertTrue(byOrder.hasShardKey());
+        Assert.assertEquals(7L, byOrder.extractShardKey(new Object[]{"n", new Order(new Customer(7L))}));
+        Assert.assertNull(byOrder.extractShardKey(new Object[]{"n", new Order(null)}));
+        Assert.assertFalse(signature("selectAll").hasShardKey());
+        try {
+            signature("selectByCustomer");
+            Assert.fail();
+        } catch (BindingException ignored) {
+        }
+    }
+}
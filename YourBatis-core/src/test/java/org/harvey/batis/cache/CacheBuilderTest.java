@@ -0,0 +1,61 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.decorators.BlockingCache;
+import org.harvey.batis.util.enums.CacheEviction;
+import org.junit.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存装饰器的组合
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 11:40
+ */
+public class CacheBuilderTest extends TestCase {
+    public void testEviction() {
+        Cache lru = new CacheBuilder("lru").eviction(CacheEviction.LRU).size(2).build();
+        lru.putObject("a", 1);
+        lru.putObject("b", 2);
+        lru.getObject("a");
+        lru.putObject("c", 3);
+        Assert.assertNull(lru.getObject("b"));
+        Assert.assertEquals(1, lru.getObject("a"));
+
+        Cache fifo = new CacheBuilder("fifo").eviction(CacheEviction.FIFO).size(2).build();
+        fifo.putObject("a", 1);
+        fifo.putObject("b", 2);
+        fifo.getObject("a");
+        fifo.putObject("c", 3);
+        Assert.assertNull(fifo.getObject("a"));
+        Assert.assertEquals(2, fifo.getSize());
+    }
+
+    public void testStripes() {
+        Cache striped = new CacheBuilder("striped").stripes(4).size(400).build();
+        for (int i = 0; i < 1000; i++) {
+            striped.putObject(i, i);
+        }
+        Assert.assertTrue(striped.getSize() <= 400);
+        Assert.assertEquals(999, striped.getObject(999));
+        striped.clear();
+        Assert.assertEquals(0, striped.getSize());
+    }
+
+    public void testBlocking() throws Exception {
+        Cache cache = new CacheBuilder("blocking").blocking(true).build();
+        Assert.assertTrue(cache instanceof BlockingCache);
+        // 未命中, 持有锁
+        Assert.assertNull(cache.getObject("k"));
+        // 持有锁的线程不会阻塞自己
+        Assert.assertNull(cache.getObject("k"));
+        CompletableFuture<Object> reader = CompletableFuture.supplyAsync(() -> cache.getObject("k"));
+        Thread.sleep(50);
+        Assert.assertFalse(reader.isDone());
+        cache.putObject("k", "v");
+        Assert.assertEquals("v", reader.get(1, TimeUnit.SECONDS));
+    }
+}
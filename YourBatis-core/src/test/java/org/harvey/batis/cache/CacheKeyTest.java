@@ -0,0 +1,34 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+/**
+ * 缓存key的前缀复制
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 15:10
+ */
+public class CacheKeyTest extends TestCase {
+    public void testPrefix() throws Exception {
+        CacheKey prefix = new CacheKey("selectById", "select * from user where id = ?");
+        CacheKey fromPrefix = new CacheKey(prefix, 2);
+        fromPrefix.update(0);
+        fromPrefix.update(new int[]{1, 2});
+        fromPrefix.update("env");
+
+        CacheKey full = new CacheKey();
+        full.updateAll("selectById", "select * from user where id = ?", 0, new int[]{1, 2}, "env");
+        Assert.assertEquals(full, fromPrefix);
+        Assert.assertEquals(full.hashCode(), fromPrefix.hashCode());
+        Assert.assertEquals(full.toString(), fromPrefix.toString());
+        // 前缀不受影响
+        Assert.assertNotEquals(prefix, fromPrefix);
+        Assert.assertEquals(fromPrefix, fromPrefix.clone());
+
+        CacheKey other = new CacheKey(prefix, 0);
+        other.updateAll(1, new int[]{1, 2}, "env");
+        Assert.assertNotEquals(fromPrefix, other);
+    }
+}
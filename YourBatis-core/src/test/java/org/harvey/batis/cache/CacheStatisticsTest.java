@@ -0,0 +1,63 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.decorators.TransactionalCache;
+import org.junit.Assert;
+
+/**
+ * 缓存的统计
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 18:50
+ */
+public class CacheStatisticsTest extends TestCase {
+    public void testCounters() {
+        CacheStatistics statistics = new CacheStatistics();
+        Cache lru = new CacheBuilder("lru").size(2).statistics(statistics.forCache("lru")).build();
+        lru.putObject("a", 1);
+        lru.putObject("b", 2);
+        lru.putObject("c", 3);
+
+        LocalCache local = new LocalCache("local", 10, 1024 * 1024, statistics.forCache("local"));
+        local.putObject("k", "value");
+        Assert.assertEquals(local.getEstimatedBytes(), statistics.cacheSnapshots().get("local").getEstimatedBytes());
+        local.clear();
+
+        CacheStatistics.Counters statement = statistics.forStatement("selectById");
+        statement.hit();
+        statement.hit();
+        statement.hit();
+        statement.miss();
+        statement.loaded(400);
+
+        CacheStatistics.Snapshot lruSnapshot = statistics.cacheSnapshots().get("lru");
+        Assert.assertEquals(1, lruSnapshot.getEvictions());
+        Assert.assertEquals(0, statistics.cacheSnapshots().get("local").getEstimatedBytes());
+        CacheStatistics.Snapshot statementSnapshot = statistics.statementSnapshots().get("selectById");
+        Assert.assertEquals(0.75, statementSnapshot.getHitRatio(), 1e-9);
+        Assert.assertEquals(400, statementSnapshot.getAverageLoadNanos());
+    }
+
+    public void testResetKeepsCounters() {
+        CacheStatistics statistics = new CacheStatistics();
+        CacheStatistics.Counters counters = statistics.forCache("shared");
+        TransactionalCache tx = new TransactionalCache(new PerpetualCache("shared"), null, counters);
+        tx.putObject("a", 1);
+        tx.rollback();
+        // 回滚的结果没有写入缓存
+        Assert.assertEquals(0, statistics.cacheSnapshots().get("shared").getPuts());
+        tx.putObject("a", 1);
+        tx.commit();
+        counters.hit();
+        Assert.assertEquals(1, statistics.cacheSnapshots().get("shared").getPuts());
+
+        statistics.reset();
+        Assert.assertEquals(0, statistics.cacheSnapshots().get("shared").getHits());
+        // 创建时持有的计数器在reset之后仍然被统计
+        counters.hit();
+        Assert.assertSame(counters, statistics.forCache("shared"));
+        Assert.assertEquals(1, statistics.cacheSnapshots().get("shared").getHits());
+        Assert.assertEquals(0, statistics.cacheSnapshots().get("shared").getPuts());
+    }
+}
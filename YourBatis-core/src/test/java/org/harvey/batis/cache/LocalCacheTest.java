@@ -0,0 +1,47 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一级缓存的淘汰
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 17:05
+ */
+public class LocalCacheTest extends TestCase {
+    public void testEvict() {
+        LocalCache byCount = new LocalCache("count", 2, Long.MAX_VALUE);
+        byCount.putObject("a", Collections.singletonList("a"));
+        byCount.putObject("b", Collections.singletonList("b"));
+        // 访问a, b成为最久未访问的
+        byCount.getObject("a");
+        byCount.putObject("c", Collections.singletonList("c"));
+        Assert.assertEquals(2, byCount.getSize());
+        Assert.assertNull(byCount.getObject("b"));
+        Assert.assertNotNull(byCount.getObject("a"));
+
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add("row-" + i);
+        }
+        long rowsBytes = ObjectSizeEstimator.estimate(rows);
+        LocalCache byBytes = new LocalCache("bytes", 100, rowsBytes * 2);
+        byBytes.putObject(1, rows);
+        byBytes.putObject(2, rows);
+        byBytes.putObject(3, rows);
+        Assert.assertEquals(2, byBytes.getSize());
+        Assert.assertEquals(rowsBytes * 2, byBytes.getEstimatedBytes());
+        Assert.assertNull(byBytes.getObject(1));
+
+        // 单个结果超过上限, 不缓存
+        LocalCache tooSmall = new LocalCache("small", 100, rowsBytes - 1);
+        tooSmall.putObject(1, rows);
+        Assert.assertEquals(0, tooSmall.getSize());
+    }
+}
@@ -0,0 +1,63 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.exception.cache.CacheException;
+import org.harvey.batis.util.enums.CacheEviction;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 堆外的二级缓存存储
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 14:40
+ */
+public class OffHeapCacheTest extends TestCase {
+    public void testRoundTrip() {
+        OffHeapCache cache = new OffHeapCache("off-heap", 1024 * 1024);
+        List<String> rows = new ArrayList<>(Arrays.asList("a", "b", "c"));
+        cache.putObject("k", rows);
+        Object read = cache.getObject("k");
+        Assert.assertEquals(rows, read);
+        // 每次读取都是反序列化出的新对象
+        Assert.assertNotSame(read, cache.getObject("k"));
+        Assert.assertNull(cache.getObject("missing"));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        cache.putObject("k", null);
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    public void testEvictOldestSlab() {
+        // 16块, 每块64KB
+        OffHeapCache cache = new OffHeapCache("off-heap", 0);
+        byte[] row = new byte[8 * 1024];
+        for (int i = 0; i < 400; i++) {
+            cache.putObject(i, row);
+        }
+        Assert.assertTrue(cache.getEvictions() > 0);
+        Assert.assertEquals(400 - cache.getEvictions(), cache.getSize());
+        Assert.assertNull(cache.getObject(0));
+        Assert.assertNotNull(cache.getObject(399));
+        Assert.assertTrue(cache.getAllocatedBytes() <= cache.getCapacityBytes());
+        // 比一块还大的不缓存
+        cache.putObject("huge", new byte[128 * 1024]);
+        Assert.assertEquals(1, cache.getRejections());
+        Assert.assertNull(cache.getObject("huge"));
+    }
+
+    public void testBuilder() {
+        Cache cache = new CacheBuilder("off-heap").offHeapCapacity(1024L * 1024).stripes(2).build();
+        cache.putObject("k", "v");
+        Assert.assertEquals("v", cache.getObject("k"));
+        try {
+            new CacheBuilder("off-heap").offHeapCapacity(1024L * 1024).eviction(CacheEviction.SOFT).build();
+            Assert.fail();
+        } catch (CacheException ignored) {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.decorators.RefreshAheadCache;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.executor.CachingExecutor;
+import org.harvey.batis.executor.Executor;
+import org.harvey.batis.executor.JdbcStub;
+import org.harvey.batis.executor.SimpleExecutor;
+import org.harvey.batis.mapping.Environment;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.mapping.sqlsource.StaticSqlSource;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.jdbc.JdbcTransaction;
+import org.harvey.batis.transaction.jdbc.JdbcTransactionFactory;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提前刷新的TTL缓存
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 17:50
+ */
+public class RefreshAheadCacheTest extends TestCase {
+    public void testRefreshAhead() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        // 在调用线程中执行刷新, 便于断言
+        Cache cache = new RefreshAheadCache(new PerpetualCache("refresh"), 200, 150, Runnable::run);
+        cache.putObject("k", new RefreshAheadCache.Loadable("v0", () -> "v" + loads.incrementAndGet()));
+        // 窗口之前不刷新
+        Assert.assertEquals("v0", cache.getObject("k"));
+        Assert.assertEquals(0, loads.get());
+        Thread.sleep(80);
+        // 窗口内返回当前值, 同时刷新
+        Assert.assertEquals("v0", cache.getObject("k"));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("v1", cache.getObject("k"));
+
+        cache.putObject("plain", "p");
+        Thread.sleep(250);
+        // 过期
+        Assert.assertNull(cache.getObject("plain"));
+    }
+
+    public void testRefreshBelowBlockingCache() throws Exception {
+        List<Runnable> refreshTasks = new ArrayList<>();
+        Cache cache = new CacheBuilder("refresh").blocking(true).ttl(200L).refreshAhead(150L)
+                .refreshExecutor(refreshTasks::add).build();
+        cache.putObject("k", new RefreshAheadCache.Loadable("v0", () -> "v1"));
+        Thread.sleep(80);
+        Assert.assertEquals("v0", cache.getObject("k"));
+        Assert.assertEquals(1, refreshTasks.size());
+        cache.clear();
+        // 未命中, 当前线程持有k的锁直到放入
+        Assert.assertNull(cache.getObject("k"));
+        Thread refresher = new Thread(refreshTasks.get(0));
+        refresher.start();
+        refresher.join();
+        // 刷新线程不能释放当前线程的锁
+        Thread reader = new Thread(() -> cache.getObject("k"));
+        reader.start();
+        reader.join(100);
+        Assert.assertTrue(reader.isAlive());
+        cache.putObject("k", "v2");
+        reader.join();
+        Assert.assertEquals("v2", cache.getObject("k"));
+    }
+
+    /**
+     * 刷新时重放查询时的参数值, 不受调用方之后修改参数对象的影响
+     */
+    public void testRefreshReplaysCapturedParameters() throws Exception {
+        JdbcStub jdbc = new JdbcStub();
+        Configuration configuration = new Configuration();
+        configuration.setEnvironment(new Environment(new JdbcTransactionFactory(), jdbc.dataSource()));
+        String sql = "SELECT * FROM user WHERE id = ?";
+        StaticSqlSource sqlSource = new StaticSqlSource(configuration, sql,
+                Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Integer.class).build()));
+        MappedStatement ms = new MappedStatement.Builder(configuration, "user.select", sqlSource, SqlCommandType.SELECT)
+                .cache(new RefreshAheadCache(new PerpetualCache("user"), 200, 150, Runnable::run))
+                .useCache(true)
+                .build();
+        configuration.addMappedStatement(ms);
+        Executor executor = new CachingExecutor(
+                new SimpleExecutor(configuration, new JdbcTransaction(jdbc.dataSource(), null, false)),
+                configuration.getTableVersions(), configuration.getCacheStatistics());
+
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("id", 1);
+        executor.query(ms, parameter, RowBounds.DEFAULT, null);
+        executor.commit(true);
+        // 调用方复用参数对象
+        parameter.put("id", 2);
+        Thread.sleep(80);
+        executor.query(ms, Collections.singletonMap("id", 1), RowBounds.DEFAULT, null);
+
+        Assert.assertEquals(2, jdbc.statements.size());
+        JdbcStub.StatementRecord refresh = jdbc.statements.get(1);
+        Assert.assertEquals(sql, refresh.sql);
+        Assert.assertEquals(Collections.singletonList(Collections.singletonMap(1, 1)), refresh.executions);
+        executor.close(false);
+    }
+}
@@ -0,0 +1,57 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.builder.SqlTableExtractor;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 按表失效二级缓存
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 16:50
+ */
+public class TableVersionsTest extends TestCase {
+    public void testExtract() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("user", "orders", "item")), SqlTableExtractor.extract(
+                "SELECT u.* FROM `db`.User u, orders o LEFT JOIN item i ON i.id = o.item_id " +
+                        "WHERE u.id = #{id} AND o.id IN (SELECT order_id FROM item)"));
+        Assert.assertEquals(Collections.singleton("user"), SqlTableExtractor.extract(
+                "update user set name = #{name} where id = #{id}"));
+        Assert.assertEquals(Collections.singleton("user"), SqlTableExtractor.extract(
+                "insert into user (id, name) values (#{id}, 'from x')"));
+        // 表名未知
+        Assert.assertNull(SqlTableExtractor.extract("select * from ${table}"));
+        Assert.assertNull(SqlTableExtractor.extract("select now()"));
+    }
+
+    public void testInvalidateOnCommit() {
+        TableVersions versions = new TableVersions();
+        Cache shared = new PerpetualCache("shared");
+        List<String> user = Collections.singletonList("user");
+        List<String> order = Collections.singletonList("orders");
+
+        TransactionalCacheManager reader = new TransactionalCacheManager(versions);
+        CacheKey userKey = new CacheKey("user", 1);
+        CacheKey orderKey = new CacheKey("orders", 1);
+        reader.putObject(shared, userKey, "u1", reader.stamp(user), null);
+        reader.putObject(shared, orderKey, "o1", reader.stamp(order), null);
+        reader.commit();
+
+        TransactionalCacheManager writer = new TransactionalCacheManager(versions);
+        writer.invalidate(user);
+        // 本事务写过的表不读缓存, 其他会话在提交前仍然命中
+        Assert.assertNull(writer.getObject(shared, userKey, user));
+        Assert.assertEquals("u1", reader.getObject(shared, userKey, user));
+        writer.commit();
+
+        Assert.assertNull(reader.getObject(shared, userKey, user));
+        Assert.assertEquals("o1", reader.getObject(shared, orderKey, order));
+        reader.rollback();
+    }
+}
@@ -0,0 +1,28 @@
+package org.harvey.batis.cache;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.decorators.TransactionalCache;
+
+public class TransactionalCacheTest extends TestCase {
+
+    public void testCommitAndRollback() {
+        Cache shared = new PerpetualCache("shared");
+        TransactionalCache tx = new TransactionalCache(shared);
+        tx.putObject("k", "v");
+        // 提交前其他会话不可见
+        assertNull(shared.getObject("k"));
+        tx.commit();
+        assertEquals("v", shared.getObject("k"));
+
+        tx.clear();
+        // 事务内清空后读不到旧值, 但共享缓存在提交前不受影响
+        assertNull(tx.getObject("k"));
+        assertEquals("v", shared.getObject("k"));
+        tx.rollback();
+        assertEquals("v", tx.getObject("k"));
+
+        tx.clear();
+        tx.commit();
+        assertNull(shared.getObject("k"));
+    }
+}
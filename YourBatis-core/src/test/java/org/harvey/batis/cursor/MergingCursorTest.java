@@ -0,0 +1,105 @@
+package org.harvey.batis.cursor;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 多个有序游标的归并
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 18:30
+ */
+public class MergingCursorTest extends TestCase {
+    private static class ListCursor implements Cursor<Integer> {
+        private final List<Integer> rows;
+        private int read;
+        private boolean closed;
+
+        private ListCursor(Integer... rows) {
+            this.rows = Arrays.asList(rows);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return read == rows.size();
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return read - 1;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return read < rows.size();
+                }
+
+                @Override
+                public Integer next() {
+                    return rows.get(read++);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static List<Integer> drain(Cursor<Integer> cursor) {
+        List<Integer> result = new ArrayList<>();
+        cursor.forEach(result::add);
+        return result;
+    }
+
+    public void testMergeWithLimit() {
+        ListCursor a = new ListCursor(1, 4, 7, 10);
+        ListCursor b = new ListCursor(2, 5, 8);
+        ListCursor c = new ListCursor(3, 6, 9);
+        MergingCursor<Integer> cursor = new MergingCursor<>(Arrays.asList(a, b, c), Comparator.naturalOrder(), 2, 4);
+        Assert.assertEquals(Arrays.asList(3, 4, 5, 6), drain(cursor));
+        Assert.assertTrue(cursor.isConsumed());
+        Assert.assertTrue(a.closed && b.closed && c.closed);
+        // 只读到了每个分片需要的行
+        Assert.assertTrue(a.read < 4);
+    }
+
+    public void testConcatWithoutComparator() {
+        MergingCursor<Integer> cursor = new MergingCursor<>(
+                Arrays.asList(new ListCursor(5, 1), new ListCursor(), new ListCursor(3)), null, 0, Integer.MAX_VALUE);
+        Assert.assertEquals(Arrays.asList(5, 1, 3), drain(cursor));
+        Assert.assertEquals(2, cursor.getCurrentIndex());
+    }
+
+    public void testCloseExhaustedCursor() {
+        ListCursor a = new ListCursor(1, 2);
+        ListCursor b = new ListCursor(3, 4, 5);
+        MergingCursor<Integer> cursor = new MergingCursor<>(Arrays.asList(a, b), Comparator.naturalOrder(), 0, Integer.MAX_VALUE);
+        Iterator<Integer> iterator = cursor.iterator();
+        for (int i = 0; i < 3; i++) {
+            iterator.next();
+        }
+        // 第一个分片读完就关闭, 不等归并结束
+        Assert.assertTrue(a.closed);
+        Assert.assertFalse(b.closed);
+        Assert.assertTrue(cursor.isOpen());
+        cursor.close();
+        Assert.assertTrue(b.closed);
+    }
+}
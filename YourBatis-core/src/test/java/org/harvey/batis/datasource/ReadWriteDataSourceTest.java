@@ -0,0 +1,125 @@
+package org.harvey.batis.datasource;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.executor.SimpleExecutor;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.sqlsource.SqlSource;
+import org.harvey.batis.mapping.sqlsource.StaticSqlSource;
+import org.harvey.batis.transaction.Transaction;
+import org.harvey.batis.util.enums.ReplicaSelectStrategy;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 只读副本的选择
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 10:20
+ */
+public class ReadWriteDataSourceTest extends TestCase {
+    private final PooledDataSource primary = new PooledDataSource();
+    private final List<DataSource> replicas = Arrays.asList(
+            new PooledDataSource(), new PooledDataSource(), new PooledDataSource());
+
+    public void testRoundRobin() {
+        ReadWriteDataSource dataSource = new ReadWriteDataSource(primary, replicas, ReplicaSelectStrategy.ROUND_ROBIN);
+        for (int i = 0; i < 6; i++) {
+            Assert.assertSame(replicas.get(i % 3), dataSource.selectReplica());
+        }
+    }
+
+    public void testLeastActive() {
+        ReadWriteDataSource dataSource = new ReadWriteDataSource(primary, replicas, ReplicaSelectStrategy.LEAST_ACTIVE);
+        // 都没有活动连接时取第一个
+        Assert.assertSame(replicas.get(0), dataSource.selectReplica());
+        Assert.assertSame(replicas.get(0), dataSource.selectReplica());
+    }
+
+    public void testNoReplica() {
+        ReadWriteDataSource dataSource = new ReadWriteDataSource(primary, Collections.emptyList(), null);
+        Assert.assertSame(primary, dataSource.selectReplica());
+        Assert.assertEquals(ReplicaSelectStrategy.ROUND_ROBIN, ReplicaSelectStrategy.of("round-robin"));
+        Assert.assertEquals(ReplicaSelectStrategy.LEAST_ACTIVE, ReplicaSelectStrategy.of("least-active"));
+    }
+
+    public void testLockingRead() {
+        Assert.assertTrue(ReadWriteDataSource.isLockingRead("SELECT * FROM account WHERE id = ? FOR UPDATE"));
+        Assert.assertTrue(ReadWriteDataSource.isLockingRead("select * from account for\n  share nowait"));
+        Assert.assertTrue(ReadWriteDataSource.isLockingRead("SELECT * FROM account FOR NO KEY UPDATE"));
+        Assert.assertTrue(ReadWriteDataSource.isLockingRead("SELECT * FROM account LOCK IN SHARE MODE"));
+        Assert.assertFalse(ReadWriteDataSource.isLockingRead("SELECT * FROM for_update_log WHERE note = 'FORUPDATE'"));
+        Assert.assertFalse(ReadWriteDataSource.isLockingRead("SELECT * FROM account"));
+    }
+
+    /**
+     * 加锁的读不路由到只读副本
+     */
+    public void testLockingReadUsesPrimary() throws SQLException {
+        Configuration configuration = new Configuration();
+        RecordingTransaction transaction = new RecordingTransaction();
+        RoutingExecutor executor = new RoutingExecutor(configuration, transaction);
+        SqlSource sqlSource = new StaticSqlSource(configuration, "SELECT * FROM account WHERE id = ?");
+        MappedStatement plain = new MappedStatement.Builder(configuration, "account.select", sqlSource, SqlCommandType.SELECT)
+                .build();
+        MappedStatement locking = new MappedStatement.Builder(configuration, "account.lock", sqlSource, SqlCommandType.SELECT)
+                .useMaster(true).build();
+        executor.connect(plain);
+        Assert.assertTrue(transaction.readOnly);
+        executor.connect(locking);
+        Assert.assertFalse(transaction.readOnly);
+    }
+
+    private static class RoutingExecutor extends SimpleExecutor {
+        RoutingExecutor(Configuration configuration, Transaction transaction) {
+            super(configuration, transaction);
+        }
+
+        void connect(MappedStatement ms) throws SQLException {
+            super.getConnection(ms);
+        }
+    }
+
+    /**
+     * 只记录请求的连接类型
+     */
+    private static class RecordingTransaction implements Transaction {
+        private boolean readOnly;
+
+        @Override
+        public Connection getConnection() {
+            return this.getConnection(false);
+        }
+
+        @Override
+        public Connection getConnection(boolean readOnly) {
+            this.readOnly = readOnly;
+            return null;
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public void rollback() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Integer getTimeout() {
+            return null;
+        }
+    }
+}
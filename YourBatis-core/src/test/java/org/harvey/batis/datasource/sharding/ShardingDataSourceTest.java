@@ -0,0 +1,80 @@
+package org.harvey.batis.datasource.sharding;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.CacheKey;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.datasource.PooledDataSource;
+import org.harvey.batis.exception.datasource.DataSourceException;
+import org.harvey.batis.executor.Executor;
+import org.harvey.batis.executor.SimpleExecutor;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.sqlsource.RawSqlSource;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.Transaction;
+import org.harvey.batis.transaction.jdbc.JdbcTransaction;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分片键到分片的路由
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-07 15:30
+ */
+public class ShardingDataSourceTest extends TestCase {
+    private final DataSource defaultDataSource = new PooledDataSource();
+    private final Map<String, DataSource> shards = new LinkedHashMap<>();
+
+    @Override
+    protected void setUp() {
+        shards.put("shard0", new PooledDataSource());
+        shards.put("shard1", new PooledDataSource());
+        shards.put("shard2", new PooledDataSource());
+    }
+
+    public void testHashResolver() {
+        ShardingDataSource dataSource = new ShardingDataSource(defaultDataSource, shards, null);
+        Assert.assertSame(defaultDataSource, dataSource.getShard(null));
+        Assert.assertSame(shards.get("shard0"), dataSource.getShard(3));
+        Assert.assertSame(shards.get("shard1"), dataSource.getShard(4L));
+        Assert.assertSame(shards.get("shard2"), dataSource.getShard(-1));
+        Assert.assertSame(dataSource.getShard("customer-42"), dataSource.getShard("customer-42"));
+    }
+
+    /**
+     * 同一条语句和参数, 路由到不同分片时缓存的key不同
+     */
+    public void testCacheKeyPerShard() {
+        Configuration configuration = new Configuration();
+        ShardingDataSource dataSource = new ShardingDataSource(defaultDataSource, shards, null);
+        MappedStatement ms = new MappedStatement.Builder(configuration, "order.selectAll",
+                new RawSqlSource(configuration, "SELECT * FROM orders", null), SqlCommandType.SELECT).build();
+        CacheKey shard0 = cacheKey(configuration, dataSource, ms, 3);
+        CacheKey shard1 = cacheKey(configuration, dataSource, ms, 4);
+        Assert.assertEquals(shard0, cacheKey(configuration, dataSource, ms, 6));
+        Assert.assertNotEquals(shard0, shard1);
+        Assert.assertNotEquals(shard0, cacheKey(configuration, dataSource, ms, null));
+    }
+
+    private static CacheKey cacheKey(Configuration configuration, ShardingDataSource dataSource,
+                                     MappedStatement ms, Object shardKey) {
+        Transaction transaction = new JdbcTransaction(dataSource, null, false);
+        transaction.routeShard(shardKey);
+        Executor executor = new SimpleExecutor(configuration, transaction);
+        return executor.createCacheKey(ms, null, RowBounds.DEFAULT, ms.getBoundSql(null));
+    }
+
+    public void testUnknownShard() {
+        ShardingDataSource dataSource = new ShardingDataSource(defaultDataSource, shards, (key, names) -> "missing");
+        try {
+            dataSource.getShard(1);
+            Assert.fail();
+        } catch (DataSourceException ignored) {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.harvey.batis.executor;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.exception.executor.BatchExecutorException;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.mapping.sqlsource.StaticSqlSource;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.jdbc.JdbcTransaction;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量执行器的分批, 执行和失败
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:30
+ */
+public class BatchExecutorTest extends TestCase {
+    private static final String INSERT = "INSERT INTO user (id) VALUES (?)";
+    private static final String DELETE = "DELETE FROM user WHERE id = ?";
+    private static final String SELECT = "SELECT * FROM user";
+
+    private final Configuration configuration = new Configuration();
+    private final JdbcStub jdbc = new JdbcStub();
+    private final BatchExecutor executor = new BatchExecutor(
+            configuration, new JdbcTransaction(jdbc.dataSource(), null, false));
+
+    /**
+     * 连续的相同SQL和{@link MappedStatement}并入一个批次, 任一不同则开始新的批次
+     */
+    public void testGrouping() throws Exception {
+        MappedStatement insert = this.statement("user.insert", INSERT, SqlCommandType.INSERT);
+        // SQL相同, 但不是同一个MappedStatement
+        MappedStatement insertAgain = this.statement("user.insertAgain", INSERT, SqlCommandType.INSERT);
+        MappedStatement delete = this.statement("user.delete", DELETE, SqlCommandType.DELETE);
+        List<Map<String, Object>> parameters = Arrays.asList(
+                Collections.singletonMap("id", 1), Collections.singletonMap("id", 2),
+                Collections.singletonMap("id", 3), Collections.singletonMap("id", 4),
+                Collections.singletonMap("id", 5));
+        Assert.assertEquals(BatchExecutor.BATCH_UPDATE_RETURN_VALUE, executor.update(insert, parameters.get(0)));
+        executor.update(insert, parameters.get(1));
+        executor.update(insertAgain, parameters.get(2));
+        executor.update(delete, parameters.get(3));
+        executor.update(insert, parameters.get(4));
+        // 执行之前只预编译, 不执行
+        Assert.assertEquals(4, jdbc.statements.size());
+        Assert.assertEquals(Arrays.asList(Collections.singletonMap(1, 1), Collections.singletonMap(1, 2)),
+                jdbc.statements.get(0).batches);
+
+        List<BatchResult> results = executor.flushStatements();
+        Assert.assertEquals(4, results.size());
+        Assert.assertSame(insert, results.get(0).getMappedStatement());
+        Assert.assertEquals(INSERT, results.get(0).getSql());
+        Assert.assertEquals(parameters.subList(0, 2), results.get(0).getParameterObjects());
+        Assert.assertArrayEquals(new int[]{1, 1}, results.get(0).getUpdateCounts());
+        Assert.assertSame(insertAgain, results.get(1).getMappedStatement());
+        Assert.assertEquals(parameters.subList(2, 3), results.get(1).getParameterObjects());
+        Assert.assertSame(delete, results.get(2).getMappedStatement());
+        Assert.assertArrayEquals(new int[]{1}, results.get(2).getUpdateCounts());
+        Assert.assertSame(insert, results.get(3).getMappedStatement());
+        Assert.assertEquals(parameters.subList(4, 5), results.get(3).getParameterObjects());
+        for (JdbcStub.StatementRecord statement : jdbc.statements) {
+            Assert.assertTrue(statement.closed);
+        }
+        // 已经清空, 不再重复执行
+        Assert.assertTrue(executor.flushStatements().isEmpty());
+        executor.close(false);
+    }
+
+    /**
+     * 查询之前先执行积攒的批次
+     */
+    public void testFlushBeforeQuery() throws Exception {
+        MappedStatement insert = this.statement("user.insert", INSERT, SqlCommandType.INSERT);
+        MappedStatement select = new MappedStatement.Builder(configuration, "user.select",
+                new StaticSqlSource(configuration, SELECT), SqlCommandType.SELECT).build();
+        executor.update(insert, Collections.singletonMap("id", 1));
+        executor.update(insert, Collections.singletonMap("id", 2));
+        Assert.assertTrue(executor.query(select, null, RowBounds.DEFAULT, null).isEmpty());
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT, "executeBatch " + INSERT,
+                "prepare " + SELECT, "execute " + SELECT), jdbc.events);
+        Assert.assertTrue(jdbc.statements.get(0).closed);
+        executor.close(false);
+    }
+
+    /**
+     * 失败时异常中带有之前已经成功的批次和失败的批次, 之后的批次不执行
+     */
+    public void testFailure() throws Exception {
+        MappedStatement insert = this.statement("user.insert", INSERT, SqlCommandType.INSERT);
+        MappedStatement delete = this.statement("user.delete", DELETE, SqlCommandType.DELETE);
+        executor.update(insert, Collections.singletonMap("id", 1));
+        executor.update(insert, Collections.singletonMap("id", 2));
+        executor.update(delete, Collections.singletonMap("id", 1));
+        executor.update(insert, Collections.singletonMap("id", 3));
+        jdbc.failingBatches.add(DELETE);
+        try {
+            executor.flushStatements();
+            Assert.fail();
+        } catch (BatchExecutorException e) {
+            List<BatchResult> successful = e.getSuccessfulBatchResults();
+            Assert.assertEquals(1, successful.size());
+            Assert.assertSame(insert, successful.get(0).getMappedStatement());
+            Assert.assertArrayEquals(new int[]{1, 1}, successful.get(0).getUpdateCounts());
+            Assert.assertSame(delete, e.getBatchResult().getMappedStatement());
+            Assert.assertNotNull(e.getBatchUpdateException());
+        }
+        Assert.assertEquals(Arrays.asList("executeBatch " + INSERT, "executeBatch " + DELETE),
+                jdbc.events.subList(3, jdbc.events.size()));
+        for (JdbcStub.StatementRecord statement : jdbc.statements) {
+            Assert.assertTrue(statement.closed);
+        }
+        executor.close(false);
+    }
+
+    private MappedStatement statement(String id, String sql, SqlCommandType commandType) {
+        StaticSqlSource sqlSource = new StaticSqlSource(configuration, sql,
+                Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Integer.class).build()));
+        return new MappedStatement.Builder(configuration, id, sqlSource, commandType).build();
+    }
+}
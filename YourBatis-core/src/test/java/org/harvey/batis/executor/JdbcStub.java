@@ -0,0 +1,178 @@
+package org.harvey.batis.executor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 用动态代理实现的JDBC对象, 不需要数据库<br>
+ * 记录预编译的SQL, 绑定的参数, 批次和执行的顺序; 查询没有结果集, 得到空列表
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:20
+ */
+public class JdbcStub {
+    /**
+     * 按预编译的顺序
+     */
+    public final List<StatementRecord> statements = new ArrayList<>();
+    /**
+     * 如"prepare SQL", "executeBatch SQL", "execute SQL"
+     */
+    public final List<String> events = new ArrayList<>();
+    /**
+     * 执行这些SQL的批次时抛出{@link BatchUpdateException}
+     */
+    public final Set<String> failingBatches = new HashSet<>();
+    public final List<ConnectionRecord> connections = new ArrayList<>();
+
+    public static class ConnectionRecord {
+        public boolean closed;
+        public boolean autoCommit = true;
+        public int commits;
+        public int rollbacks;
+    }
+
+    public static class StatementRecord {
+        public final String sql;
+        public final ConnectionRecord connection;
+        /**
+         * 当前绑定的参数, key为参数的位置
+         */
+        public final Map<Integer, Object> parameters = new TreeMap<>();
+        public final List<Map<Integer, Object>> batches = new ArrayList<>();
+        /**
+         * 每次execute时绑定的参数
+         */
+        public final List<Map<Integer, Object>> executions = new ArrayList<>();
+        public boolean closed;
+
+        private StatementRecord(String sql, ConnectionRecord connection) {
+            this.sql = sql;
+            this.connection = connection;
+        }
+    }
+
+    public DataSource dataSource() {
+        return JdbcStub.proxy(DataSource.class, (proxy, method, args) ->
+                "getConnection".equals(method.getName()) ? this.connection() : JdbcStub.defaultValue(method));
+    }
+
+    public Connection connection() {
+        ConnectionRecord record = new ConnectionRecord();
+        connections.add(record);
+        return JdbcStub.proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return this.prepare((Connection) proxy, record, (String) args[0]);
+                case "close":
+                    record.closed = true;
+                    return null;
+                case "isClosed":
+                    return record.closed;
+                case "getAutoCommit":
+                    return record.autoCommit;
+                case "setAutoCommit":
+                    record.autoCommit = (Boolean) args[0];
+                    return null;
+                case "commit":
+                    record.commits++;
+                    return null;
+                case "rollback":
+                    record.rollbacks++;
+                    return null;
+                default:
+                    return JdbcStub.defaultValue(method);
+            }
+        });
+    }
+
+    private PreparedStatement prepare(Connection connection, ConnectionRecord connectionRecord, String sql) {
+        StatementRecord record = new StatementRecord(sql, connectionRecord);
+        statements.add(record);
+        events.add("prepare " + sql);
+        return JdbcStub.proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                record.parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "addBatch":
+                    record.batches.add(new TreeMap<>(record.parameters));
+                    return null;
+                case "executeBatch":
+                    events.add("executeBatch " + sql);
+                    if (failingBatches.contains(sql)) {
+                        throw new BatchUpdateException("batch failed: " + sql, new int[0]);
+                    }
+                    int[] counts = new int[record.batches.size()];
+                    Arrays.fill(counts, 1);
+                    record.batches.clear();
+                    return counts;
+                case "execute":
+                    events.add("execute " + sql);
+                    record.executions.add(new TreeMap<>(record.parameters));
+                    return false;
+                case "getUpdateCount":
+                    return -1;
+                case "getConnection":
+                    return connection;
+                case "close":
+                    record.closed = true;
+                    return null;
+                case "isClosed":
+                    return record.closed;
+                default:
+                    return JdbcStub.defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * @return 预编译了这条SQL的Statement个数
+     */
+    public int preparedCount(String sql) {
+        return (int) statements.stream().filter(statement -> statement.sql.equals(sql)).count();
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(JdbcStub.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+                        default:
+                            return handler.invoke(proxy, method, args);
+                    }
+                }));
+    }
+
+    /**
+     * @return 返回值类型的默认值, 基本类型为0或false
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == void.class || !type.isPrimitive()) {
+            return null;
+        }
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+}
@@ -0,0 +1,52 @@
+package org.harvey.batis.executor;
+
+import junit.framework.TestCase;
+import org.harvey.batis.cache.CacheKey;
+import org.junit.Assert;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发的相同查询只执行一次
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 20:05
+ */
+public class QueryCoalescerTest extends TestCase {
+    public void testExecute() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> coalescer.execute(new CacheKey("selectById", 1), () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                    return Collections.singletonList("row");
+                })));
+            }
+            // 等所有线程都进入等待
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<List<String>> future : futures) {
+                Assert.assertEquals(Collections.singletonList("row"), future.get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, executions.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.harvey.batis.executor;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.datasource.ReadWriteDataSource;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.mapping.sqlsource.StaticSqlSource;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.jdbc.JdbcTransaction;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 按SQL复用Statement, 主库和只读副本分开复用, commit, rollback和close时关闭
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 20:40
+ */
+public class ReuseExecutorTest extends TestCase {
+    private static final String SELECT = "SELECT * FROM user WHERE id = ?";
+    private static final String UPDATE = "UPDATE user SET name = 'a' WHERE id = ?";
+
+    private final Configuration configuration = new Configuration();
+    private final JdbcStub primary = new JdbcStub();
+    private final JdbcStub replica = new JdbcStub();
+
+    /**
+     * 按最终的SQL复用, 与是哪个{@link MappedStatement}无关, 每次都重新注入参数
+     */
+    public void testReuseBySql() throws Exception {
+        ReuseExecutor executor = new ReuseExecutor(configuration, new JdbcTransaction(primary.dataSource(), null, false));
+        MappedStatement select = this.statement("user.select", SELECT, SqlCommandType.SELECT);
+        MappedStatement sameSql = this.statement("user.selectAgain", SELECT, SqlCommandType.SELECT);
+        MappedStatement update = this.statement("user.update", UPDATE, SqlCommandType.UPDATE);
+        executor.query(select, Collections.singletonMap("id", 1), RowBounds.DEFAULT, null);
+        executor.query(select, Collections.singletonMap("id", 2), RowBounds.DEFAULT, null);
+        executor.query(sameSql, Collections.singletonMap("id", 3), RowBounds.DEFAULT, null);
+        executor.update(update, Collections.singletonMap("id", 1));
+        executor.update(update, Collections.singletonMap("id", 2));
+
+        Assert.assertEquals(2, primary.statements.size());
+        Assert.assertEquals(Arrays.asList(Collections.singletonMap(1, 1), Collections.singletonMap(1, 2),
+                Collections.singletonMap(1, 3)), primary.statements.get(0).executions);
+        Assert.assertEquals(UPDATE, primary.statements.get(1).sql);
+        Assert.assertEquals(2, primary.statements.get(1).executions.size());
+        executor.close(false);
+    }
+
+    /**
+     * 只读的查询复用副本上的Statement, 写之后的查询在主库上另外预编译
+     */
+    public void testReadOnlyStatements() throws Exception {
+        ReadWriteDataSource dataSource = new ReadWriteDataSource(
+                primary.dataSource(), Collections.singletonList(replica.dataSource()), null);
+        ReuseExecutor executor = new ReuseExecutor(configuration, new JdbcTransaction(dataSource, null, false));
+        MappedStatement select = this.statement("user.select", SELECT, SqlCommandType.SELECT);
+        MappedStatement update = this.statement("user.update", UPDATE, SqlCommandType.UPDATE);
+        executor.query(select, Collections.singletonMap("id", 1), RowBounds.DEFAULT, null);
+        executor.query(select, Collections.singletonMap("id", 2), RowBounds.DEFAULT, null);
+        Assert.assertEquals(1, replica.preparedCount(SELECT));
+        Assert.assertEquals(2, replica.statements.get(0).executions.size());
+        Assert.assertTrue(primary.statements.isEmpty());
+
+        // 未提交的写之后, 查询必须在主库上执行, 不能复用副本上的同一SQL
+        executor.update(update, Collections.singletonMap("id", 1));
+        executor.query(select, Collections.singletonMap("id", 3), RowBounds.DEFAULT, null);
+        Assert.assertEquals(1, primary.preparedCount(SELECT));
+        Assert.assertEquals(Collections.singletonList(Collections.singletonMap(1, 3)),
+                primary.statements.get(1).executions);
+        Assert.assertEquals(1, replica.statements.size());
+        executor.close(false);
+    }
+
+    /**
+     * commit, rollback和close时关闭所有缓存的Statement, 之后重新预编译
+     */
+    public void testCloseStatements() throws Exception {
+        ReadWriteDataSource dataSource = new ReadWriteDataSource(
+                primary.dataSource(), Collections.singletonList(replica.dataSource()), null);
+        ReuseExecutor executor = new ReuseExecutor(configuration, new JdbcTransaction(dataSource, null, false));
+        MappedStatement select = this.statement("user.select", SELECT, SqlCommandType.SELECT);
+        MappedStatement update = this.statement("user.update", UPDATE, SqlCommandType.UPDATE);
+
+        executor.query(select, Collections.singletonMap("id", 1), RowBounds.DEFAULT, null);
+        executor.update(update, Collections.singletonMap("id", 1));
+        executor.commit(true);
+        Assert.assertTrue(replica.statements.get(0).closed);
+        Assert.assertTrue(primary.statements.get(0).closed);
+        Assert.assertEquals(1, primary.connections.get(0).commits);
+
+        executor.query(select, Collections.singletonMap("id", 2), RowBounds.DEFAULT, null);
+        executor.update(update, Collections.singletonMap("id", 2));
+        Assert.assertEquals(2, replica.preparedCount(SELECT));
+        Assert.assertEquals(2, primary.preparedCount(UPDATE));
+        executor.rollback(true);
+        Assert.assertTrue(replica.statements.get(1).closed);
+        Assert.assertTrue(primary.statements.get(1).closed);
+        Assert.assertEquals(1, primary.connections.get(0).rollbacks);
+
+        executor.query(select, Collections.singletonMap("id", 3), RowBounds.DEFAULT, null);
+        executor.update(update, Collections.singletonMap("id", 3));
+        executor.close(false);
+        Assert.assertTrue(replica.statements.get(2).closed);
+        Assert.assertTrue(primary.statements.get(2).closed);
+        Assert.assertTrue(replica.connections.get(0).closed);
+        Assert.assertTrue(primary.connections.get(0).closed);
+    }
+
+    private MappedStatement statement(String id, String sql, SqlCommandType commandType) {
+        StaticSqlSource sqlSource = new StaticSqlSource(configuration, sql,
+                Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Integer.class).build()));
+        return new MappedStatement.Builder(configuration, id, sqlSource, commandType).build();
+    }
+}
@@ -0,0 +1,123 @@
+package org.harvey.batis.executor.pagination;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.executor.JdbcStub;
+import org.harvey.batis.executor.SimpleExecutor;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.MappedStatement;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.mapping.sqlsource.StaticSqlSource;
+import org.harvey.batis.session.RowBounds;
+import org.harvey.batis.transaction.jdbc.JdbcTransaction;
+import org.harvey.batis.util.enums.SqlCommandType;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分页改写
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-06 15:02
+ */
+public class DialectTest extends TestCase {
+    private final Configuration configuration = new Configuration();
+
+    private BoundSql boundSql() {
+        List<ParameterMapping> mappings = new ArrayList<>();
+        mappings.add(new ParameterMapping.Builder(configuration, "id", Integer.class).build());
+        return new BoundSql(configuration, "SELECT * FROM user WHERE id > ? ;", mappings, 1);
+    }
+
+    public void testPaginate() {
+        BoundSql limitOffset = new LimitOffsetDialect().paginate(configuration, boundSql(), new RowBounds(20, 10));
+        Assert.assertEquals("SELECT * FROM user WHERE id > ? LIMIT ? OFFSET ?", limitOffset.getSql());
+        Assert.assertEquals(3, limitOffset.getParameterMappings().size());
+        Assert.assertEquals(AbstractDialect.LIMIT_PARAMETER, limitOffset.getParameterMappings().get(1).getProperty());
+        Assert.assertEquals(10, limitOffset.getAdditionalParameter(AbstractDialect.LIMIT_PARAMETER));
+        Assert.assertEquals(20, limitOffset.getAdditionalParameter(AbstractDialect.OFFSET_PARAMETER));
+
+        BoundSql offsetFetch = new OffsetFetchDialect().paginate(configuration, boundSql(), new RowBounds(20, RowBounds.NO_ROW_LIMIT));
+        Assert.assertEquals("SELECT * FROM user WHERE id > ? OFFSET ? ROWS", offsetFetch.getSql());
+        Assert.assertEquals(2, offsetFetch.getParameterMappings().size());
+    }
+
+    /**
+     * 分页子句插入在加锁子句之前
+     */
+    public void testLockingClause() {
+        Assert.assertEquals("SELECT * FROM user WHERE id > ? LIMIT ? OFFSET ? FOR UPDATE",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user WHERE id > ? FOR UPDATE;"));
+        Assert.assertEquals("SELECT * FROM user LIMIT ? OFFSET ? LOCK IN SHARE MODE",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user LOCK IN SHARE MODE"));
+        Assert.assertEquals("SELECT * FROM user u LIMIT ? OFFSET ? FOR NO KEY UPDATE OF u SKIP LOCKED",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user u FOR NO KEY UPDATE OF u SKIP LOCKED"));
+        Assert.assertEquals("SELECT * FROM user ORDER BY id OFFSET ? ROWS FETCH NEXT ? ROWS ONLY FOR UPDATE",
+                this.paginate(new OffsetFetchDialect(), "SELECT * FROM user ORDER BY id\n  FOR UPDATE"));
+        // 字符串中的for update不是加锁子句
+        Assert.assertEquals("SELECT * FROM user WHERE note = 'for update' LIMIT ? OFFSET ?",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user WHERE note = 'for update'"));
+    }
+
+    /**
+     * 末尾的注释被去掉, 分页子句不会落入注释中
+     */
+    public void testTrailingComment() {
+        Assert.assertEquals("SELECT * FROM user WHERE id > ? LIMIT ? OFFSET ?",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user WHERE id > ? -- by id"));
+        Assert.assertEquals("SELECT * FROM user LIMIT ? OFFSET ?",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user; -- done\n/* end */"));
+        Assert.assertEquals("SELECT * FROM user LIMIT ? OFFSET ? FOR UPDATE",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM user -- lock it\nFOR UPDATE -- now"));
+        Assert.assertEquals("SELECT '--' AS dash, 'it''s' AS quote FROM user LIMIT ? OFFSET ?",
+                this.paginate(new LimitOffsetDialect(), "SELECT '--' AS dash, 'it''s' AS quote FROM user"));
+    }
+
+    /**
+     * 自带分页或不能安全改写的SQL不改写
+     */
+    public void testNotRewritable() {
+        Assert.assertNull(this.paginate(new LimitOffsetDialect(), "SELECT * FROM user LIMIT 5"));
+        Assert.assertNull(this.paginate(new LimitOffsetDialect(), "SELECT * FROM user limit 5 offset 10 FOR UPDATE"));
+        Assert.assertNull(this.paginate(new OffsetFetchDialect(), "SELECT * FROM user ORDER BY id FETCH FIRST 5 ROWS ONLY"));
+        Assert.assertNull(this.paginate(new LimitOffsetDialect(), "SELECT * FROM user; DELETE FROM user"));
+        Assert.assertNull(this.paginate(new LimitOffsetDialect(), "SELECT * FROM user WHERE note = 'open"));
+        Assert.assertNull(this.paginate(new LimitOffsetDialect(), "SELECT * FROM (SELECT * FROM user"));
+        // 子查询中的LIMIT和带引号的标识符不算
+        Assert.assertEquals("SELECT * FROM (SELECT * FROM user LIMIT 5) t WHERE t.\"limit\" > 0 LIMIT ? OFFSET ?",
+                this.paginate(new LimitOffsetDialect(), "SELECT * FROM (SELECT * FROM user LIMIT 5) t WHERE t.\"limit\" > 0"));
+    }
+
+    /**
+     * 方言不改写时仍由RowBounds在客户端分页
+     */
+    public void testFallbackToRowBounds() throws Exception {
+        configuration.setDialect(new LimitOffsetDialect());
+        JdbcStub jdbc = new JdbcStub();
+        SimpleExecutor executor = new SimpleExecutor(configuration, new JdbcTransaction(jdbc.dataSource(), null, false));
+        MappedStatement limited = new MappedStatement.Builder(configuration, "user.limited",
+                new StaticSqlSource(configuration, "SELECT * FROM user LIMIT 5"), SqlCommandType.SELECT).build();
+        MappedStatement plain = new MappedStatement.Builder(configuration, "user.plain",
+                new StaticSqlSource(configuration, "SELECT * FROM user"), SqlCommandType.SELECT).build();
+        executor.query(limited, null, new RowBounds(1, 2), null);
+        executor.query(plain, null, new RowBounds(1, 2), null);
+        Assert.assertEquals("SELECT * FROM user LIMIT 5", jdbc.statements.get(0).sql);
+        Assert.assertTrue(jdbc.statements.get(0).executions.get(0).isEmpty());
+        Assert.assertEquals("SELECT * FROM user LIMIT ? OFFSET ?", jdbc.statements.get(1).sql);
+        Assert.assertEquals(2, jdbc.statements.get(1).executions.get(0).size());
+        executor.close(false);
+    }
+
+    /**
+     * @return 改写后的SQL, 不改写时为null
+     */
+    private String paginate(Dialect dialect, String sql) {
+        BoundSql boundSql = new BoundSql(configuration, sql, Collections.emptyList(), null);
+        BoundSql page = dialect.paginate(configuration, boundSql, new RowBounds(20, 10));
+        return page == null ? null : page.getSql();
+    }
+}
@@ -1,12 +1,45 @@
 package org.harvey.batis.ognl;
 
 import junit.framework.TestCase;
+import org.harvey.batis.exception.scripting.ScriptingException;
+import org.harvey.batis.reflection.ContextMap;
+import org.harvey.batis.scripting.js.ExpressionEvaluator;
+import org.harvey.batis.scripting.js.LanguagePhaser;
 import org.harvey.batis.scripting.xml.DynamicContext;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class LanguagePhaserTest extends TestCase {
 
     public void testGetValue() {
+        // 触发DynamicContext中ContextAccessor的注册
+        new DynamicContext(null, null);
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("name", "harvey");
+        parameter.put("price", 10);
+        parameter.put("ids", List.of(1, 2, 3));
+        Map<String, Object> root = new ContextMap(null);
+        root.put(DynamicContext.PARAMETER_OBJECT_KEY, parameter);
+        root.put("isDesc", "true");
+
+        assertTrue(ExpressionEvaluator.evaluateBoolean("name!=null and name!= ''", root));
+        assertTrue(ExpressionEvaluator.evaluateBoolean("price != null && price >= 10.0", root));
+        assertFalse(ExpressionEvaluator.evaluateBoolean("missing != null", root));
+        assertTrue(ExpressionEvaluator.evaluateBoolean("isDesc=='true'", root));
+        assertTrue(ExpressionEvaluator.evaluateBoolean("ids.size() == 3 and ids[0] == 1", root));
+        assertTrue(ExpressionEvaluator.evaluateBoolean("not (price == 1) || missing.x", root));
+        assertFalse(ExpressionEvaluator.evaluateBoolean("price - 10", root));
+        assertEquals(11, LanguagePhaser.phase("price + 1", root));
+        assertEquals("harvey1", LanguagePhaser.phase("name + 1", root));
+        assertEquals(6, LanguagePhaser.phase("name.length", root));
+        assertEquals("a", LanguagePhaser.phase("price > 5 ? 'a' : 'b'", root));
+        assertSame(LanguagePhaser.compile("price + 1"), LanguagePhaser.compile("price + 1"));
+        try {
+            LanguagePhaser.compile("price + ");
+            fail();
+        } catch (ScriptingException ignored) {
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package org.harvey.batis.scripting.xml;
+
+import junit.framework.TestCase;
+import org.harvey.batis.builder.SqlSourceBuilder;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.scripting.xml.node.StaticTextSqlNode;
+import org.harvey.batis.scripting.xml.node.TrimSqlNode;
+import org.junit.Assert;
+
+/**
+ * 缓冲区上原地的trim等操作与String上的结果相同
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:50
+ */
+public class SqlBufferTest extends TestCase {
+
+    public void testInPlace() {
+        SqlBuffer buffer = SqlBuffer.acquire();
+        String sql = "\n  SELECT *\t FROM   user \r\n WHERE id = ? ";
+        buffer.append(sql);
+        Assert.assertEquals(sql.trim(), buffer.toTrimmedString());
+        buffer.shrinkWhitespaces();
+        Assert.assertEquals(SqlSourceBuilder.removeExtraWhitespaces(sql), buffer.toString());
+
+        buffer.setLength(0);
+        buffer.append("SELECT *").append("  AND id = 1  ");
+        buffer.trim(8);
+        Assert.assertEquals("SELECT *AND id = 1", buffer.toString());
+        buffer.append(' ');
+        buffer.rotate(8, 18);
+        Assert.assertEquals("SELECT * AND id = 1", buffer.toString());
+        buffer.release();
+        // 归还后同一线程复用
+        Assert.assertSame(buffer, SqlBuffer.acquire());
+        Assert.assertEquals(0, buffer.length());
+        buffer.release();
+    }
+
+    public void testApplyTrim() {
+        Configuration configuration = new Configuration();
+        TrimSqlNode trim = new TrimSqlNode(configuration, new StaticTextSqlNode(""),
+                "WHERE", "and |or ", null, ",");
+        SqlBuffer buffer = SqlBuffer.acquire();
+        buffer.append("SELECT * FROM user").append("  Or id = 1 ,  ");
+        trim.applyTrim(buffer, 18);
+        Assert.assertEquals("SELECT * FROM userWHERE  id = 1 ", buffer.toString());
+        Assert.assertEquals("WHERE  id = 1 ", trim.applyTrim("  Or id = 1 ,  "));
+        Assert.assertEquals("", trim.applyTrim("  "));
+        buffer.release();
+    }
+}
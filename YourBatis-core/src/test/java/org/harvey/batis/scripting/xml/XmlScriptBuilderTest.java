@@ -0,0 +1,54 @@
+package org.harvey.batis.scripting.xml;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.mapping.sqlsource.DynamicSqlSource;
+import org.harvey.batis.mapping.sqlsource.RawSqlSource;
+import org.harvey.batis.mapping.sqlsource.SqlSource;
+import org.harvey.batis.parsing.MapperXmlConstants;
+import org.harvey.batis.parsing.XNode;
+import org.harvey.batis.parsing.XPathParser;
+import org.junit.Assert;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 构建时对静态文本的合并和折叠
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:40
+ */
+public class XmlScriptBuilderTest extends TestCase {
+    private static SqlSource parse(Configuration configuration, String script) {
+        XPathParser parser = new XPathParser(new StringReader(script), false, null, null,
+                MapperXmlConstants.MAPPER_NAMESPACE_CONTEXT);
+        XNode node = parser.evaluateNode("/select");
+        return new XmlScriptBuilder(configuration, node).parseScriptNode();
+    }
+
+    public void testFoldStaticTrim() {
+        Configuration configuration = new Configuration();
+        SqlSource folded = parse(configuration, "<select>SELECT * FROM user\n" +
+                "  <trim prefix=\"WHERE\" prefixOverrides=\"and |or \">  and   id = #{id}</trim>  LIMIT 1</select>");
+        // 只有静态文本的trim在构建时完成, 不再是动态SQL
+        Assert.assertTrue(folded instanceof RawSqlSource);
+        Assert.assertEquals("SELECT * FROM user WHERE id = ? LIMIT 1", folded.getBoundSql(null).getSql());
+    }
+
+    public void testMergeAroundDynamic() {
+        Configuration configuration = new Configuration();
+        SqlSource source = parse(configuration, "<select>SELECT *<![CDATA[ FROM ]]>user " +
+                "<where><if match=\"name != null\"> AND   name = #{name}</if> <if match=\"id != null\">OR id = #{id}</if></where>" +
+                "</select>");
+        Assert.assertTrue(source instanceof DynamicSqlSource);
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("name", null);
+        parameter.put("id", 1);
+        Assert.assertEquals("SELECT * FROM user WHERE id = ?", source.getBoundSql(parameter).getSql());
+        parameter.put("name", "harvey");
+        Assert.assertEquals("SELECT * FROM user WHERE name = ? OR id = ?", source.getBoundSql(parameter).getSql());
+    }
+}
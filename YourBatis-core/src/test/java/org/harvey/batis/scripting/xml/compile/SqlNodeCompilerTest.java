@@ -0,0 +1,201 @@
+package org.harvey.batis.scripting.xml.compile;
+
+import junit.framework.TestCase;
+import org.harvey.batis.config.Configuration;
+import org.harvey.batis.executor.pagination.PostgreSqlDialect;
+import org.harvey.batis.mapping.BoundSql;
+import org.harvey.batis.mapping.ParameterMapping;
+import org.harvey.batis.mapping.sqlsource.DynamicSqlSource;
+import org.harvey.batis.scripting.xml.SqlNode;
+import org.harvey.batis.scripting.xml.node.*;
+import org.harvey.batis.util.type.ArrayParameter;
+import org.junit.Assert;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 编译后的动态SQL与解释执行的结果相同
+ *
+ * @author <a href="mailto:harvey.blocks@outlook.com">Harvey Blocks</a>
+ * @version 1.0
+ * @date 2024-09-08 19:20
+ */
+public class SqlNodeCompilerTest extends TestCase {
+    private static SqlNode statement(Configuration configuration) {
+        SqlNode ids = new ForEachSqlNode(configuration, new StaticTextSqlNode("#{id}"),
+                "ids", "id", "i", "(", ")", ",");
+        SqlNode where = new WhereSqlNode(configuration, new MixedSqlNode(Arrays.asList(
+                new IfSqlNode(configuration, new StaticTextSqlNode(" AND name = #{name} "), "name != null"),
+                new IfSqlNode(configuration, new MixedSqlNode(Arrays.asList(
+                        new StaticTextSqlNode(" AND id IN "), ids)), "ids != null"))));
+        SqlNode order = new ChooseSqlNode(Collections.singletonList(
+                new IfSqlNode(configuration, new TextSqlNode("ORDER BY ${order}"), "order != null")),
+                new StaticTextSqlNode("ORDER BY id"));
+        return new MixedSqlNode(Arrays.asList(new StaticTextSqlNode("SELECT *\n  FROM user"), where, order));
+    }
+
+    public void testSameAsInterpreted() {
+        Configuration configuration = new Configuration();
+        configuration.setCompileDynamicSql(false);
+        DynamicSqlSource interpreted = new DynamicSqlSource(configuration, statement(configuration));
+        SqlRenderer compiled = SqlNodeCompiler.compile(configuration, statement(configuration));
+        Assert.assertNotNull(compiled);
+
+        Map<String, Object> all = new HashMap<>();
+        all.put("name", "harvey");
+        all.put("ids", Arrays.asList(1, 2, 3));
+        all.put("order", "name DESC");
+        Map<String, Object> none = new HashMap<>();
+        none.put("ids", null);
+        Map<String, Object> empty = new HashMap<>();
+        empty.put("ids", new int[0]);
+        for (boolean shrink : new boolean[]{true, false}) {
+            configuration.setShrinkWhitespacesInSql(shrink);
+            for (Map<String, Object> parameter : Arrays.asList(all, none, empty)) {
+                BoundSql expected = interpreted.getBoundSql(parameter);
+                BoundSql actual = compiled.getBoundSql(parameter);
+                Assert.assertEquals(expected.getSql(), actual.getSql());
+                Assert.assertEquals(properties(expected), properties(actual));
+                Assert.assertEquals(expected.getAdditionalParameters(), actual.getAdditionalParameters());
+            }
+        }
+        configuration.setShrinkWhitespacesInSql(true);
+        Assert.assertEquals("SELECT * FROM user WHERE name = ? AND id IN (?,?,?) ORDER BY name DESC",
+                compiled.getBoundSql(all).getSql());
+    }
+
+    public void testShapeCache() {
+        Configuration configuration = new Configuration();
+        configuration.setCompileDynamicSql(false);
+        DynamicSqlSource interpreted = new DynamicSqlSource(configuration, statement(configuration));
+        SqlRenderer compiled = SqlNodeCompiler.compile(configuration, statement(configuration));
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> parameter = new HashMap<>();
+            parameter.put("name", "n" + i);
+            // 元素的类型不同, 参数的类型也不同
+            parameter.put("ids", i % 2 == 0 ? Arrays.asList(i, i + 1) : Arrays.asList("a" + i, "b" + i));
+            BoundSql expected = interpreted.getBoundSql(parameter);
+            BoundSql actual = compiled.getBoundSql(parameter);
+            Assert.assertEquals(expected.getSql(), actual.getSql());
+            Assert.assertEquals(properties(expected), properties(actual));
+            Assert.assertEquals(expected.getAdditionalParameters(), actual.getAdditionalParameters());
+        }
+        Assert.assertEquals(2, compiled.getShapeCount());
+        Assert.assertEquals(0.5, compiled.getShapeStatistics().getHitRatio(), 1e-9);
+    }
+
+    public void testShapeEviction() {
+        Configuration configuration = new Configuration();
+        configuration.setDynamicSqlShapeCacheSize(2);
+        SqlRenderer compiled = SqlNodeCompiler.compile(configuration, inList(configuration, null, false));
+        Map<String, Object> parameter = new HashMap<>();
+        // 元素个数不同即形状不同: 1, 2, 1(命中), 3
+        for (List<Integer> ids : Arrays.asList(Arrays.asList(1), Arrays.asList(1, 2), Arrays.asList(3), Arrays.asList(1, 2, 3))) {
+            parameter.put("ids", ids);
+            Assert.assertEquals(ids.size(), compiled.getBoundSql(parameter).getParameterMappings().size());
+        }
+        // 满了之后淘汰没有再命中过的2个元素的形状, 新的形状仍然被记住
+        Assert.assertEquals(2, compiled.getShapeCount());
+        Assert.assertEquals(1, compiled.getShapeStatistics().getEvictions());
+        parameter.put("ids", Arrays.asList(4, 5, 6));
+        compiled.getBoundSql(parameter);
+        parameter.put("ids", Arrays.asList(7));
+        compiled.getBoundSql(parameter);
+        Assert.assertEquals(3, compiled.getShapeStatistics().getHits());
+        parameter.put("ids", Arrays.asList(8, 9));
+        compiled.getBoundSql(parameter);
+        Assert.assertEquals(3, compiled.getShapeStatistics().getHits());
+        Assert.assertEquals(2, compiled.getShapeCount());
+    }
+
+    private static SqlNode inList(Configuration configuration, String arrayType, boolean padding) {
+        return new MixedSqlNode(Arrays.asList(new StaticTextSqlNode("SELECT * FROM user WHERE id IN"),
+                new ForEachSqlNode(configuration, new StaticTextSqlNode("#{id}"),
+                        "ids", "id", null, "(", ")", ",", arrayType, padding)));
+    }
+
+    public void testPadding() {
+        Configuration configuration = new Configuration();
+        configuration.setCompileDynamicSql(false);
+        DynamicSqlSource interpreted = new DynamicSqlSource(configuration, inList(configuration, null, true));
+        SqlRenderer compiled = SqlNodeCompiler.compile(configuration, inList(configuration, null, true));
+        Map<String, Object> parameter = new HashMap<>();
+        for (int size = 1; size <= 5; size++) {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                ids.add(i);
+            }
+            parameter.put("ids", ids);
+            BoundSql expected = interpreted.getBoundSql(parameter);
+            BoundSql actual = compiled.getBoundSql(parameter);
+            Assert.assertEquals(expected.getSql(), actual.getSql());
+            Assert.assertEquals(properties(expected), properties(actual));
+            Assert.assertEquals(expected.getAdditionalParameters(), actual.getAdditionalParameters());
+        }
+        // 5个元素补齐到8个, 多出的是最后一个元素
+        Assert.assertEquals("SELECT * FROM user WHERE id IN ( ? , ? , ? , ? , ? , ? , ? , ? )",
+                interpreted.getBoundSql(parameter).getSql());
+        // 补齐的位置引用最后一个元素的参数, 不再各自绑定
+        BoundSql padded = interpreted.getBoundSql(parameter);
+        Assert.assertEquals(Arrays.asList("__foreach_id_0", "__foreach_id_1", "__foreach_id_2", "__foreach_id_3",
+                        "__foreach_id_4", "__foreach_id_4", "__foreach_id_4", "__foreach_id_4"),
+                padded.getParameterMappings().stream().map(ParameterMapping::getProperty).collect(Collectors.toList()));
+        Assert.assertFalse(padded.hasAdditionalParameter("__foreach_id_5"));
+        // 补齐的位置引用的参数名与真实的元素个数有关, 每个个数一种形状; SQL仍然只有1, 2, 4, 8四种
+        Assert.assertEquals(5, compiled.getShapeCount());
+
+        ForEachSqlNode node = new ForEachSqlNode(configuration, new StaticTextSqlNode("#{id}"),
+                "ids", "id", null, "(", ")", ",", null, true);
+        Assert.assertEquals(256, node.paddedSize(129));
+        // 超过256个元素后按256的倍数补齐, 且不超过1000个
+        Assert.assertEquals(768, node.paddedSize(513));
+        Assert.assertEquals(1000, node.paddedSize(900));
+        Assert.assertEquals(1500, node.paddedSize(1500));
+        configuration.setInListPaddingMaxSize(0);
+        Assert.assertEquals(1024, node.paddedSize(900));
+    }
+
+    public void testArrayBound() {
+        Configuration configuration = new Configuration();
+        configuration.setCompileDynamicSql(false);
+        // 方言不支持数组时补齐
+        DynamicSqlSource padded = new DynamicSqlSource(configuration, inList(configuration, "integer", false));
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("ids", new int[]{1, 2, 3});
+        Assert.assertEquals("SELECT * FROM user WHERE id IN ( ? , ? , ? , ? )", padded.getBoundSql(parameter).getSql());
+
+        configuration.setDialect(new PostgreSqlDialect());
+        DynamicSqlSource interpreted = new DynamicSqlSource(configuration, inList(configuration, "integer", false));
+        SqlRenderer compiled = SqlNodeCompiler.compile(configuration, inList(configuration, "integer", false));
+        for (int[] ids : new int[][]{{1, 2, 3}, {4}, {}}) {
+            parameter.put("ids", ids);
+            for (BoundSql boundSql : Arrays.asList(interpreted.getBoundSql(parameter), compiled.getBoundSql(parameter))) {
+                Assert.assertEquals("SELECT * FROM user WHERE id IN (SELECT * FROM UNNEST(?))", boundSql.getSql());
+                Assert.assertEquals(Collections.singletonList("__foreach_array__0:ArrayParameter"), properties(boundSql));
+                ArrayParameter array = (ArrayParameter) boundSql.getAdditionalParameter("__foreach_array__0");
+                Assert.assertEquals("integer", array.getTypeName());
+                Assert.assertArrayEquals(Arrays.stream(ids).boxed().toArray(), array.getElements());
+            }
+        }
+        // 元素个数不影响SQL
+        Assert.assertEquals(1, compiled.getShapeCount());
+    }
+
+    public void testNotCompilable() {
+        Configuration configuration = new Configuration();
+        // 跨越两个片段的参数只能解释执行
+        SqlNode split = new MixedSqlNode(Arrays.asList(new StaticTextSqlNode("SELECT #"), new StaticTextSqlNode("{id}")));
+        Assert.assertNull(SqlNodeCompiler.compile(configuration, split));
+        // 默认编译, 不能编译时退回解释执行
+        DynamicSqlSource source = new DynamicSqlSource(configuration, split);
+        Assert.assertNotNull(source.getBoundSql(Collections.singletonMap("id", 1)).getSql());
+        Assert.assertNull(source.getRenderer());
+    }
+
+    private static List<String> properties(BoundSql boundSql) {
+        return boundSql.getParameterMappings().stream()
+                .map(mapping -> mapping.getProperty() + ":" + mapping.getJavaType().getSimpleName())
+                .collect(Collectors.toList());
+    }
+}